@@ -0,0 +1,76 @@
+import java.util.Locale;
+
+// Небольшой замерщик по образцу JMH: прогрев, затем несколько замеров фиксированной длительности.
+// Результат — среднее время операции и разброс между замерами. Значение, которое возвращает
+// операция, складывается в sink, чтобы JIT не выбросил вычисление как ненужное
+final class Bench {
+
+    static volatile long sink;
+
+    private final int warmups;
+    private final int iterations;
+    private final long iterationNanos;
+
+    Bench(int warmups, int iterations, long iterationMillis) {
+        this.warmups = warmups;
+        this.iterations = iterations;
+        this.iterationNanos = iterationMillis * 1_000_000;
+    }
+
+    interface Operation {
+        long run() throws Exception;
+    }
+
+    // Замер одной операции; тяжёлые операции (сохранение миллиона задач) выполняются
+    // хотя бы по разу за замер, даже если это дольше iterationMillis
+    void measure(String name, String param, Operation operation) throws Exception {
+        for (int i = 0; i < warmups; i++) {
+            iteration(operation);
+        }
+        double[] nanosPerOp = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            nanosPerOp[i] = iteration(operation);
+        }
+        double mean = 0;
+        for (double value : nanosPerOp) {
+            mean += value;
+        }
+        mean /= iterations;
+        double variance = 0;
+        for (double value : nanosPerOp) {
+            variance += (value - mean) * (value - mean);
+        }
+        double error = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+        String line = String.format(Locale.ROOT, "%-58s %-9s %13s +- %-12s", name, param,
+                format(mean), format(error));
+        System.out.println(line);
+    }
+
+    static String header() {
+        return String.format(Locale.ROOT, "%-58s %-9s %13s    %-12s", "Benchmark", "Size", "Time/op", "Error");
+    }
+
+    private double iteration(Operation operation) throws Exception {
+        long operations = 0;
+        long sum = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            sum += operation.run();
+            operations++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        sink += sum;
+        return (double) elapsed / operations;
+    }
+
+    private static String format(double nanos) {
+        if (nanos >= 1_000_000) {
+            return String.format(Locale.ROOT, "%.2f ms", nanos / 1_000_000);
+        }
+        if (nanos >= 1_000) {
+            return String.format(Locale.ROOT, "%.2f us", nanos / 1_000);
+        }
+        return String.format(Locale.ROOT, "%.1f ns", nanos);
+    }
+}
@@ -0,0 +1,53 @@
+import java.util.Arrays;
+
+// Запуск всех замеров. Аргументы:
+//   --sizes 10000,100000,1000000   размеры хранилища (по умолчанию 10000,100000)
+//   --only tasks|epic|history|persistence|json|schedule|search   только одна группа замеров
+//   --quick                        короткие замеры для проверки, что всё запускается
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {10_000, 100_000};
+        String only = null;
+        boolean quick = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sizes":
+                    sizes = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--only":
+                    only = args[++i];
+                    break;
+                case "--quick":
+                    quick = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Неизвестный аргумент: " + args[i]);
+            }
+        }
+
+        Bench bench = quick ? new Bench(1, 2, 100) : new Bench(3, 5, 1000);
+        System.out.println(Bench.header());
+        if (only == null || only.equals("tasks")) {
+            TaskManagerBenchmarks.run(bench, sizes);
+        }
+        if (only == null || only.equals("epic")) {
+            EpicBenchmarks.run(bench, sizes);
+        }
+        if (only == null || only.equals("history")) {
+            HistoryBenchmarks.run(bench, sizes);
+        }
+        if (only == null || only.equals("persistence")) {
+            PersistenceBenchmarks.run(bench, sizes);
+        }
+        if (only == null || only.equals("json")) {
+            JsonBenchmarks.run(bench, sizes);
+        }
+        if (only == null || only.equals("schedule")) {
+            ScheduleBenchmarks.run(bench, sizes);
+        }
+        if (only == null || only.equals("search")) {
+            SearchBenchmarks.run(bench, sizes);
+        }
+    }
+}
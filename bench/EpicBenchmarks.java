@@ -0,0 +1,36 @@
+import model.Epic;
+import model.Status;
+import model.Subtask;
+
+// Пересчёт статуса большого эпика: смена статуса одной подзадачи с обновлением счётчиков
+// против полного пересчёта по всем подзадачам
+final class EpicBenchmarks {
+
+    private EpicBenchmarks() {
+    }
+
+    static void run(Bench bench, int[] sizes) throws Exception {
+        for (int size : sizes) {
+            String param = String.valueOf(size);
+            Epic epic = new Epic(0, "Epic", "Bench epic", Status.NEW);
+            Subtask[] subtasks = new Subtask[size];
+            for (int i = 0; i < size; i++) {
+                subtasks[i] = new Subtask(i + 1, "Subtask " + i, "d", Status.values()[i % 3], 0);
+                epic.addSubtask(subtasks[i]);
+            }
+            TaskManagerBenchmarks.XorShift random = new TaskManagerBenchmarks.XorShift();
+
+            bench.measure("Epic.subtaskStatusChanged+updateStatus", param, () -> {
+                Subtask subtask = subtasks[random.next(0, size - 1)];
+                subtask.setStatus(Status.values()[random.next(0, 2)]);
+                epic.subtaskStatusChanged(subtask);
+                epic.updateStatus();
+                return epic.getStatus().ordinal();
+            });
+            bench.measure("Epic.recalculateStatus", param, () -> {
+                epic.recalculateStatus();
+                return epic.getStatus().ordinal();
+            });
+        }
+    }
+}
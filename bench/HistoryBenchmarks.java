@@ -0,0 +1,34 @@
+import manager.InMemoryHistoryManager;
+import model.Status;
+import model.Task;
+
+// Добавление в историю при повторных просмотрах: задачи берутся из рабочего набора
+// размера size, поэтому почти каждый вызов переносит уже имеющуюся запись в конец
+final class HistoryBenchmarks {
+
+    private HistoryBenchmarks() {
+    }
+
+    static void run(Bench bench, int[] sizes) throws Exception {
+        for (int size : sizes) {
+            String param = String.valueOf(size);
+            Task[] tasks = new Task[size];
+            for (int i = 0; i < size; i++) {
+                tasks[i] = new Task(i + 1, "Task " + i, "d", Status.NEW);
+            }
+            TaskManagerBenchmarks.XorShift random = new TaskManagerBenchmarks.XorShift();
+
+            InMemoryHistoryManager unlimited = new InMemoryHistoryManager();
+            bench.measure("InMemoryHistoryManager.add(repeated)", param, () -> {
+                unlimited.add(tasks[random.next(0, size - 1)]);
+                return unlimited.size();
+            });
+
+            InMemoryHistoryManager bounded = new InMemoryHistoryManager(100);
+            bench.measure("InMemoryHistoryManager.add(capacity 100)", param, () -> {
+                bounded.add(tasks[random.next(0, size - 1)]);
+                return bounded.size();
+            });
+        }
+    }
+}
@@ -0,0 +1,145 @@
+import http.TaskJson;
+import model.Status;
+import model.Subtask;
+import model.Task;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Кодирование списка задач в JSON: TaskJson против кодировщика на отражении, устроенного
+// как у Gson (поля класса находятся один раз, значения читаются через Field.get, текст
+// собирается в строку и переводится в UTF-8). Библиотек в проекте нет, поэтому образец — свой.
+// Кроме времени печатается, сколько байт выделяется на операцию
+final class JsonBenchmarks {
+
+    private JsonBenchmarks() {
+    }
+
+    static void run(Bench bench, int[] sizes) throws Exception {
+        for (int size : sizes) {
+            String param = String.valueOf(size);
+            List<Task> tasks = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                tasks.add(i % 2 == 0
+                        ? new Task(i + 1, "Задача " + i, "Описание \"задачи\" " + i, Status.NEW)
+                        : new Subtask(i + 1, "Subtask " + i, "Line\nbreak " + i, Status.DONE, 1));
+            }
+            TaskJson json = new TaskJson();
+            OutputStream nowhere = OutputStream.nullOutputStream();
+            ReflectiveJson reflective = new ReflectiveJson();
+
+            Bench.Operation buffered = () -> json.reset().writeArray(tasks).length();
+            Bench.Operation streamed = () -> {
+                json.reset().writeArray(nowhere, tasks);
+                return size;
+            };
+            Bench.Operation reflection = () -> reflective.toJson(tasks).getBytes(StandardCharsets.UTF_8).length;
+            bench.measure("TaskJson.writeArray(buffer)", param, buffered);
+            bench.measure("TaskJson.writeArray(stream)", param, streamed);
+            bench.measure("Reflective.toJson", param, reflection);
+            allocation("TaskJson.writeArray(buffer)", param, buffered);
+            allocation("TaskJson.writeArray(stream)", param, streamed);
+            allocation("Reflective.toJson", param, reflection);
+
+            byte[] one = json.reset().write(tasks.get(1)).toByteArray();
+            TaskJson.Fields fields = new TaskJson.Fields();
+            bench.measure("TaskJson.read(one task)", param, () -> json.read(one, 0, one.length, fields).getId());
+        }
+    }
+
+    // Сколько байт выделяет одна операция (после прогрева)
+    private static void allocation(String name, String param, Bench.Operation operation) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        operation.run();
+        int runs = 5;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < runs; i++) {
+            Bench.sink += operation.run();
+        }
+        long bytes = (threads.getCurrentThreadAllocatedBytes() - before) / runs;
+        System.out.println(String.format(Locale.ROOT, "%-58s %-9s %10d B allocated", name + " [alloc]", param, bytes));
+    }
+
+    // Кодировщик «как в библиотеке»: обходит поля через отражение. Служебный кэш хэша задачи пропускается
+    static final class ReflectiveJson {
+        private final Map<Class<?>, Field[]> fields = new ConcurrentHashMap<>();
+
+        String toJson(List<? extends Task> tasks) throws IllegalAccessException {
+            StringBuilder out = new StringBuilder();
+            out.append('[');
+            for (int i = 0; i < tasks.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                object(out, tasks.get(i));
+            }
+            return out.append(']').toString();
+        }
+
+        private void object(StringBuilder out, Object value) throws IllegalAccessException {
+            out.append('{');
+            boolean first = true;
+            for (Field field : fields.computeIfAbsent(value.getClass(), ReflectiveJson::collect)) {
+                if (!first) {
+                    out.append(',');
+                }
+                out.append('"').append(field.getName()).append("\":");
+                Object fieldValue = field.get(value);
+                if (fieldValue == null) {
+                    out.append("null");
+                } else if (fieldValue instanceof Number) {
+                    out.append(fieldValue);
+                } else {
+                    string(out, fieldValue.toString());
+                }
+                first = false;
+            }
+            out.append('}');
+        }
+
+        private static void string(StringBuilder out, String value) {
+            out.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> out.append("\\\"");
+                    case '\\' -> out.append("\\\\");
+                    case '\n' -> out.append("\\n");
+                    case '\r' -> out.append("\\r");
+                    case '\t' -> out.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            out.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            out.append(c);
+                        }
+                    }
+                }
+            }
+            out.append('"');
+        }
+
+        private static Field[] collect(Class<?> type) {
+            List<Field> result = new ArrayList<>();
+            for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.getName().equals("hash")) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    result.add(0, field);
+                }
+            }
+            return result.toArray(new Field[0]);
+        }
+    }
+}
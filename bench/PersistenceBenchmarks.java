@@ -0,0 +1,58 @@
+import manager.FileBackedTaskManager;
+import manager.SnapshotFormat;
+import model.Epic;
+import model.Status;
+
+import java.io.File;
+
+// Полное сохранение и загрузка снимка в обоих форматах. На каждые 10 задач хранилища
+// приходится эпик, 6 его подзадач и 3 обычные задачи
+final class PersistenceBenchmarks {
+
+    private PersistenceBenchmarks() {
+    }
+
+    static void run(Bench bench, int[] sizes) throws Exception {
+        for (int size : sizes) {
+            String param = String.valueOf(size);
+            for (SnapshotFormat format : SnapshotFormat.values()) {
+                File file = File.createTempFile("bench-snapshot", ".dat");
+                try {
+                    FileBackedTaskManager manager = fill(file, format, size);
+                    bench.measure("FileBacked.save(" + format + ")", param, () -> {
+                        manager.save();
+                        return file.length();
+                    });
+                    bench.measure("FileBacked.loadFromFile(" + format + ")", param, () ->
+                            FileBackedTaskManager.loadFromFile(file, false, null).getVersion());
+                    if (format == SnapshotFormat.BINARY) {
+                        bench.measure("FileBacked.openMapped", param, () ->
+                                FileBackedTaskManager.openMapped(file, false).getVersion());
+                    }
+                } finally {
+                    TaskManagerBenchmarks.delete(file);
+                }
+            }
+        }
+    }
+
+    private static FileBackedTaskManager fill(File file, SnapshotFormat format, int size) {
+        FileBackedTaskManager manager = new FileBackedTaskManager(file);
+        manager.setSnapshotFormat(format);
+        manager.beginBatch();
+        int created = 0;
+        while (created < size) {
+            Epic epic = manager.createEpic("Epic " + created, "Epic description", Status.NEW);
+            created++;
+            for (int i = 0; i < 6 && created < size; i++, created++) {
+                manager.createSubtask("Subtask " + created, "Subtask description",
+                        Status.values()[created % 3], epic.getId());
+            }
+            for (int i = 0; i < 3 && created < size; i++, created++) {
+                manager.createTask("Task " + created, "Task description", Status.NEW);
+            }
+        }
+        manager.commitBatch();
+        return manager;
+    }
+}
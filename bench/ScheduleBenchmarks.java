@@ -0,0 +1,78 @@
+import manager.InMemoryTaskManager;
+import model.Status;
+import model.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+
+// Расписание: перенос задачи с проверкой пересечений по дереву интервалов против проверки
+// попарным сравнением со всеми задачами, и getPrioritizedTasks против сортировки всех задач
+// при каждом вызове. Задачи стоят по часу в двухчасовых окнах, окна розданы задачам
+// вперемешку, чтобы порядок по времени не совпадал с порядком id
+final class ScheduleBenchmarks {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final Duration HOUR = Duration.ofHours(1);
+
+    private ScheduleBenchmarks() {
+    }
+
+    static void run(Bench bench, int[] sizes) throws Exception {
+        for (int size : sizes) {
+            String param = String.valueOf(size);
+            TaskManagerBenchmarks.XorShift random = new TaskManagerBenchmarks.XorShift();
+            int[] slots = new int[size];
+            for (int i = 0; i < size; i++) {
+                slots[i] = i;
+            }
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.next(0, i);
+                int slot = slots[i];
+                slots[i] = slots[j];
+                slots[j] = slot;
+            }
+            InMemoryTaskManager manager = new InMemoryTaskManager();
+            manager.beginBatch();
+            int firstId = 0;
+            for (int i = 0; i < size; i++) {
+                Task task = manager.createTask("Task " + i, "Description " + i, Status.NEW,
+                        START.plusHours(2L * slots[i]), HOUR);
+                if (i == 0) {
+                    firstId = task.getId();
+                }
+            }
+            manager.commitBatch();
+            int first = firstId;
+            int last = firstId + size - 1;
+            List<Task> scheduled = manager.getPrioritizedTasks();
+
+            // сдвиг внутри своего окна: пересечений нет, поэтому проверка всякий раз проходит до конца
+            bench.measure("Schedule.updateTask(move)", param, () -> {
+                int id = random.next(first, last);
+                LocalDateTime slot = START.plusHours(2L * slots[id - first]);
+                Task task = new Task(id, "Task", "Moved", Status.NEW, slot.plusMinutes(random.next(0, 59)), HOUR);
+                manager.updateTask(task);
+                return id;
+            });
+            bench.measure("Schedule.pairwiseOverlapCheck", param, () -> {
+                LocalDateTime start = START.plusHours(2L * random.next(0, size - 1)).plusMinutes(105);
+                LocalDateTime end = start.plusMinutes(15);
+                int conflicts = 0;
+                for (Task task : scheduled) {
+                    if (task.getStartTime().isBefore(end) && start.isBefore(task.getEndTime())) {
+                        conflicts++;
+                    }
+                }
+                return conflicts;
+            });
+            bench.measure("Schedule.getPrioritizedTasks", param, () -> manager.getPrioritizedTasks().size());
+            bench.measure("Schedule.sortOnEachCall", param, () -> manager.getAllTasks().stream()
+                    .filter(task -> task.getStartTime() != null)
+                    .sorted(Comparator.comparing(Task::getStartTime))
+                    .toList()
+                    .size());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+import manager.InMemoryTaskManager;
+import model.Status;
+import model.Task;
+
+import java.util.List;
+import java.util.Locale;
+
+// Полнотекстовый поиск: top-10 по частому слову, по двум частым словам, по редкому слову
+// и по префиксу против просмотра всех задач с поиском подстроки, плюс стоимость обновления
+// индекса при смене текста задачи. Тексты — из русских и английских слов, частота слов
+// убывает как у естественного текста: первые слова словаря встречаются в большинстве задач,
+// «модуль N» — примерно в сотне задач
+final class SearchBenchmarks {
+
+    private static final String[] WORDS = {
+            "задача", "проект", "отчёт", "сборка", "тесты", "клиент", "релиз", "ошибка", "документация",
+            "встреча", "разработка", "разработчик", "дизайн", "сервер", "база", "данных", "оплата",
+            "интерфейс", "миграция", "проверка", "task", "build", "release", "review", "deploy", "fix",
+            "report", "meeting", "server", "client", "update", "design", "refactoring", "performance",
+            "security", "backup", "monitoring", "invoice", "support", "planning"};
+    private static final int LIMIT = 10;
+
+    private SearchBenchmarks() {
+    }
+
+    static void run(Bench bench, int[] sizes) throws Exception {
+        for (int size : sizes) {
+            String param = String.valueOf(size);
+            TaskManagerBenchmarks.XorShift random = new TaskManagerBenchmarks.XorShift();
+            InMemoryTaskManager manager = new InMemoryTaskManager();
+            manager.beginBatch();
+            int firstId = 0;
+            for (int i = 0; i < size; i++) {
+                Task task = manager.createTask(text(random, 3, size), text(random, 8, size), Status.NEW);
+                if (i == 0) {
+                    firstId = task.getId();
+                }
+            }
+            manager.commitBatch();
+            int first = firstId;
+            int last = firstId + size - 1;
+            List<Task> all = manager.getAllTasks();
+
+            bench.measure("Search.commonWord", param, () -> manager.search("задача", LIMIT).size());
+            bench.measure("Search.twoCommonWords", param, () -> manager.search("проект отчёт", LIMIT).size());
+            bench.measure("Search.rareWord", param, () ->
+                    manager.search("модуль " + random.next(0, size / 100), LIMIT).size());
+            bench.measure("Search.prefix", param, () -> manager.search("разраб*", LIMIT).size());
+            bench.measure("Search.scanAll(contains)", param, () -> {
+                int found = 0;
+                for (Task task : all) {
+                    if (task.getTitle().toLowerCase(Locale.ROOT).contains("задач")
+                            || task.getDescription().toLowerCase(Locale.ROOT).contains("задач")) {
+                        found++;
+                    }
+                }
+                return found;
+            });
+            bench.measure("Search.updateTask(new text)", param, () -> {
+                int id = random.next(first, last);
+                manager.updateTask(new Task(id, text(random, 3, size), text(random, 8, size), Status.NEW));
+                return id;
+            });
+        }
+    }
+
+    // words слов словаря с убывающей частотой и «модуль N» в конце
+    private static String text(TaskManagerBenchmarks.XorShift random, int words, int size) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            // квадрат равномерного числа: первые слова словаря заметно чаще последних
+            int r = random.next(0, 999);
+            text.append(WORDS[r * r * WORDS.length / 1_000_000]).append(' ');
+        }
+        return text.append("модуль ").append(random.next(0, size / 100)).toString();
+    }
+}
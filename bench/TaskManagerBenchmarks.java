@@ -0,0 +1,96 @@
+import manager.DurabilityPolicy;
+import manager.FileBackedTaskManager;
+import manager.InMemoryTaskManager;
+import manager.TaskManager;
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+
+import java.io.File;
+
+// create/get/update/remove на заполненном менеджере. Создание замеряется в паре с удалением,
+// чтобы размер хранилища не рос от замера к замеру
+final class TaskManagerBenchmarks {
+
+    private TaskManagerBenchmarks() {
+    }
+
+    static void run(Bench bench, int[] sizes) throws Exception {
+        for (int size : sizes) {
+            String param = String.valueOf(size);
+            runFor(bench, "InMemory", param, new InMemoryTaskManager(), size);
+
+            File file = File.createTempFile("bench-tasks", ".csv");
+            try (FileBackedTaskManager manager = new FileBackedTaskManager(file, true)) {
+                manager.setDurabilityPolicy(DurabilityPolicy.groupCommit(1000, 50));
+                runFor(bench, "FileBacked(journal, group commit)", param, manager, size);
+            } finally {
+                delete(file);
+            }
+
+            file = File.createTempFile("bench-tasks", ".csv");
+            try (FileBackedTaskManager manager = new FileBackedTaskManager(file, true)) {
+                manager.setDurabilityPolicy(DurabilityPolicy.sync());
+                runFor(bench, "FileBacked(journal, sync)", param, manager, size);
+            } finally {
+                delete(file);
+            }
+        }
+    }
+
+    private static void runFor(Bench bench, String name, String param, TaskManager manager, int size)
+            throws Exception {
+        manager.beginBatch();
+        Epic epic = manager.createEpic("Epic", "Bench epic", Status.NEW);
+        int firstId = epic.getId() + 1;
+        for (int i = 0; i < size; i++) {
+            manager.createTask("Task " + i, "Description " + i, Status.NEW);
+        }
+        manager.commitBatch();
+        int lastId = firstId + size - 1;
+        XorShift random = new XorShift();
+
+        bench.measure(name + ".getTaskById", param, () -> {
+            Task task = manager.getTaskById(random.next(firstId, lastId));
+            return task == null ? 0 : task.getId();
+        });
+        bench.measure(name + ".updateTask", param, () -> {
+            int id = random.next(firstId, lastId);
+            Task task = new Task(id, "Task " + id, "Updated", random.nextBoolean() ? Status.DONE : Status.NEW);
+            manager.updateTask(task);
+            return id;
+        });
+        bench.measure(name + ".createTask+removeById", param, () -> {
+            Task task = manager.createTask("Temp", "Temp", Status.NEW);
+            manager.removeById(task.getId());
+            return task.getId();
+        });
+        bench.measure(name + ".createSubtask+removeById", param, () -> {
+            Subtask subtask = manager.createSubtask("Temp", "Temp", Status.DONE, epic.getId());
+            manager.removeById(subtask.getId());
+            return subtask.getId();
+        });
+    }
+
+    static void delete(File file) {
+        file.delete();
+        FileBackedTaskManager.journalFileFor(file).delete();
+    }
+
+    // Детерминированный генератор, чтобы прогоны были сравнимы между собой
+    static final class XorShift {
+        private long state = 0x9E3779B97F4A7C15L;
+
+        int next(int from, int to) {
+            state ^= state << 13;
+            state ^= state >>> 7;
+            state ^= state << 17;
+            return from + (int) Math.floorMod(state, (long) (to - from + 1));
+        }
+
+        boolean nextBoolean() {
+            return next(0, 1) == 1;
+        }
+    }
+}
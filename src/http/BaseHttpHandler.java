@@ -0,0 +1,213 @@
+package http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import manager.TaskManager;
+import manager.TimeOverlapException;
+import model.Task;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Общая часть обработчиков: разбор пути и параметров, ответы и коды ошибок.
+// Тело запроса всегда дочитывается, а обмен закрывается, чтобы соединение
+// оставалось открытым для следующего запроса клиента (keep-alive). Тело больше
+// MAX_BODY_BYTES в память не читается — на него отвечает 413
+abstract class BaseHttpHandler implements HttpHandler {
+
+    // Клиент, передавший этот заголовок, получает собственную историю просмотров
+    static final String SESSION_HEADER = "X-Session-Id";
+
+    // Кодировщики с буферами переиспользуются между запросами. Виртуальных потоков много
+    // и живут они один запрос, поэтому вместо ThreadLocal — общий пул; слишком разросшиеся буферы в него не возвращаются
+    private static final BlockingQueue<TaskJson> CODECS = new ArrayBlockingQueue<>(256);
+    private static final int MAX_POOLED_CAPACITY = 1 << 20;
+    // Задача в JSON занимает сотни байт, мегабайта хватает с большим запасом
+    static final int MAX_BODY_BYTES = 1 << 20;
+    // Лишнее тело до этого размера дочитывается впустую, чтобы клиент, ещё отправляющий его,
+    // получил ответ 413, а не сброс соединения. Тело ещё больше не дочитывается — соединение обрывается
+    private static final long MAX_DRAIN_BYTES = 16L << 20;
+
+    protected final TaskManager manager;
+
+    protected BaseHttpHandler(TaskManager manager) {
+        this.manager = manager;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = readBody(exchange);
+            if (body == null) {
+                sendError(exchange, 413, "Тело запроса больше " + MAX_BODY_BYTES + " байт");
+                return;
+            }
+            String[] path = segments(exchange);
+            switch (exchange.getRequestMethod()) {
+                case "GET" -> handleGet(exchange, path);
+                case "POST" -> handlePost(exchange, path, body);
+                case "DELETE" -> handleDelete(exchange, path);
+                default -> sendError(exchange, 405, "Метод не поддерживается");
+            }
+        } catch (NoSuchElementException e) {
+            sendError(exchange, 404, e.getMessage());
+        } catch (TimeOverlapException e) {
+            sendError(exchange, 406, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (UnsupportedOperationException e) {
+            sendError(exchange, 405, e.getMessage());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, "Внутренняя ошибка: " + e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    protected void handleGet(HttpExchange exchange, String[] path) throws IOException {
+        throw new UnsupportedOperationException("Метод GET не поддерживается");
+    }
+
+    protected void handlePost(HttpExchange exchange, String[] path, byte[] body) throws IOException {
+        throw new UnsupportedOperationException("Метод POST не поддерживается");
+    }
+
+    protected void handleDelete(HttpExchange exchange, String[] path) throws IOException {
+        throw new UnsupportedOperationException("Метод DELETE не поддерживается");
+    }
+
+    // Тело запроса или null, если оно больше MAX_BODY_BYTES. Content-Length проверяется заранее,
+    // а тело без длины (chunked) читается не дальше предела
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null) {
+            long declared;
+            try {
+                declared = Long.parseLong(length.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Некорректный Content-Length: " + length);
+            }
+            if (declared > MAX_BODY_BYTES) {
+                if (declared <= MAX_DRAIN_BYTES) {
+                    drain(in);
+                }
+                return null;
+            }
+        }
+        byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+        if (body.length > MAX_BODY_BYTES) {
+            drain(in);
+            return null;
+        }
+        return body;
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        long drained = 0;
+        int read;
+        while (drained < MAX_DRAIN_BYTES && (read = in.read(buffer)) >= 0) {
+            drained += read;
+        }
+    }
+
+    // "/epics/3/subtasks" -> ["epics", "3", "subtasks"]
+    private static String[] segments(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        String trimmed = path.replaceAll("^/+|/+$", "");
+        return trimmed.isEmpty() ? new String[0] : trimmed.split("/+");
+    }
+
+    protected static Map<String, String> queryParams(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    protected static int parseId(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректный id: " + value);
+        }
+    }
+
+    protected static String sessionId(HttpExchange exchange) {
+        return exchange.getRequestHeaders().getFirst(SESSION_HEADER);
+    }
+
+    protected static TaskJson acquireCodec() {
+        TaskJson codec = CODECS.poll();
+        return codec != null ? codec.reset() : new TaskJson();
+    }
+
+    protected static void releaseCodec(TaskJson codec) {
+        if (codec.capacity() <= MAX_POOLED_CAPACITY) {
+            CODECS.offer(codec.reset());
+        }
+    }
+
+    protected static void sendTask(HttpExchange exchange, int code, Task task) throws IOException {
+        TaskJson json = acquireCodec();
+        try {
+            sendJson(exchange, code, json.write(task));
+        } finally {
+            releaseCodec(json);
+        }
+    }
+
+    // Список пишется в ответ по мере кодирования, с передачей частями (chunked)
+    protected static void sendTasks(HttpExchange exchange, List<? extends Task> tasks) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        TaskJson json = acquireCodec();
+        try (OutputStream out = exchange.getResponseBody()) {
+            json.writeArray(out, tasks);
+        } finally {
+            releaseCodec(json);
+        }
+    }
+
+    protected static void sendJson(HttpExchange exchange, int code, TaskJson json) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(code, json.length());
+        try (OutputStream out = exchange.getResponseBody()) {
+            json.writeTo(out);
+        }
+    }
+
+    protected static void sendEmpty(HttpExchange exchange, int code) throws IOException {
+        exchange.sendResponseHeaders(code, -1);
+    }
+
+    protected static void sendError(HttpExchange exchange, int code, String message) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            return; // ответ уже начат, например ошибка посреди потоковой выдачи — остаётся оборвать его
+        }
+        TaskJson json = acquireCodec();
+        try {
+            sendJson(exchange, code, json.writeAscii("{\"error\":").writeString(message).writeAscii("}"));
+        } finally {
+            releaseCodec(json);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package http;
+
+import com.sun.net.httpserver.HttpExchange;
+import manager.TaskManager;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+// /history: общая история просмотров или история сессии из заголовка X-Session-Id
+class HistoryHandler extends BaseHttpHandler {
+
+    HistoryHandler(TaskManager manager) {
+        super(manager);
+    }
+
+    @Override
+    protected void handleGet(HttpExchange exchange, String[] path) throws IOException {
+        if (path.length != 1) {
+            throw new NoSuchElementException("Нет такого адреса");
+        }
+        String sessionId = sessionId(exchange);
+        sendTasks(exchange, sessionId == null ? manager.getHistory() : manager.getHistory(sessionId));
+    }
+}
@@ -0,0 +1,82 @@
+package http;
+
+import com.sun.net.httpserver.HttpServer;
+import manager.Managers;
+import manager.TaskManager;
+import model.TaskType;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// HTTP/JSON API над менеджером задач. Каждый запрос обрабатывается в своём виртуальном потоке,
+// поэтому тысячи одновременных клиентов не требуют тысяч потоков ОС. Соединения HTTP/1.1
+// переиспользуются (keep-alive), большие списки отдаются потоком по мере кодирования.
+// Менеджер вызывается из многих потоков сразу и должен быть потокобезопасным,
+// например Managers.getConcurrent()
+//
+//   GET    /tasks, /epics, /subtasks          список
+//   GET    /tasks/{id} (и для эпиков, подзадач) задача; просмотр попадает в историю
+//   GET    /epics/{id}/subtasks               подзадачи эпика
+//   POST   /tasks, /epics, /subtasks          создание (без id) или изменение (с id)
+//   DELETE /tasks, /tasks/{id} ...            удаление всех или одной
+//   GET    /history                           история просмотров
+//   GET    /prioritized                       задачи и подзадачи в порядке времени начала
+//   GET    /query?type=&status=&epic=&after=&limit=  выборка страницами
+//   GET    /search?q=&limit=                  полнотекстовый поиск по названиям и описаниям
+//
+// С заголовком X-Session-Id просмотры и история ведутся отдельно для каждой сессии
+public class HttpTaskServer {
+
+    public static final int DEFAULT_PORT = 8080;
+    // Очередь ещё не принятых соединений; по умолчанию у ОС она слишком мала для всплеска клиентов
+    private static final int BACKLOG = 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public HttpTaskServer(TaskManager manager) throws IOException {
+        this(manager, DEFAULT_PORT);
+    }
+
+    // port = 0 — любой свободный порт, его вернёт getPort()
+    public HttpTaskServer(TaskManager manager, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        server.createContext("/tasks", new TaskHandler(manager, TaskType.TASK));
+        server.createContext("/epics", new TaskHandler(manager, TaskType.EPIC));
+        server.createContext("/subtasks", new TaskHandler(manager, TaskType.SUBTASK));
+        server.createContext("/history", new HistoryHandler(manager));
+        server.createContext("/prioritized", new PrioritizedHandler(manager));
+        server.createContext("/query", new QueryHandler(manager));
+        server.createContext("/search", new SearchHandler(manager));
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // Ждёт до delaySeconds завершения начатых запросов
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.close();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public static void main(String[] args) throws IOException {
+        // Сколько простаивающих keep-alive соединений держать открытыми; встроенный сервер
+        // читает настройку при первом запуске, по умолчанию их всего 200
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", "10000");
+        }
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        HttpTaskServer server = new HttpTaskServer(Managers.getConcurrent(), port);
+        server.start();
+        System.out.println("HTTP-сервер запущен на порту " + server.getPort());
+    }
+}
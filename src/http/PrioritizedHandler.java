@@ -0,0 +1,23 @@
+package http;
+
+import com.sun.net.httpserver.HttpExchange;
+import manager.TaskManager;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+// /prioritized: задачи и подзадачи со временем начала, от ранних к поздним
+class PrioritizedHandler extends BaseHttpHandler {
+
+    PrioritizedHandler(TaskManager manager) {
+        super(manager);
+    }
+
+    @Override
+    protected void handleGet(HttpExchange exchange, String[] path) throws IOException {
+        if (path.length != 1) {
+            throw new NoSuchElementException("Нет такого адреса");
+        }
+        sendTasks(exchange, manager.getPrioritizedTasks());
+    }
+}
@@ -0,0 +1,58 @@
+package http;
+
+import com.sun.net.httpserver.HttpExchange;
+import manager.TaskManager;
+import manager.TaskPage;
+import manager.TaskQuery;
+import model.Status;
+import model.TaskType;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+// /query?type=SUBTASK&status=DONE&epic=3&after=0&limit=100 — выборка страницами в порядке id.
+// Ответ: {"items":[...],"nextCursor":N,"hasMore":true}; следующая страница — с after=nextCursor
+class QueryHandler extends BaseHttpHandler {
+
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 10_000;
+
+    QueryHandler(TaskManager manager) {
+        super(manager);
+    }
+
+    @Override
+    protected void handleGet(HttpExchange exchange, String[] path) throws IOException {
+        if (path.length != 1) {
+            throw new NoSuchElementException("Нет такого адреса");
+        }
+        Map<String, String> params = queryParams(exchange);
+        TaskQuery query = TaskQuery.all();
+        if (params.containsKey("type")) {
+            query = query.withType(TaskType.valueOf(params.get("type")));
+        }
+        if (params.containsKey("status")) {
+            query = query.withStatus(Status.valueOf(params.get("status")));
+        }
+        if (params.containsKey("epic")) {
+            query = query.withEpic(parseId(params.get("epic")));
+        }
+        int after = params.containsKey("after") ? parseId(params.get("after")) : 0;
+        int limit = params.containsKey("limit") ? parseId(params.get("limit")) : DEFAULT_LIMIT;
+        if (limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Размер страницы больше " + MAX_LIMIT);
+        }
+        TaskPage page = manager.queryPage(query, after, limit);
+
+        TaskJson json = acquireCodec();
+        try {
+            json.writeAscii("{\"items\":").writeArray(page.getItems())
+                    .writeAscii(",\"nextCursor\":").writeInt(page.getNextCursor())
+                    .writeAscii(",\"hasMore\":").writeAscii(Boolean.toString(page.hasMore())).writeAscii("}");
+            sendJson(exchange, 200, json);
+        } finally {
+            releaseCodec(json);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package http;
+
+import com.sun.net.httpserver.HttpExchange;
+import manager.TaskManager;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+// /search?q=отчёт+разраб*&limit=20 — полнотекстовый поиск, самые подходящие задачи первыми
+class SearchHandler extends BaseHttpHandler {
+
+    static final int DEFAULT_LIMIT = 20;
+    static final int MAX_LIMIT = 1_000;
+
+    SearchHandler(TaskManager manager) {
+        super(manager);
+    }
+
+    @Override
+    protected void handleGet(HttpExchange exchange, String[] path) throws IOException {
+        if (path.length != 1) {
+            throw new NoSuchElementException("Нет такого адреса");
+        }
+        Map<String, String> params = queryParams(exchange);
+        String query = params.get("q");
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Не задан запрос q");
+        }
+        int limit = params.containsKey("limit") ? parseId(params.get("limit")) : DEFAULT_LIMIT;
+        if (limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Размер выдачи больше " + MAX_LIMIT);
+        }
+        sendTasks(exchange, manager.search(query, limit));
+    }
+}
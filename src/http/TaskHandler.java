@@ -0,0 +1,196 @@
+package http;
+
+import com.sun.net.httpserver.HttpExchange;
+import manager.TaskManager;
+import manager.TaskQuery;
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import model.TaskType;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// /tasks, /epics и /subtasks: список, задача по id, создание и изменение (POST), удаление.
+// Для эпика дополнительно /epics/{id}/subtasks. Время эпика считается по подзадачам
+// и из тела не берётся; пересечение по времени с другой задачей — ответ 406
+class TaskHandler extends BaseHttpHandler {
+
+    private final TaskType type;
+
+    TaskHandler(TaskManager manager, TaskType type) {
+        super(manager);
+        this.type = type;
+    }
+
+    @Override
+    protected void handleGet(HttpExchange exchange, String[] path) throws IOException {
+        if (path.length == 1) {
+            sendTasks(exchange, all());
+            return;
+        }
+        int id = parseId(path[1]);
+        if (path.length == 3 && type == TaskType.EPIC && "subtasks".equals(path[2])) {
+            require(id);
+            sendTasks(exchange, manager.getSubtasksOfEpic(id));
+            return;
+        }
+        if (path.length != 2) {
+            throw new NoSuchElementException("Нет такого адреса");
+        }
+        Task task = view(id, sessionId(exchange));
+        if (task == null) {
+            throw notFound(id);
+        }
+        sendTask(exchange, 200, task);
+    }
+
+    // Без id в теле задача создаётся, с id — изменяется
+    @Override
+    protected void handlePost(HttpExchange exchange, String[] path, byte[] body) throws IOException {
+        if (path.length != 1) {
+            throw new NoSuchElementException("Нет такого адреса");
+        }
+        TaskJson json = acquireCodec();
+        TaskJson.Fields fields;
+        try {
+            fields = json.read(body, 0, body.length, new TaskJson.Fields());
+        } finally {
+            releaseCodec(json);
+        }
+        String title = fields.getTitle();
+        if (title == null) {
+            throw new IllegalArgumentException("Не указано название задачи");
+        }
+        if (!fields.hasId() || fields.getId() == 0) {
+            sendTask(exchange, 201, create(title, fields.getDescription(), status(fields, Status.NEW), fields));
+            return;
+        }
+        int id = fields.getId();
+        Task existing = require(id);
+        if (existing instanceof Epic) {
+            // статус эпика считается по подзадачам, поэтому меняются только название и описание —
+            // на хранимом эпике, под его замком, чтобы не потерять одновременно созданные подзадачи
+            Epic epic = manager.updateEpic(id, title, fields.getDescription());
+            if (epic == null) {
+                throw notFound(id);
+            }
+            sendTask(exchange, 200, epic);
+            return;
+        }
+        String description = description(fields, existing);
+        Task updated;
+        if (existing instanceof Subtask subtask) {
+            if (fields.hasEpicId() && fields.getEpicId() != subtask.getEpicId()) {
+                throw new IllegalArgumentException("Подзадачу нельзя перенести в другой эпик");
+            }
+            updated = new Subtask(id, title, description, status(fields, subtask.getStatus()), subtask.getEpicId(),
+                    startTime(fields, subtask), duration(fields, subtask));
+        } else {
+            updated = new Task(id, title, description, status(fields, existing.getStatus()),
+                    startTime(fields, existing), duration(fields, existing));
+        }
+        manager.updateTask(updated);
+        sendTask(exchange, 200, updated);
+    }
+
+    @Override
+    protected void handleDelete(HttpExchange exchange, String[] path) throws IOException {
+        if (path.length == 1) {
+            switch (type) {
+                case TASK -> manager.removeAllTasks();
+                case EPIC -> manager.removeAllEpics();
+                default -> manager.removeAllSubtasks();
+            }
+        } else if (path.length == 2) {
+            int id = parseId(path[1]);
+            require(id);
+            manager.removeById(id);
+        } else {
+            throw new NoSuchElementException("Нет такого адреса");
+        }
+        sendEmpty(exchange, 204);
+    }
+
+    private List<? extends Task> all() {
+        switch (type) {
+            case TASK:
+                return manager.getAllTasks();
+            case EPIC:
+                return manager.getAllEpics();
+            default:
+                return manager.getAllSubtasks();
+        }
+    }
+
+    // Просмотр задачи попадает в историю: общую или сессии клиента
+    private Task view(int id, String sessionId) {
+        switch (type) {
+            case TASK:
+                return sessionId == null ? manager.getTaskById(id) : manager.getTaskById(id, sessionId);
+            case EPIC:
+                return sessionId == null ? manager.getEpicById(id) : manager.getEpicById(id, sessionId);
+            default:
+                return sessionId == null ? manager.getSubtaskById(id) : manager.getSubtaskById(id, sessionId);
+        }
+    }
+
+    private Task create(String title, String description, Status status, TaskJson.Fields fields) {
+        switch (type) {
+            case TASK:
+                return manager.createTask(title, description, status, fields.getStartTime(), fields.getDuration());
+            case EPIC:
+                return manager.createEpic(title, description, Status.NEW);
+            default:
+                if (!fields.hasEpicId()) {
+                    throw new IllegalArgumentException("Не указан эпик подзадачи");
+                }
+                int epic = fields.getEpicId();
+                if (find(epic, TaskType.EPIC) == null) {
+                    throw new IllegalArgumentException("Эпик " + epic + " не найден");
+                }
+                return manager.createSubtask(title, description, status, epic,
+                        fields.getStartTime(), fields.getDuration());
+        }
+    }
+
+    // Без описания в теле (или с null) остаётся прежнее
+    private static String description(TaskJson.Fields fields, Task existing) {
+        return fields.getDescription() != null ? fields.getDescription() : existing.getDescription();
+    }
+
+    // Без статуса в теле остаётся прежний, у новой задачи — NEW
+    private static Status status(TaskJson.Fields fields, Status absent) {
+        return fields.hasStatus() ? fields.getStatus() : absent;
+    }
+
+    // Без времени в теле остаётся прежнее, "startTime":null убирает задачу из расписания
+    private static LocalDateTime startTime(TaskJson.Fields fields, Task existing) {
+        return fields.hasStartTime() ? fields.getStartTime() : existing.getStartTime();
+    }
+
+    private static Duration duration(TaskJson.Fields fields, Task existing) {
+        return fields.hasDuration() ? fields.getDuration() : existing.getDuration();
+    }
+
+    // Поиск без записи в историю
+    private Task require(int id) {
+        Task task = find(id, type);
+        if (task == null) {
+            throw notFound(id);
+        }
+        return task;
+    }
+
+    private Task find(int id, TaskType type) {
+        return manager.query(TaskQuery.all().withType(type).withIdRange(id, id)).findFirst().orElse(null);
+    }
+
+    private NoSuchElementException notFound(int id) {
+        return new NoSuchElementException("Задача " + id + " типа " + type + " не найдена");
+    }
+}
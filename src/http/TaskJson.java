@@ -0,0 +1,731 @@
+package http;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import model.TaskType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+
+// JSON для задач без отражения и промежуточных Map. Кодирование идёт сразу в UTF-8
+// в собственный буфер, который переиспользуется между вызовами: имена полей и значения
+// перечислений заранее лежат готовыми байтами, числа пишутся без Integer.toString.
+// Разбор тоже идёт по байтам: имена полей сравниваются с известными на месте,
+// значения складываются в переиспользуемый Fields, строки создаются только для значений.
+// Объект не потокобезопасен: каждому потоку нужен свой или взятый из пула
+public final class TaskJson {
+
+    private static final int DEFAULT_CAPACITY = 8 * 1024;
+    // С какого заполнения буфера потоковая запись списка отдаёт его в OutputStream
+    private static final int FLUSH_THRESHOLD = 32 * 1024;
+
+    private static final byte[] ID = ascii("{\"id\":");
+    private static final byte[] TYPE = ascii(",\"type\":");
+    private static final byte[] TITLE = ascii(",\"title\":");
+    private static final byte[] DESCRIPTION = ascii(",\"description\":");
+    private static final byte[] STATUS = ascii(",\"status\":");
+    private static final byte[] EPIC_ID = ascii(",\"epicId\":");
+    private static final byte[] SUBTASKS = ascii(",\"subtasks\":[");
+    private static final byte[] START_TIME = ascii(",\"startTime\":");
+    private static final byte[] DURATION = ascii(",\"duration\":");
+    private static final byte[] END_TIME = ascii(",\"endTime\":");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[][] STATUS_VALUES = quoted(Status.values());
+    private static final byte[][] TYPE_VALUES = quoted(TaskType.values());
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    // Имена полей при разборе; номер в массиве — код поля
+    private static final byte[][] FIELD_NAMES = {ascii("id"), ascii("type"), ascii("title"),
+            ascii("description"), ascii("status"), ascii("epicId"), ascii("subtasks"), ascii("startTime"),
+            ascii("duration")};
+    private static final int FIELD_ID = 0;
+    private static final int FIELD_TYPE = 1;
+    private static final int FIELD_TITLE = 2;
+    private static final int FIELD_DESCRIPTION = 3;
+    private static final int FIELD_STATUS = 4;
+    private static final int FIELD_EPIC_ID = 5;
+    private static final int FIELD_SUBTASKS = 6;
+    private static final int FIELD_START_TIME = 7;
+    private static final int FIELD_DURATION = 8;
+    private static final int MAX_DEPTH = 64;
+
+    private byte[] buffer;
+    private int length;
+
+    // Состояние разбора
+    private byte[] input;
+    private int position;
+    private int limit;
+
+    public TaskJson() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TaskJson(int capacity) {
+        buffer = new byte[Math.max(16, capacity)];
+    }
+
+    // Закодированные байты — buffer()[0 .. length())
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    public TaskJson reset() {
+        length = 0;
+        return this;
+    }
+
+    // Отдаёт накопленное в поток и очищает буфер
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, length);
+        length = 0;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // {"id":1,"type":"SUBTASK","title":"...","description":"...","status":"NEW","epicId":2};
+    // у эпика вместо epicId — "subtasks":[id, ...]. Время, если оно есть, идёт после статуса
+    // в ISO-8601: "startTime":"2024-05-01T10:00","duration":"PT1H30M","endTime":"2024-05-01T11:30"
+    // (у эпика оно посчитано по подзадачам)
+    public TaskJson write(Task task) {
+        append(ID);
+        writeInt(task.getId());
+        append(TYPE);
+        append(TYPE_VALUES[task.getType().ordinal()]);
+        append(TITLE);
+        writeString(task.getTitle());
+        append(DESCRIPTION);
+        writeString(task.getDescription());
+        append(STATUS);
+        append(task.getStatus() == null ? NULL : STATUS_VALUES[task.getStatus().ordinal()]);
+        LocalDateTime startTime = task.getStartTime();
+        if (startTime != null) {
+            append(START_TIME);
+            writeString(startTime.toString());
+        }
+        Duration duration = task.getDuration();
+        if (duration != null) {
+            append(DURATION);
+            writeString(duration.toString());
+        }
+        if (startTime != null) {
+            append(END_TIME);
+            writeString(task.getEndTime().toString());
+        }
+        if (task instanceof Subtask subtask) {
+            append(EPIC_ID);
+            writeInt(subtask.getEpicId());
+        } else if (task instanceof Epic epic) {
+            append(SUBTASKS);
+            boolean first = true;
+            for (Subtask subtask : epic.getSubtasks()) {
+                if (!first) {
+                    writeByte(',');
+                }
+                writeInt(subtask.getId());
+                first = false;
+            }
+            writeByte(']');
+        }
+        writeByte('}');
+        return this;
+    }
+
+    // Массив целиком в буфер
+    public TaskJson writeArray(Iterable<? extends Task> tasks) {
+        writeByte('[');
+        boolean first = true;
+        for (Task task : tasks) {
+            if (!first) {
+                writeByte(',');
+            }
+            write(task);
+            first = false;
+        }
+        writeByte(']');
+        return this;
+    }
+
+    // Массив в поток: буфер сбрасывается по мере заполнения, поэтому список любой длины
+    // кодируется в памяти размером около FLUSH_THRESHOLD
+    public void writeArray(OutputStream out, Iterable<? extends Task> tasks) throws IOException {
+        writeByte('[');
+        boolean first = true;
+        for (Task task : tasks) {
+            if (!first) {
+                writeByte(',');
+            }
+            write(task);
+            first = false;
+            if (length >= FLUSH_THRESHOLD) {
+                writeTo(out);
+            }
+        }
+        writeByte(']');
+        writeTo(out);
+    }
+
+    // Символы ASCII как есть: скобки, имена полей, литералы true/false
+    public TaskJson writeAscii(String ascii) {
+        ensure(ascii.length());
+        for (int i = 0; i < ascii.length(); i++) {
+            buffer[length++] = (byte) ascii.charAt(i);
+        }
+        return this;
+    }
+
+    public TaskJson writeInt(long value) {
+        ensure(20);
+        if (value < 0) {
+            buffer[length++] = '-';
+        } else {
+            value = -value; // считаем в отрицательных, чтобы не переполниться на Long.MIN_VALUE
+        }
+        int start = length;
+        do {
+            buffer[length++] = (byte) ('0' - value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            byte digit = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = digit;
+        }
+        return this;
+    }
+
+    // Строка в кавычках в UTF-8. Экранируются кавычка, обратная косая черта и управляющие символы;
+    // одиночная половина суррогатной пары пишется как \\uXXXX, чтобы не получить некорректный UTF-8
+    public TaskJson writeString(String value) {
+        if (value == null) {
+            append(NULL);
+            return this;
+        }
+        ensure(value.length() * 6 + 2);
+        byte[] out = buffer;
+        int at = length;
+        out[at++] = '"';
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    out[at++] = (byte) c;
+                    continue;
+                }
+                out[at++] = '\\';
+                switch (c) {
+                    case '"' -> out[at++] = '"';
+                    case '\\' -> out[at++] = '\\';
+                    case '\n' -> out[at++] = 'n';
+                    case '\r' -> out[at++] = 'r';
+                    case '\t' -> out[at++] = 't';
+                    case '\b' -> out[at++] = 'b';
+                    case '\f' -> out[at++] = 'f';
+                    default -> at = unicodeEscape(out, at, c);
+                }
+            } else if (c < 0x800) {
+                out[at++] = (byte) (0xC0 | c >> 6);
+                out[at++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    out[at++] = (byte) (0xF0 | codePoint >> 18);
+                    out[at++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                    out[at++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                    out[at++] = (byte) (0x80 | codePoint & 0x3F);
+                } else {
+                    out[at++] = '\\';
+                    at = unicodeEscape(out, at, c);
+                }
+            } else {
+                out[at++] = (byte) (0xE0 | c >> 12);
+                out[at++] = (byte) (0x80 | c >> 6 & 0x3F);
+                out[at++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        out[at++] = '"';
+        length = at;
+        return this;
+    }
+
+    // Пишет "uXXXX" после уже записанной обратной косой черты
+    private static int unicodeEscape(byte[] out, int at, char c) {
+        out[at++] = 'u';
+        out[at++] = HEX[c >> 12];
+        out[at++] = HEX[c >> 8 & 0xF];
+        out[at++] = HEX[c >> 4 & 0xF];
+        out[at++] = HEX[c & 0xF];
+        return at;
+    }
+
+    private void writeByte(char c) {
+        ensure(1);
+        buffer[length++] = (byte) c;
+    }
+
+    private void append(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+
+    // Разбирает один объект задачи из json[offset .. offset + count) в fields (прежние значения
+    // стираются). Незнакомые поля пропускаются; при ошибке — IllegalArgumentException
+    public Fields read(byte[] json, int offset, int count, Fields fields) {
+        input = json;
+        position = offset;
+        limit = offset + count;
+        fields.clear();
+        try {
+            expect('{');
+            if (!consume('}')) {
+                do {
+                    int field = fieldName();
+                    expect(':');
+                    readField(field, fields);
+                } while (consume(','));
+                expect('}');
+            }
+            skipSpaces();
+            if (position != limit) {
+                throw error("лишние символы после объекта");
+            }
+            return fields;
+        } finally {
+            input = null;
+        }
+    }
+
+    public Fields read(byte[] json) {
+        return read(json, 0, json.length, new Fields());
+    }
+
+    private void readField(int field, Fields fields) {
+        if (field < 0) {
+            skipValue(0);
+            return;
+        }
+        if (peekNull()) {
+            // null во времени — явная просьба убрать время, в остальных полях — то же, что отсутствие
+            if (field == FIELD_START_TIME || field == FIELD_DURATION) {
+                fields.present |= 1 << field;
+            }
+            return;
+        }
+        switch (field) {
+            case FIELD_ID -> fields.id = readInt();
+            case FIELD_TYPE -> fields.type = TaskType.valueOf(readString());
+            case FIELD_TITLE -> fields.title = readString();
+            case FIELD_DESCRIPTION -> fields.description = readString();
+            case FIELD_STATUS -> fields.status = Status.valueOf(readString());
+            case FIELD_EPIC_ID -> fields.epicId = readInt();
+            case FIELD_START_TIME -> fields.startTime = readTime();
+            case FIELD_DURATION -> fields.duration = readDuration();
+            default -> readSubtaskIds(fields);
+        }
+        fields.present |= 1 << field;
+    }
+
+    private LocalDateTime readTime() {
+        int start = position;
+        String value = readString();
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            position = start;
+            throw error("ожидалось время вида 2024-05-01T10:00");
+        }
+    }
+
+    private Duration readDuration() {
+        int start = position;
+        String value = readString();
+        try {
+            return Duration.parse(value);
+        } catch (DateTimeParseException e) {
+            position = start;
+            throw error("ожидалась продолжительность вида PT1H30M");
+        }
+    }
+
+    private void readSubtaskIds(Fields fields) {
+        expect('[');
+        fields.subtaskCount = 0;
+        if (consume(']')) {
+            return;
+        }
+        do {
+            if (fields.subtaskCount == fields.subtaskIds.length) {
+                fields.subtaskIds = Arrays.copyOf(fields.subtaskIds, Math.max(8, fields.subtaskCount * 2));
+            }
+            fields.subtaskIds[fields.subtaskCount++] = readInt();
+        } while (consume(','));
+        expect(']');
+    }
+
+    // Код известного поля или -1. Имя без escape-последовательностей сравнивается с известными
+    // прямо в байтах запроса, строка для него не создаётся
+    private int fieldName() {
+        skipSpaces();
+        if (position >= limit || input[position] != '"') {
+            throw error("ожидалось имя поля");
+        }
+        int start = position + 1;
+        int end = start;
+        while (end < limit && input[end] != '"' && input[end] != '\\') {
+            end++;
+        }
+        if (end < limit && input[end] == '"') {
+            position = end + 1;
+            for (int field = 0; field < FIELD_NAMES.length; field++) {
+                if (Arrays.equals(input, start, end, FIELD_NAMES[field], 0, FIELD_NAMES[field].length)) {
+                    return field;
+                }
+            }
+            return -1;
+        }
+        byte[] name = readString().getBytes(StandardCharsets.UTF_8);
+        for (int field = 0; field < FIELD_NAMES.length; field++) {
+            if (Arrays.equals(name, FIELD_NAMES[field])) {
+                return field;
+            }
+        }
+        return -1;
+    }
+
+    private int readInt() {
+        skipSpaces();
+        int start = position;
+        boolean negative = position < limit && input[position] == '-';
+        if (negative) {
+            position++;
+        }
+        long value = 0;
+        int digits = 0;
+        while (position < limit && input[position] >= '0' && input[position] <= '9') {
+            value = value * 10 + (input[position++] - '0');
+            if (++digits > 10) {
+                break;
+            }
+        }
+        value = negative ? -value : value;
+        if (digits == 0 || digits > 10 || value != (int) value
+                || position < limit && (input[position] == '.' || input[position] == 'e' || input[position] == 'E')) {
+            position = start;
+            throw error("ожидалось целое число");
+        }
+        return (int) value;
+    }
+
+    // Строка без escape-последовательностей создаётся одним вызовом прямо из байтов запроса
+    private String readString() {
+        skipSpaces();
+        if (position >= limit || input[position] != '"') {
+            throw error("ожидалась строка");
+        }
+        int start = ++position;
+        while (position < limit) {
+            byte b = input[position];
+            if (b == '"') {
+                return new String(input, start, position++ - start, StandardCharsets.UTF_8);
+            }
+            if (b == '\\') {
+                return readEscapedString(start);
+            }
+            if (b >= 0 && b < 0x20) {
+                throw error("управляющий символ в строке");
+            }
+            position++;
+        }
+        throw error("незакрытая строка");
+    }
+
+    private String readEscapedString(int start) {
+        StringBuilder value = new StringBuilder(position - start + 16);
+        value.append(new String(input, start, position - start, StandardCharsets.UTF_8));
+        int run = position;
+        while (position < limit) {
+            byte b = input[position];
+            if (b == '"' || b == '\\') {
+                if (position > run) {
+                    value.append(new String(input, run, position - run, StandardCharsets.UTF_8));
+                }
+                position++;
+                if (b == '"') {
+                    return value.toString();
+                }
+                value.append(escape());
+                run = position;
+                continue;
+            }
+            if (b >= 0 && b < 0x20) {
+                throw error("управляющий символ в строке");
+            }
+            position++;
+        }
+        throw error("незакрытая строка");
+    }
+
+    private char escape() {
+        if (position >= limit) {
+            throw error("обрезанная escape-последовательность");
+        }
+        byte c = input[position++];
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'u':
+                if (position + 4 > limit) {
+                    throw error("обрезанная escape-последовательность");
+                }
+                int code = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(input[position++], 16);
+                    if (digit < 0) {
+                        throw error("некорректная escape-последовательность \\u");
+                    }
+                    code = code << 4 | digit;
+                }
+                return (char) code;
+            default:
+                throw error("неизвестная escape-последовательность \\" + (char) c);
+        }
+    }
+
+    private boolean peekNull() {
+        skipSpaces();
+        if (limit - position >= 4 && input[position] == 'n' && input[position + 1] == 'u'
+                && input[position + 2] == 'l' && input[position + 3] == 'l') {
+            position += 4;
+            return true;
+        }
+        return false;
+    }
+
+    // Пропускает значение незнакомого поля любого вида, включая вложенные объекты и массивы
+    private void skipValue(int depth) {
+        if (depth > MAX_DEPTH) {
+            throw error("слишком глубокая вложенность");
+        }
+        skipSpaces();
+        if (position >= limit) {
+            throw error("ожидалось значение");
+        }
+        byte b = input[position];
+        if (b == '"') {
+            readString();
+        } else if (b == '{' || b == '[') {
+            char close = b == '{' ? '}' : ']';
+            position++;
+            if (consume(close)) {
+                return;
+            }
+            do {
+                if (close == '}') {
+                    fieldName();
+                    expect(':');
+                }
+                skipValue(depth + 1);
+            } while (consume(','));
+            expect(close);
+        } else {
+            int start = position;
+            while (position < limit && (input[position] == '-' || input[position] == '+' || input[position] == '.'
+                    || Character.isLetterOrDigit(input[position]))) {
+                position++;
+            }
+            if (position == start) {
+                throw error("ожидалось значение");
+            }
+        }
+    }
+
+    private void skipSpaces() {
+        while (position < limit) {
+            byte b = input[position];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            position++;
+        }
+    }
+
+    private boolean consume(char c) {
+        skipSpaces();
+        if (position < limit && input[position] == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!consume(c)) {
+            throw error("ожидался символ '" + c + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Некорректный JSON в позиции " + position + ": " + message);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[][] quoted(Enum<?>[] values) {
+        byte[][] result = new byte[values.length][];
+        for (Enum<?> value : values) {
+            result[value.ordinal()] = ascii("\"" + value.name() + "\"");
+        }
+        return result;
+    }
+
+    // Поля разобранной задачи. Объект переиспользуется между разборами;
+    // отсутствующее в JSON или равное null поле отмечается has*() == false
+    public static final class Fields {
+        private int present;
+        private int id;
+        private TaskType type;
+        private String title;
+        private String description;
+        private Status status;
+        private int epicId;
+        private int[] subtaskIds = new int[0];
+        private int subtaskCount;
+        private LocalDateTime startTime;
+        private Duration duration;
+
+        private void clear() {
+            present = 0;
+            id = 0;
+            type = null;
+            title = null;
+            description = null;
+            status = null;
+            epicId = 0;
+            subtaskCount = 0;
+            startTime = null;
+            duration = null;
+        }
+
+        private boolean has(int field) {
+            return (present & 1 << field) != 0;
+        }
+
+        public boolean hasId() {
+            return has(FIELD_ID);
+        }
+
+        public boolean hasStatus() {
+            return has(FIELD_STATUS);
+        }
+
+        public boolean hasEpicId() {
+            return has(FIELD_EPIC_ID);
+        }
+
+        // Поле времени есть в теле, в том числе со значением null
+        public boolean hasStartTime() {
+            return has(FIELD_START_TIME);
+        }
+
+        public boolean hasDuration() {
+            return has(FIELD_DURATION);
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public TaskType getType() {
+            return type;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public int getEpicId() {
+            return epicId;
+        }
+
+        public LocalDateTime getStartTime() {
+            return startTime;
+        }
+
+        public Duration getDuration() {
+            return duration;
+        }
+
+        public int[] getSubtaskIds() {
+            return Arrays.copyOf(subtaskIds, subtaskCount);
+        }
+
+        // Задача нужного типа: из поля type, а без него — defaultType.
+        // Подзадачи эпика по id не восстанавливаются, их привязывает менеджер
+        public Task toTask(TaskType defaultType) {
+            TaskType taskType = type != null ? type : defaultType;
+            switch (taskType) {
+                case TASK:
+                    return new Task(id, title, description, status, startTime, duration);
+                case EPIC:
+                    return new Epic(id, title, description, status);
+                default:
+                    if (!hasEpicId()) {
+                        throw new IllegalArgumentException("Не указан эпик подзадачи");
+                    }
+                    return new Subtask(id, title, description, status, epicId, startTime, duration);
+            }
+        }
+    }
+}
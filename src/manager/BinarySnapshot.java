@@ -0,0 +1,397 @@
+package manager;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// Двоичный снимок задач. Строки хранятся с префиксом длины, поэтому запятые и переводы
+// строк в названиях не ломают файл, а чтение не режет строки на части.
+//
+// Заголовок:  "KNBN", версия формата (short), количество записей (int)
+// Запись:     тип (byte: 0 задача, 1 эпик, 2 подзадача), id (int), статус (byte, -1 — нет),
+//             id эпика (int, только у подзадачи), (с версии 3) начало и продолжительность —
+//             секунды (long, Long.MIN_VALUE — нет, тогда без наносекунд) и наносекунды (int),
+//             у эпика всегда нет; название и описание (int длина в байтах UTF-8, -1 — null, затем байты)
+// Индекс:     (с версии 2) по записи на задачу, по возрастанию id: id (int), тип (byte),
+//             статус (byte), id эпика (int, 0 — нет), смещение записи от начала файла (long),
+//             (с версии 3) начало и окончание в наносекундах (long, ScheduleIndex.NO_TIME — нет);
+//             за ним смещение начала индекса (long)
+// Окончание:  CRC32 (long) всех предыдущих байт файла
+final class BinarySnapshot {
+
+    static final byte[] MAGIC = {'K', 'N', 'B', 'N'};
+    static final short VERSION = 3;
+    static final int HEADER_SIZE = MAGIC.length + Short.BYTES + Integer.BYTES;
+    static final int INDEX_ENTRY_SIZE = Integer.BYTES + 2 + Integer.BYTES + 3 * Long.BYTES;
+
+    static final byte TYPE_TASK = 0;
+    static final byte TYPE_EPIC = 1;
+    static final byte TYPE_SUBTASK = 2;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Status[] STATUSES = Status.values();
+
+    private BinarySnapshot() {
+    }
+
+    static boolean isBinary(File file) throws IOException {
+        if (file.length() < MAGIC.length) {
+            return false;
+        }
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            byte[] header = input.readNBytes(MAGIC.length);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (header[i] != MAGIC[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // Пишет снимок в output; поток не закрывается, только сбрасывается
+    static void write(OutputStream output, Collection<Task> tasks, Collection<Epic> epics,
+                      Collection<Subtask> subtasks) throws IOException {
+        CRC32 crc = new CRC32();
+        DataOutputStream out = new DataOutputStream(
+                new CheckedOutputStream(new BufferedOutputStream(output, BUFFER_SIZE), crc));
+        out.write(MAGIC);
+        out.writeShort(VERSION);
+        int count = tasks.size() + epics.size() + subtasks.size();
+        out.writeInt(count);
+        IndexBuilder index = new IndexBuilder(count);
+        for (Task task : tasks) {
+            index.add(TYPE_TASK, task, out.size());
+            writeRecord(out, TYPE_TASK, task);
+        }
+        for (Epic epic : epics) {
+            index.add(TYPE_EPIC, epic, out.size());
+            writeRecord(out, TYPE_EPIC, epic);
+        }
+        for (Subtask subtask : subtasks) {
+            index.add(TYPE_SUBTASK, subtask, out.size());
+            writeRecord(out, TYPE_SUBTASK, subtask);
+        }
+        if (out.size() == Integer.MAX_VALUE) {
+            // DataOutputStream перестаёт считать байты на 2 ГБ, смещения были бы неверны
+            throw new IOException("Двоичный снимок больше 2 ГБ не поддерживается");
+        }
+        index.write(out);
+        out.flush();
+        // сама контрольная сумма в неё не входит, поэтому пишем её мимо CheckedOutputStream
+        DataOutputStream trailer = new DataOutputStream(output);
+        trailer.writeLong(crc.getValue());
+        trailer.flush();
+    }
+
+    // Читает снимок и передаёт задачи по одной в порядке записи: задачи, эпики, подзадачи.
+    // Файл читается через канал крупными блоками, контрольная сумма считается по блоку целиком
+    static void read(File file, Consumer<Task> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long payloadSize = channel.size() - Long.BYTES;
+            if (payloadSize < MAGIC.length + Short.BYTES + Integer.BYTES) {
+                throw new IOException("Двоичный снимок обрезан");
+            }
+            ChannelReader in = new ChannelReader(channel, payloadSize);
+            in.skip(MAGIC.length);
+            short version = in.getShort();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Неподдерживаемая версия двоичного снимка: " + version);
+            }
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                consumer.accept(readRecord(in, version >= 3));
+            }
+            in.skipRemaining(); // индекс при полном чтении не нужен, но входит в контрольную сумму
+            ByteBuffer trailer = ByteBuffer.allocate(Long.BYTES);
+            while (trailer.hasRemaining()) {
+                if (channel.read(trailer, payloadSize + trailer.position()) < 0) {
+                    throw new IOException("Двоичный снимок обрезан");
+                }
+            }
+            if (in.checksum() != trailer.getLong(0)) {
+                throw new IOException("Контрольная сумма снимка не совпадает: файл повреждён");
+            }
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, byte type, Task task) throws IOException {
+        out.writeByte(type);
+        out.writeInt(task.getId());
+        out.writeByte(task.getStatus() == null ? -1 : task.getStatus().ordinal());
+        if (type == TYPE_SUBTASK) {
+            out.writeInt(((Subtask) task).getEpicId());
+        }
+        boolean timed = type != TYPE_EPIC;
+        writeTime(out, timed ? task.getStartTime() : null);
+        writeDuration(out, timed ? task.getDuration() : null);
+        writeString(out, task.getTitle());
+        writeString(out, task.getDescription());
+    }
+
+    // Запись разбирается раньше, чем сверяется контрольная сумма, поэтому коды типа и статуса
+    // проверяются здесь: повреждённый байт должен давать ошибку чтения, а не выход за массив
+    private static Task readRecord(ChannelReader in, boolean timed) throws IOException {
+        byte type = in.get();
+        if (!isType(type)) {
+            throw new IOException("Неизвестный тип записи в снимке: " + type);
+        }
+        int id = in.getInt();
+        byte statusCode = in.get();
+        if (!isStatus(statusCode)) {
+            throw new IOException("Неизвестный статус в записи " + id + " снимка: " + statusCode);
+        }
+        Status status = status(statusCode);
+        int epicId = type == TYPE_SUBTASK ? in.getInt() : 0;
+        LocalDateTime startTime = null;
+        Duration duration = null;
+        if (timed) {
+            try {
+                long seconds = in.getLong();
+                if (seconds != Long.MIN_VALUE) {
+                    startTime = LocalDateTime.ofEpochSecond(seconds, in.getInt(), ZoneOffset.UTC);
+                }
+                seconds = in.getLong();
+                if (seconds != Long.MIN_VALUE) {
+                    duration = Duration.ofSeconds(seconds, in.getInt());
+                }
+            } catch (DateTimeException | ArithmeticException e) {
+                throw new IOException("Некорректное время в записи " + id + " снимка", e);
+            }
+        }
+        String title = in.getString();
+        String description = in.getString();
+        switch (type) {
+            case TYPE_TASK:
+                return new Task(id, title, description, status, startTime, duration);
+            case TYPE_EPIC:
+                return new Epic(id, title, description, status);
+            default:
+                return new Subtask(id, title, description, status, epicId, startTime, duration);
+        }
+    }
+
+    static boolean isType(byte type) {
+        return type == TYPE_TASK || type == TYPE_EPIC || type == TYPE_SUBTASK;
+    }
+
+    // -1 — статуса нет
+    static boolean isStatus(byte code) {
+        return code >= -1 && code < STATUSES.length;
+    }
+
+    static Status status(byte code) {
+        return code < 0 ? null : STATUSES[code];
+    }
+
+    // Записи индекса копятся во время записи снимка и сортируются по id перед выводом
+    private static class IndexBuilder {
+        private final int[] ids;
+        private final byte[] types;
+        private final byte[] statuses;
+        private final int[] epicIds;
+        private final int[] offsets;
+        private final long[] starts;
+        private final long[] ends;
+        private int size;
+
+        private IndexBuilder(int capacity) {
+            ids = new int[capacity];
+            types = new byte[capacity];
+            statuses = new byte[capacity];
+            epicIds = new int[capacity];
+            offsets = new int[capacity];
+            starts = new long[capacity];
+            ends = new long[capacity];
+        }
+
+        void add(byte type, Task task, int offset) throws IOException {
+            if (size == ids.length) {
+                throw new IOException("Состав задач изменился во время записи снимка");
+            }
+            ids[size] = task.getId();
+            types[size] = type;
+            statuses[size] = (byte) (task.getStatus() == null ? -1 : task.getStatus().ordinal());
+            epicIds[size] = task instanceof Subtask subtask ? subtask.getEpicId() : 0;
+            offsets[size] = offset;
+            starts[size] = type == TYPE_EPIC ? ScheduleIndex.NO_TIME : ScheduleIndex.start(task);
+            ends[size] = starts[size] == ScheduleIndex.NO_TIME
+                    ? ScheduleIndex.NO_TIME : ScheduleIndex.end(starts[size], task.getDuration());
+            size++;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            if (size != ids.length) {
+                throw new IOException("Состав задач изменился во время записи снимка");
+            }
+            long indexOffset = out.size();
+            // id в старших битах, номер записи в младших: сортировка long даёт порядок по id
+            long[] order = new long[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = ((long) ids[i] << 32) | i;
+            }
+            Arrays.sort(order);
+            for (long key : order) {
+                int i = (int) key;
+                out.writeInt(ids[i]);
+                out.writeByte(types[i]);
+                out.writeByte(statuses[i]);
+                out.writeInt(epicIds[i]);
+                out.writeLong(offsets[i]);
+                out.writeLong(starts[i]);
+                out.writeLong(ends[i]);
+            }
+            out.writeLong(indexOffset);
+        }
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        if (time == null) {
+            out.writeLong(Long.MIN_VALUE);
+            return;
+        }
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static void writeDuration(DataOutputStream out, Duration duration) throws IOException {
+        if (duration == null) {
+            out.writeLong(Long.MIN_VALUE);
+            return;
+        }
+        out.writeLong(duration.getSeconds());
+        out.writeInt(duration.getNano());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // Последовательное чтение первых limit байт канала через буфер, который дочитывается
+    // по мере разбора; все прочитанные байты сразу учитываются в CRC32
+    private static class ChannelReader {
+        private final FileChannel channel;
+        private final CRC32 crc = new CRC32();
+        private long unread;
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        private ChannelReader(FileChannel channel, long limit) {
+            this.channel = channel;
+            this.unread = limit;
+            buffer.flip();
+        }
+
+        byte get() throws IOException {
+            require(1);
+            return buffer.get();
+        }
+
+        short getShort() throws IOException {
+            require(Short.BYTES);
+            return buffer.getShort();
+        }
+
+        int getInt() throws IOException {
+            require(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            require(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        void skip(int bytes) throws IOException {
+            require(bytes);
+            buffer.position(buffer.position() + bytes);
+        }
+
+        String getString() throws IOException {
+            int length = getInt();
+            if (length == -1) {
+                return null;
+            }
+            if (length < 0) {
+                throw new IOException("Некорректная длина строки в снимке: " + length);
+            }
+            require(length);
+            String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+
+        // Дочитывает все оставшиеся байты, чтобы они попали в контрольную сумму
+        void skipRemaining() throws IOException {
+            while (unread > 0 || buffer.hasRemaining()) {
+                buffer.position(buffer.limit());
+                if (unread > 0) {
+                    require(1);
+                }
+            }
+        }
+
+        long checksum() {
+            return crc.getValue();
+        }
+
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            // длина из повреждённого файла не должна приводить к огромному буферу
+            if (bytes > buffer.remaining() + unread) {
+                throw new IOException("Двоичный снимок обрезан или повреждён");
+            }
+            if (bytes > buffer.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(bytes, buffer.capacity() * 2));
+                larger.put(buffer);
+                larger.flip();
+                buffer = larger;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes && unread > 0) {
+                int start = buffer.position();
+                int limit = (int) Math.min(buffer.capacity(), start + unread);
+                buffer.limit(limit);
+                int read = channel.read(buffer);
+                if (read < 0) {
+                    break;
+                }
+                crc.update(buffer.array(), start, read);
+                unread -= read;
+            }
+            buffer.flip();
+            if (buffer.remaining() < bytes) {
+                throw new IOException("Двоичный снимок обрезан");
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package manager;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Потокобезопасный менеджер для одновременной работы с нескольких потоков.
+// Задачи, эпики и подзадачи лежат в ConcurrentHashMap, id выдаются атомарным счётчиком.
+// Всё, что меняет эпик или его подзадачи, выполняется под замком этого эпика,
+// поэтому изменения подзадач разных эпиков не ждут друг друга, а статус эпика
+// всегда пересчитывается согласованно. Массовые удаления, удаление эпика целиком
+// и пакеты берут общий замок на запись и на это время останавливают остальные операции
+public class ConcurrentTaskManager extends InMemoryTaskManager {
+
+    private final ReentrantReadWriteLock storeLock = new ReentrantReadWriteLock();
+    private final ConcurrentHashMap<Integer, Lock> epicLocks = new ConcurrentHashMap<>();
+
+    public ConcurrentTaskManager() {
+        super(new SynchronizedHistoryManager(Managers.getDefaultHistory()),
+                new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    }
+
+    @Override
+    public Task createTask(String title, String description, Status status,
+                           LocalDateTime startTime, Duration duration) {
+        storeLock.readLock().lock();
+        try {
+            return super.createTask(title, description, status, startTime, duration);
+        } finally {
+            storeLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Epic createEpic(String title, String description, Status status) {
+        storeLock.readLock().lock();
+        try {
+            return super.createEpic(title, description, status);
+        } finally {
+            storeLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Subtask createSubtask(String title, String description, Status status, int epicId,
+                                 LocalDateTime startTime, Duration duration) {
+        storeLock.readLock().lock();
+        Lock epicLock = lockEpic(epicId);
+        try {
+            return super.createSubtask(title, description, status, epicId, startTime, duration);
+        } finally {
+            epicLock.unlock();
+            storeLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Subtask> getSubtasksOfEpic(int epicId) {
+        storeLock.readLock().lock();
+        Lock epicLock = lockEpic(epicId);
+        try {
+            return super.getSubtasksOfEpic(epicId);
+        } finally {
+            epicLock.unlock();
+            storeLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeById(int id) {
+        if (epics.containsKey(id)) {
+            storeLock.writeLock().lock();
+            try {
+                super.removeById(id);
+                epicLocks.remove(id);
+            } finally {
+                storeLock.writeLock().unlock();
+            }
+            return;
+        }
+
+        storeLock.readLock().lock();
+        Subtask subtask = subtasks.get(id);
+        Lock epicLock = subtask == null ? null : lockEpic(subtask.getEpicId());
+        try {
+            super.removeById(id);
+        } finally {
+            if (epicLock != null) {
+                epicLock.unlock();
+            }
+            storeLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        storeLock.readLock().lock();
+        Lock epicLock = null;
+        if (task instanceof Epic) {
+            epicLock = lockEpic(task.getId());
+        } else if (task instanceof Subtask subtask) {
+            epicLock = lockEpic(subtask.getEpicId());
+        }
+        try {
+            super.updateTask(task);
+        } finally {
+            if (epicLock != null) {
+                epicLock.unlock();
+            }
+            storeLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Epic updateEpic(int epicId, String title, String description) {
+        storeLock.readLock().lock();
+        Lock epicLock = lockEpic(epicId);
+        try {
+            return super.updateEpic(epicId, title, description);
+        } finally {
+            epicLock.unlock();
+            storeLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAllTasks() {
+        storeLock.writeLock().lock();
+        try {
+            super.removeAllTasks();
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAllSubtasks() {
+        storeLock.writeLock().lock();
+        try {
+            super.removeAllSubtasks();
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAllEpics() {
+        storeLock.writeLock().lock();
+        try {
+            super.removeAllEpics();
+            epicLocks.clear();
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+    }
+
+    // Срез строится под замком на запись, чтобы в нём не оказалось половины чьей-то операции.
+    // Писатели ждут только пересборку после изменения; чтение неизменившейся версии замок не берёт
+    @Override
+    protected TaskSnapshot buildSnapshot() {
+        storeLock.writeLock().lock();
+        try {
+            return super.buildSnapshot();
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+    }
+
+    // Пакет выполняется монопольно: замок на запись держится от beginBatch до commit/rollback
+    // и должен освобождаться тем же потоком, который начал пакет
+    @Override
+    public void beginBatch() {
+        storeLock.writeLock().lock();
+        try {
+            super.beginBatch();
+        } catch (RuntimeException e) {
+            storeLock.writeLock().unlock();
+            throw e;
+        }
+    }
+
+    @Override
+    public void commitBatch() {
+        checkBatchOwner();
+        try {
+            super.commitBatch();
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void rollbackBatch() {
+        checkBatchOwner();
+        try {
+            super.rollbackBatch();
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+    }
+
+    private void checkBatchOwner() {
+        if (!storeLock.isWriteLockedByCurrentThread()) {
+            throw new IllegalStateException("Пакет не начат этим потоком");
+        }
+    }
+
+    private Lock lockEpic(int epicId) {
+        Lock lock = epicLocks.computeIfAbsent(epicId, id -> new ReentrantLock());
+        lock.lock();
+        return lock;
+    }
+
+    // История общая для всех потоков, каждая операция с ней выполняется под одним монитором
+    private static class SynchronizedHistoryManager implements HistoryManager {
+        private final HistoryManager delegate;
+
+        private SynchronizedHistoryManager(HistoryManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized void add(Task task) {
+            delegate.add(task);
+        }
+
+        @Override
+        public synchronized List<Task> getHistory() {
+            return delegate.getHistory();
+        }
+
+        @Override
+        public synchronized void remove(int id) {
+            delegate.remove(id);
+        }
+
+        @Override
+        public synchronized void restore(List<Task> history) {
+            delegate.restore(history);
+        }
+
+        @Override
+        public synchronized long getRepeatedViews() {
+            return delegate.getRepeatedViews();
+        }
+
+        @Override
+        public synchronized long getEvictions() {
+            return delegate.getEvictions();
+        }
+    }
+}
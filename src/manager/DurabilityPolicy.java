@@ -0,0 +1,82 @@
+package manager;
+
+// Когда изменения менеджера попадают на диск.
+// FLUSH — после каждой операции, но без fsync (по умолчанию, как было всегда): запись отдана ОС
+//   и переживает падение процесса, но не отключение питания.
+// SYNC — после каждой операции с fsync: ничего не теряется, но каждая запись ждёт диск.
+// GROUP_COMMIT — одна запись с fsync на пачку операций (по количеству или по времени):
+//   при сбое теряется не больше одной пачки.
+// ASYNC — запись только фоновым потоком без fsync: самые быстрые операции,
+//   при сбое теряется всё, что не успело сброситься за интервал.
+public class DurabilityPolicy {
+
+    public enum Mode {
+        FLUSH,
+        SYNC,
+        GROUP_COMMIT,
+        ASYNC
+    }
+
+    private final Mode mode;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+
+    private DurabilityPolicy(Mode mode, int maxBatchSize, long maxDelayMillis) {
+        this.mode = mode;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public static DurabilityPolicy flush() {
+        return new DurabilityPolicy(Mode.FLUSH, 1, 0);
+    }
+
+    public static DurabilityPolicy sync() {
+        return new DurabilityPolicy(Mode.SYNC, 1, 0);
+    }
+
+    public static DurabilityPolicy groupCommit(int maxBatchSize, long maxDelayMillis) {
+        if (maxBatchSize < 1 || maxDelayMillis <= 0) {
+            throw new IllegalArgumentException("Размер пачки и задержка должны быть положительными");
+        }
+        return new DurabilityPolicy(Mode.GROUP_COMMIT, maxBatchSize, maxDelayMillis);
+    }
+
+    public static DurabilityPolicy async(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Интервал должен быть положительным");
+        }
+        return new DurabilityPolicy(Mode.ASYNC, Integer.MAX_VALUE, intervalMillis);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    // Нужно ли сбросить изменения сразу, не дожидаясь фонового потока
+    public boolean shouldFlush(int pendingMutations) {
+        return pendingMutations >= maxBatchSize;
+    }
+
+    // Нужно ли дожидаться физической записи на диск (fsync)
+    public boolean isForced() {
+        return mode == Mode.SYNC || mode == Mode.GROUP_COMMIT;
+    }
+
+    @Override
+    public String toString() {
+        return "DurabilityPolicy{" +
+                "mode=" + mode +
+                ", maxBatchSize=" + maxBatchSize +
+                ", maxDelayMillis=" + maxDelayMillis +
+                '}';
+    }
+}
@@ -5,154 +5,1009 @@ import model.Status;
 import model.Subtask;
 import model.Task;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
 
-public class FileBackedTaskManager extends InMemoryTaskManager {
+public class FileBackedTaskManager extends InMemoryTaskManager implements AutoCloseable {
+
+    private static final int DEFAULT_COMPACTION_THRESHOLD = 10_000;
+    private static final long DEFAULT_COMPACTION_INTERVAL_MS = 30_000;
+    // С какого размера файла loadFromFile разбирает его параллельно
+    private static final long PARALLEL_LOAD_THRESHOLD = 16L << 20;
+    // С какого числа записей журнал истории переписывается одной текущей историей
+    private static final int HISTORY_COMPACTION_THRESHOLD = 10_000;
 
     private final File file;
+    private final TaskJournal journal;
+    // Журнал просмотров "<file>.history": id каждой просмотренной задачи, по строке на просмотр
+    private TaskJournal historyLog;
+    private final Object historyLock = new Object();
+    private int historyCompactionAt = HISTORY_COMPACTION_THRESHOLD;
+    private int compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    private DurabilityPolicy durability = DurabilityPolicy.flush();
+    private SnapshotFormat snapshotFormat = SnapshotFormat.CSV;
+    private ScheduledExecutorService background;
+    private ScheduledFuture<?> compaction;
+    private ScheduledFuture<?> flusher;
+    private IntConsumer flushListener;
+    private PersistenceListener persistenceListener;
+    private int pendingMutations;
+    private long flushCount;
+    private long flushedMutations;
+    private int lastFlushSize;
+    private final List<String> batchRecords = new ArrayList<>();
+    private List<String> replayBatch;
+    // Хранилища поверх отображённого снимка; null, если задачи загружены в память целиком
+    private final LazyTaskMap<Task> lazyTasks;
+    private final LazyTaskMap<Epic> lazyEpics;
+    private final LazyTaskMap<Subtask> lazySubtasks;
+    private final SnapshotCache cache;
 
     public FileBackedTaskManager(File file) {
+        this(file, false);
+    }
+
+    // В режиме журнала каждая операция дописывает одну запись в файл "<file>.journal",
+    // а полный снимок пересохраняется только при сжатии журнала
+    public FileBackedTaskManager(File file, boolean journaled) {
         this.file = file;
+        this.journal = journaled ? new TaskJournal(journalFileFor(file)) : null;
+        this.historyLog = new TaskJournal(historyFileFor(file));
+        this.lazyTasks = null;
+        this.lazyEpics = null;
+        this.lazySubtasks = null;
+        this.cache = null;
     }
 
-    private static String toString(Task task) {
-        String type;
-        String epicId = "";
+    private FileBackedTaskManager(File file, boolean journaled, SnapshotCache cache, LazyTaskMap<Task> tasks,
+                                  LazyTaskMap<Epic> epics, LazyTaskMap<Subtask> subtasks) {
+        super(Managers.getDefaultHistory(), tasks, epics, subtasks);
+        this.file = file;
+        this.journal = journaled ? new TaskJournal(journalFileFor(file)) : null;
+        this.historyLog = new TaskJournal(historyFileFor(file));
+        this.lazyTasks = tasks;
+        this.lazyEpics = epics;
+        this.lazySubtasks = subtasks;
+        this.cache = cache;
+    }
 
-        if (task instanceof Epic) {
-            type = "EPIC";
-        } else if (task instanceof Subtask subtask) {
-            type = "SUBTASK";
-            epicId = String.valueOf(subtask.getEpicId());
-        } else {
-            type = "TASK";
-        }
-
-        return String.format("%d,%s,%s,%s,%s,%s",
-                task.getId(),
-                type,
-                task.getTitle(),
-                task.getStatus(),
-                task.getDescription(),
-                epicId);
-    }
-
-    private static Task fromString(String value) {
-        String[] parts = value.split(",");
-        int id = Integer.parseInt(parts[0]);
-        String type = parts[1];
-        String title = parts[2];
-        Status status = Status.valueOf(parts[3]);
-        String description = parts[4];
-
-        switch (type) {
-            case "TASK":
-                return new Task(id, title, description, status);
-            case "EPIC":
-                return new Epic(id, title, description, status);
-            case "SUBTASK":
-                int epicId = Integer.parseInt(parts[5]);
-                return new Subtask(id, title, description, status, epicId);
-            default:
-                throw new IllegalArgumentException("Неизвестный тип задачи: " + type);
-        }
+    public static File journalFileFor(File file) {
+        return new File(file.getPath() + ".journal");
+    }
+
+    public static File historyFileFor(File file) {
+        return new File(file.getPath() + ".history");
     }
 
     public static FileBackedTaskManager loadFromFile(File file) {
-        FileBackedTaskManager manager = new FileBackedTaskManager(file);
-        try {
-            List<String> lines = Files.readAllLines(file.toPath());
-            for (int i = 1; i < lines.size(); i++) { // пропускаем заголовок
-                String line = lines.get(i);
-                if (line.isEmpty()) continue;
-
-                Task task = fromString(line);
-                if (task instanceof Epic epic) {
-                    manager.epics.put(epic.getId(), epic);
-                } else if (task instanceof Subtask subtask) {
-                    manager.subtasks.put(subtask.getId(), subtask);
-                    Epic epic = manager.epics.get(subtask.getEpicId());
+        return loadFromFile(file, false);
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, boolean journaled) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        boolean parallel = pool.getParallelism() > 1 && file.length() >= PARALLEL_LOAD_THRESHOLD;
+        return loadFromFile(file, journaled, parallel ? pool : null);
+    }
+
+    // С пулом файл разбирается по частям параллельно; без пула (null) — построчно в текущем потоке.
+    // Результат одинаков, только при параллельной загрузке подзадачи привязываются к эпикам,
+    // даже если в файле эпик записан после них
+    public static FileBackedTaskManager loadFromFile(File file, boolean journaled, ForkJoinPool pool) {
+        FileBackedTaskManager manager = new FileBackedTaskManager(file, journaled);
+        synchronized (manager) { // фоновое сжатие не должно начаться посреди загрузки
+            // Статусы эпиков пересчитываются один раз после загрузки, а не на каждую подзадачу
+            manager.beginBatch();
+            try {
+                if (pool != null && file.exists() && manager.restoreParallel(pool)) {
+                    manager.replayJournal();
+                    return manager;
+                }
+                if (file.exists() && BinarySnapshot.isBinary(file)) {
+                    manager.snapshotFormat = SnapshotFormat.BINARY;
+                    BinarySnapshot.read(file, manager::restore);
+                } else if (file.exists()) {
+                    try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                        TaskCsv.read(reader, manager::restore); // заголовок пропускается
+                    }
+                }
+            } catch (IOException e) {
+                throw new ManagerSaveException("Ошибка при загрузке из файла", e);
+            }
+
+            manager.replayJournal();
+        }
+        return manager;
+    }
+
+    // Параллельная загрузка снимка: части файла разбираются в пуле, затем задачи каждого типа
+    // раскладываются по своим хранилищам одновременно, а подзадачи привязываются к эпикам
+    // группами эпиков — каждый эпик меняет только один поток. Возвращает false, ничего
+    // не загрузив, если снимок нельзя разобрать по частям (двоичный без индекса) или в нём
+    // повторяются id, в том числе у задач разных типов: тогда файл грузится построчно,
+    // где повтор обновляет уже загруженную задачу
+    private boolean restoreParallel(ForkJoinPool pool) throws IOException {
+        List<ParallelSnapshotLoader.Chunk> chunks;
+        if (BinarySnapshot.isBinary(file)) {
+            MappedSnapshot mapped = MappedSnapshot.open(file);
+            if (mapped == null) {
+                return false;
+            }
+            snapshotFormat = SnapshotFormat.BINARY;
+            try {
+                chunks = ParallelSnapshotLoader.parseBinary(mapped, pool);
+            } finally {
+                mapped.close(); // задачи уже в куче, в том числе если снимок придётся грузить построчно
+            }
+        } else {
+            chunks = ParallelSnapshotLoader.parseCsv(file, pool, TaskCsv::parse);
+            if (chunks == null) {
+                return false;
+            }
+        }
+
+        int total = 0;
+        int maxId = 0;
+        for (ParallelSnapshotLoader.Chunk chunk : chunks) {
+            total += chunk.size();
+            maxId = Math.max(maxId, chunk.maxId);
+        }
+        // хранилища разных типов независимы, поэтому заполняются одновременно; общие для них
+        // расписание и текстовый индекс при этом не трогаются, чтобы потоки не ждали друг друга
+        ParallelSnapshotLoader.invokeAll(pool, List.<Callable<Void>>of(
+                () -> loadAll(tasks, chunks, chunk -> chunk.tasks),
+                () -> loadAll(epics, chunks, chunk -> chunk.epics),
+                () -> loadAll(subtasks, chunks, chunk -> chunk.subtasks)));
+        if (tasks.size() + epics.size() + subtasks.size() != total || hasCrossTypeDuplicates(pool, chunks)) {
+            tasks.clear();
+            epics.clear();
+            subtasks.clear();
+            snapshotFormat = SnapshotFormat.CSV;
+            return false;
+        }
+        // Расписание строится разом: сохранённый снимок уже согласован, пересечения не проверяются.
+        // Текст, как и у отображённого снимка, индексируется при первом поиске
+        for (ParallelSnapshotLoader.Chunk chunk : chunks) {
+            schedule.addAll(chunk.tasks);
+            schedule.addAll(chunk.subtasks);
+        }
+        textIndexIncomplete = true;
+
+        // Подзадачи делятся по эпикам с сохранением порядка файла, чтобы у эпика
+        // был тот же порядок подзадач, что и при построчной загрузке
+        int groups = pool.getParallelism() * 4;
+        List<List<Subtask>> byEpic = new ArrayList<>(groups);
+        for (int i = 0; i < groups; i++) {
+            byEpic.add(new ArrayList<>());
+        }
+        for (ParallelSnapshotLoader.Chunk chunk : chunks) {
+            for (Subtask subtask : chunk.subtasks) {
+                byEpic.get(Math.floorMod(subtask.getEpicId(), groups)).add(subtask);
+            }
+        }
+        List<Callable<Void>> linking = new ArrayList<>(groups);
+        for (List<Subtask> group : byEpic) {
+            linking.add(() -> {
+                Set<Integer> touched = new LinkedHashSet<>();
+                for (Subtask subtask : group) {
+                    Epic epic = epics.get(subtask.getEpicId());
                     if (epic != null) {
                         epic.addSubtask(subtask);
-                        epic.updateStatus();
+                        touched.add(epic.getId());
+                    }
+                }
+                for (int epicId : touched) {
+                    Epic epic = epics.get(epicId);
+                    Status stored = epic.getStatus();
+                    epic.updateStatus();
+                    if (epic.getStatus() != stored) {
+                        epics.reindex(epic.getId());
+                    }
+                }
+                return null;
+            });
+        }
+        ParallelSnapshotLoader.invokeAll(pool, linking);
+
+        if (maxId >= nextId.get()) {
+            nextId.set(maxId + 1);
+        }
+        markModified();
+        return true;
+    }
+
+    // Повтор id внутри одного типа виден по размеру хранилища, а повтор под другим типом — только
+    // поиском: id задач ищутся среди эпиков и подзадач, id эпиков — среди подзадач. Части файла
+    // проверяются параллельно, хранилища к этому моменту уже заполнены и только читаются
+    private boolean hasCrossTypeDuplicates(ForkJoinPool pool, List<ParallelSnapshotLoader.Chunk> chunks)
+            throws IOException {
+        List<Callable<Boolean>> checks = new ArrayList<>(chunks.size());
+        for (ParallelSnapshotLoader.Chunk chunk : chunks) {
+            checks.add(() -> {
+                for (Task task : chunk.tasks) {
+                    if (epics.containsKey(task.getId()) || subtasks.containsKey(task.getId())) {
+                        return true;
+                    }
+                }
+                for (Epic epic : chunk.epics) {
+                    if (subtasks.containsKey(epic.getId())) {
+                        return true;
                     }
-                } else {
-                    manager.tasks.put(task.getId(), task);
                 }
-                if (task.getId() >= manager.nextId) {
-                    manager.nextId = task.getId() + 1;
+                return false;
+            });
+        }
+        return ParallelSnapshotLoader.invokeAll(pool, checks).contains(true);
+    }
+
+    private static <T extends Task> Void loadAll(IndexedTaskMap<T> store, List<ParallelSnapshotLoader.Chunk> chunks,
+                                                 Function<ParallelSnapshotLoader.Chunk, List<T>> part) {
+        for (ParallelSnapshotLoader.Chunk chunk : chunks) {
+            for (T task : part.apply(chunk)) {
+                store.load(task);
+            }
+        }
+        return null;
+    }
+
+    // Открывает двоичный снимок без загрузки задач: файл отображается в память, при открытии
+    // строятся только индексы id, а объекты задач создаются при первом обращении к ним.
+    // Эпик поднимается вместе со своими подзадачами, потому что хранит их объекты.
+    // CSV, снимок старой версии без индекса или файл больше 2 ГБ загружаются как в loadFromFile
+    public static FileBackedTaskManager openMapped(File file, boolean journaled) {
+        return openMapped(file, journaled, Long.MAX_VALUE, false);
+    }
+
+    // То же с ограничением памяти под объекты из снимка: прочитанные задачи, которые не менялись
+    // со времени последнего снимка, вытесняются и при следующем обращении читаются из файла заново.
+    // Изменения идут через journal или снимок, как обычно, а изменённые объекты остаются в памяти
+    // до следующего сохранения снимка. Отсутствующий или пустой файл создаётся пустым двоичным снимком.
+    // Объект, полученный из менеджера и изменённый без updateTask, может быть вытеснен вместе с изменением
+    public static FileBackedTaskManager openMapped(File file, boolean journaled, long cacheBudgetBytes) {
+        return openMapped(file, journaled, cacheBudgetBytes, true);
+    }
+
+    private static FileBackedTaskManager openMapped(File file, boolean journaled, long cacheBudgetBytes,
+                                                    boolean create) {
+        MappedSnapshot snapshot;
+        try {
+            if (create && file.length() == 0) {
+                try (FileOutputStream output = new FileOutputStream(file)) {
+                    BinarySnapshot.write(output, List.of(), List.of(), List.of());
                 }
             }
+            snapshot = MappedSnapshot.open(file);
         } catch (IOException e) {
             throw new ManagerSaveException("Ошибка при загрузке из файла", e);
         }
+        if (snapshot == null) {
+            return loadFromFile(file, journaled);
+        }
+
+        int[] counts = new int[3];
+        for (int i = 0; i < snapshot.size(); i++) {
+            counts[snapshot.typeAt(i)]++;
+        }
+        SnapshotCache cache = new SnapshotCache(snapshot, cacheBudgetBytes);
+        FileBackedTaskManager manager = new FileBackedTaskManager(file, journaled, cache,
+                new LazyTaskMap<>(cache, BinarySnapshot.TYPE_TASK, counts[BinarySnapshot.TYPE_TASK]),
+                new LazyTaskMap<>(cache, BinarySnapshot.TYPE_EPIC, counts[BinarySnapshot.TYPE_EPIC]),
+                new LazyTaskMap<>(cache, BinarySnapshot.TYPE_SUBTASK, counts[BinarySnapshot.TYPE_SUBTASK]));
+        manager.snapshotFormat = SnapshotFormat.BINARY;
+        manager.lazyEpics.setLoader(manager::loadEpic);
+        manager.lazySubtasks.setLoader(manager::loadSubtask);
+        synchronized (manager) {
+            for (int i = 0; i < snapshot.size(); i++) {
+                int id = snapshot.idAt(i);
+                Status status = snapshot.statusAt(i);
+                switch (snapshot.typeAt(i)) {
+                    case BinarySnapshot.TYPE_TASK:
+                        manager.tasks.indexExisting(id, status, 0, snapshot.startAt(i), snapshot.endAt(i));
+                        break;
+                    case BinarySnapshot.TYPE_EPIC:
+                        manager.epics.indexExisting(id, status, 0);
+                        break;
+                    default:
+                        manager.subtasks.indexExisting(id, status, snapshot.epicIdAt(i),
+                                snapshot.startAt(i), snapshot.endAt(i));
+                }
+            }
+            if (snapshot.size() > 0) {
+                manager.nextId.set(snapshot.idAt(snapshot.size() - 1) + 1);
+                manager.textIndexIncomplete = true;
+            }
+            manager.beginBatch();
+            manager.write(manager::replayJournal);
+        }
         return manager;
     }
 
-    public void save() {
-        try (FileWriter writer = new FileWriter(file)) {
-            writer.write("id,type,name,status,description,epic\n");
+    // Дочитывает изменения, сделанные после последнего снимка, и закрывает пакет загрузки
+    private void replayJournal() {
+        boolean journaled = journal != null;
+        TaskJournal pending = journaled ? journal : new TaskJournal(journalFileFor(file));
+        int replayed = pending.replay(this::applyJournalRecord);
+        replayBatch = null; // незавершённый пакет в конце журнала отбрасываем
+        commitBatch();
+        if (!journaled && replayed > 0) {
+            // Без журнала старые записи больше не нужны: переносим их в снимок
+            save();
+            pending.truncate();
+        }
+        if (journaled) {
+            startCompaction(DEFAULT_COMPACTION_INTERVAL_MS);
+        }
+        restoreHistory();
+    }
 
-            // Сохраняем все задачи
-            for (Task task : getAllTasks()) {
-                writer.write(toString(task) + "\n");
+    // История восстанавливается по журналу просмотров за один проход: у каждого id остаётся
+    // последний просмотр, удалённые с тех пор задачи пропускаются. Испорченные строки журнала
+    // (оборванная запись, мусор после сбоя) тоже пропускаются: из-за истории загрузка не падает
+    private void restoreHistory() {
+        LinkedHashSet<Integer> viewed = new LinkedHashSet<>();
+        historyLog.replay(record -> {
+            Integer id;
+            try {
+                id = Integer.valueOf(record.trim());
+            } catch (NumberFormatException e) {
+                return;
             }
+            viewed.remove(id);
+            viewed.add(id);
+        });
+        List<Task> history = new ArrayList<>(viewed.size());
+        for (int id : viewed) {
+            Task task = findById(id);
+            if (task != null) {
+                history.add(task);
+            }
+        }
+        getHistoryManager().restore(history);
+    }
+
+    // Просмотр дописывается в журнал истории; на диск записи уходят при flush, close
+    // или заполнении буфера, поэтому после сбоя могут пропасть только последние просмотры
+    private void recordView(Task task) {
+        if (task == null) {
+            return;
+        }
+        synchronized (historyLock) {
+            historyLog.append(String.valueOf(task.getId()));
+            if (historyLog.getRecordCount() >= historyCompactionAt) {
+                compactHistory();
+            }
+        }
+    }
+
+    // Переписывает журнал истории текущей историей: новый файл подменяет старый целиком.
+    // Переписывается, когда записей набралось не меньше, чем задач в истории, поэтому
+    // на каждый просмотр в среднем приходится O(1) работы
+    private void compactHistory() {
+        List<Task> history = getHistory();
+        if (historyLog.getRecordCount() < history.size()) {
+            historyCompactionAt = history.size();
+            return;
+        }
+        File historyFile = historyLog.getFile();
+        File tmp = new File(historyFile.getPath() + ".tmp");
+        try (TaskJournal rewritten = new TaskJournal(tmp)) {
+            for (Task task : history) {
+                rewritten.append(String.valueOf(task.getId()));
+            }
+            rewritten.flush(durability.isForced());
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при сохранении истории", e);
+        }
+        try {
+            historyLog.close();
+            Files.move(tmp.toPath(), historyFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при сохранении истории", e);
+        }
+        historyLog = new TaskJournal(historyFile);
+        historyCompactionAt = Math.max(HISTORY_COMPACTION_THRESHOLD, history.size());
+    }
+
+    @Override
+    public Task getTaskById(int id) {
+        Task task = super.getTaskById(id);
+        recordView(task);
+        return task;
+    }
+
+    @Override
+    public Epic getEpicById(int id) {
+        Epic epic = super.getEpicById(id);
+        recordView(epic);
+        return epic;
+    }
+
+    @Override
+    public Subtask getSubtaskById(int id) {
+        Subtask subtask = super.getSubtaskById(id);
+        recordView(subtask);
+        return subtask;
+    }
+
+    // Эпик из снимка создаётся вместе с его ещё не созданными подзадачами из снимка;
+    // новые подзадачи эпику добавляет тот, кто их создаёт
+    private Epic loadEpic(int id) {
+        Epic epic = lazyEpics.read(id);
+        PrimitiveIterator.OfInt subtaskIds = subtasks.groupIds(id, 0, Integer.MAX_VALUE);
+        while (subtaskIds.hasNext()) {
+            int subtaskId = subtaskIds.nextInt();
+            if (!lazySubtasks.isLive(subtaskId)) {
+                continue;
+            }
+            // читаем напрямую: загрузчик подзадачи сам поднимал бы этот же эпик
+            Subtask subtask = lazySubtasks.isLoaded(subtaskId)
+                    ? lazySubtasks.get(subtaskId) : lazySubtasks.read(subtaskId);
+            lazySubtasks.cache(subtaskId, subtask);
+            epic.addSubtask(subtask);
+        }
+        return epic;
+    }
+
+    // Подзадача эпика из снимка создаётся только вместе с эпиком, чтобы в эпике
+    // и в хранилище подзадач был один и тот же объект
+    private Subtask loadSubtask(int id) {
+        Subtask subtask = lazySubtasks.read(id);
+        if (!lazyEpics.isLive(subtask.getEpicId()) || lazyEpics.isLoaded(subtask.getEpicId())) {
+            return subtask;
+        }
+        lazySubtasks.cache(id, subtask);
+        epics.get(subtask.getEpicId());
+        return subtask;
+    }
 
-            // Сохраняем все эпики
-            for (Epic epic : getAllEpics()) {
-                writer.write(toString(epic) + "\n");
+    // Сколько задач сейчас создано как объекты; без отображённого снимка — все задачи
+    public int getMaterializedCount() {
+        if (lazyTasks == null) {
+            return tasks.size() + epics.size() + subtasks.size();
+        }
+        return lazyTasks.loadedCount() + lazyEpics.loadedCount() + lazySubtasks.loadedCount();
+    }
+
+    // Бюджет памяти под неизменённые объекты из снимка; без отображённого снимка ни на что не влияет
+    public void setCacheBudget(long bytes) {
+        if (cache != null) {
+            cache.setBudget(bytes);
+        }
+    }
+
+    // Сколько обращений к задачам снимка нашли объект в памяти, а сколько прочитали его из файла
+    public long getCacheHits() {
+        return cache == null ? 0 : cache.getHits();
+    }
+
+    public long getCacheMisses() {
+        return cache == null ? 0 : cache.getMisses();
+    }
+
+    public long getCacheEvictions() {
+        return cache == null ? 0 : cache.getEvictions();
+    }
+
+    // Оценка памяти под объекты, которые кэш может вытеснить
+    public long getCachedBytes() {
+        return cache == null ? 0 : cache.getUsedBytes();
+    }
+
+    // Изменение над отображённым снимком: всё, что оно прочитает, закрепляется в памяти до следующего снимка
+    private <T> T write(Supplier<T> operation) {
+        if (cache == null) {
+            return operation.get();
+        }
+        cache.beginWrite();
+        try {
+            return operation.get();
+        } finally {
+            cache.endWrite();
+        }
+    }
+
+    private void write(Runnable operation) {
+        write(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    // Кладёт загруженную задачу в менеджер; если задача с таким id уже есть, заменяет её так же,
+    // как updateTask, чтобы расписание, полнотекстовый индекс и статусы эпиков обновились
+    private void restore(Task task) {
+        Task existing = findById(task.getId());
+        if (existing != null && existing.getClass() == task.getClass()) {
+            if (task instanceof Epic epic) {
+                // подзадачи в записи эпика не хранятся — переносим их со старого объекта
+                for (Subtask subtask : ((Epic) existing).getSubtasks()) {
+                    epic.addSubtask(subtask);
+                }
+            }
+            super.updateTask(task);
+            return;
+        }
+        if (existing != null) {
+            super.removeById(existing.getId());
+        }
+
+        if (task instanceof Epic epic) {
+            epics.put(epic.getId(), epic);
+        } else if (task instanceof Subtask subtask) {
+            subtasks.put(subtask.getId(), subtask);
+            Epic epic = epics.get(subtask.getEpicId());
+            if (epic != null) {
+                epic.addSubtask(subtask);
+                refreshEpicStatus(epic);
             }
+        } else {
+            tasks.put(task.getId(), task);
+        }
+        if (task.getId() >= nextId.get()) {
+            nextId.set(task.getId() + 1);
+        }
+        markModified();
+    }
 
-            // Сохраняем все подзадачи
-            for (Subtask subtask : getAllSubtasks()) {
-                writer.write(toString(subtask) + "\n");
+    // Формат записей журнала: "PUT,<запись задачи как в CSV-снимке>", "DEL,<id>", "CLEAR,<тип>".
+    // Поля задачи в кавычках по правилам TaskCsv, поэтому запятые и переводы строк в названии безопасны.
+    // Все записи идемпотентны, поэтому повторное проигрывание поверх свежего снимка безопасно.
+    // Записи пакета обрамлены строками BEGIN и COMMIT и применяются только целиком
+    private void applyJournalRecord(String record) {
+        if ("BEGIN".equals(record)) {
+            replayBatch = new ArrayList<>();
+            return;
+        }
+        if ("COMMIT".equals(record)) {
+            List<String> batch = replayBatch;
+            replayBatch = null;
+            if (batch != null) {
+                batch.forEach(this::applyJournalRecord);
             }
+            return;
+        }
+        if (replayBatch != null) {
+            replayBatch.add(record);
+            return;
+        }
 
-            // Можно расширить сохранение истории (например, через отдельную строку)
+        int comma = record.indexOf(',');
+        if (comma < 0) {
+            throw corruptRecord(record, null);
+        }
+        String operation = record.substring(0, comma);
+        String payload = record.substring(comma + 1);
 
+        switch (operation) {
+            case "PUT":
+                restore(parseRecord(record, payload));
+                break;
+            case "DEL":
+                super.removeById(parseRecordId(record, payload));
+                break;
+            case "CLEAR":
+                switch (payload) {
+                    case "TASK":
+                        super.removeAllTasks();
+                        break;
+                    case "EPIC":
+                        super.removeAllEpics();
+                        break;
+                    case "SUBTASK":
+                        super.removeAllSubtasks();
+                        break;
+                    default:
+                        throw corruptRecord(record, null);
+                }
+                break;
+            default:
+                throw corruptRecord(record, null);
+        }
+    }
+
+    // Разбор полей отделён от применения записи: исключение разбора — признак испорченного журнала
+    private static Task parseRecord(String record, String payload) {
+        try {
+            return TaskCsv.parse(payload);
+        } catch (RuntimeException e) {
+            throw corruptRecord(record, e);
+        }
+    }
+
+    private static int parseRecordId(String record, String payload) {
+        try {
+            return Integer.parseInt(payload);
+        } catch (NumberFormatException e) {
+            throw corruptRecord(record, e);
+        }
+    }
+
+    private static ManagerSaveException corruptRecord(String record, Exception cause) {
+        return new ManagerSaveException("Журнал повреждён: " + record, cause);
+    }
+
+    public synchronized void save() {
+        long start = System.nanoTime();
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(tmp)) {
+            if (snapshotFormat == SnapshotFormat.BINARY) {
+                BinarySnapshot.write(output, savedTasks(), savedEpics(), savedSubtasks());
+            } else {
+                writeCsv(output);
+            }
+            if (durability.isForced()) {
+                output.getFD().sync();
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при сохранении в файл", e);
+        }
+        try {
+            // Подменяем файл целиком, чтобы при сбое не остаться с наполовину записанным снимком
+            Files.move(tmp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } catch (IOException e) {
             throw new ManagerSaveException("Ошибка при сохранении в файл", e);
         }
+        if (cache != null && snapshotFormat == SnapshotFormat.BINARY) {
+            rebaseCache();
+        }
+        if (persistenceListener != null) {
+            persistenceListener.snapshotSaved(file.length(), System.nanoTime() - start);
+        }
+    }
+
+    // Переключает хранилища на только что сохранённый снимок, и изменённые объекты снова можно вытеснять
+    private void rebaseCache() {
+        MappedSnapshot saved;
+        try {
+            saved = MappedSnapshot.open(file);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при загрузке из файла", e);
+        }
+        if (saved != null) {
+            cache.rebase(saved);
+        }
+    }
+
+    private void writeCsv(OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        TaskCsv.writeHeader(writer);
+
+        // Сохраняем все задачи
+        for (Task task : savedTasks()) {
+            TaskCsv.write(writer, task);
+        }
+
+        // Сохраняем все эпики
+        for (Epic epic : savedEpics()) {
+            TaskCsv.write(writer, epic);
+        }
+
+        // Сохраняем все подзадачи
+        for (Subtask subtask : savedSubtasks()) {
+            TaskCsv.write(writer, subtask);
+        }
+
+        // История просмотров хранится отдельно, в журнале "<file>.history"
+
+        writer.flush();
+    }
+
+    // Над отображённым снимком сохранение обходит записи, не оставляя их в памяти.
+    // Новый файл подменяет старый, а отображение старого остаётся действительным до закрытия
+    private Collection<Task> savedTasks() {
+        return lazyTasks == null ? getAllTasks() : lazyTasks.transientValues();
+    }
+
+    private Collection<Epic> savedEpics() {
+        return lazyEpics == null ? getAllEpics() : lazyEpics.transientValues();
+    }
+
+    private Collection<Subtask> savedSubtasks() {
+        return lazySubtasks == null ? getAllSubtasks() : lazySubtasks.transientValues();
+    }
+
+    public SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    // Формат следующих снимков; уже сохранённый файл перезаписывается при следующем save()
+    public void setSnapshotFormat(SnapshotFormat snapshotFormat) {
+        this.snapshotFormat = snapshotFormat;
+    }
+
+    // Сворачивает журнал в новый снимок и очищает его
+    public synchronized void compact() {
+        if (journal == null) {
+            return;
+        }
+        flush();
+        save();
+        journal.truncate();
+    }
+
+    public void setCompactionThreshold(int compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    // Фоновое сжатие: раз в intervalMillis проверяем размер журнала
+    public synchronized void startCompaction(long intervalMillis) {
+        if (journal == null) {
+            return;
+        }
+        if (compaction != null) {
+            compaction.cancel(false);
+        }
+        compaction = background().scheduleWithFixedDelay(() -> {
+            synchronized (this) {
+                if (journal.getRecordCount() >= compactionThreshold) {
+                    compact();
+                }
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public DurabilityPolicy getDurabilityPolicy() {
+        return durability;
+    }
+
+    // Смена политики сбрасывает изменения, накопленные по старой
+    public synchronized void setDurabilityPolicy(DurabilityPolicy durability) {
+        flush();
+        this.durability = durability;
+        if (flusher != null) {
+            flusher.cancel(false);
+            flusher = null;
+        }
+        if (durability.getMaxDelayMillis() > 0) {
+            long delay = durability.getMaxDelayMillis();
+            flusher = background().scheduleWithFixedDelay(() -> {
+                synchronized (this) {
+                    flush();
+                }
+            }, delay, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Слушатель получает количество операций, попавших в очередной сброс на диск
+    public void setFlushListener(IntConsumer flushListener) {
+        this.flushListener = flushListener;
+    }
+
+    public void setPersistenceListener(PersistenceListener persistenceListener) {
+        this.persistenceListener = persistenceListener;
+    }
+
+    // Записывает на диск все накопленные, но ещё не сохранённые операции
+    public synchronized void flush() {
+        synchronized (historyLock) {
+            historyLog.flush(false);
+        }
+        if (pendingMutations == 0) {
+            return;
+        }
+        if (journal == null) {
+            save();
+        } else if (persistenceListener != null) {
+            long start = System.nanoTime();
+            long before = journal.getFile().length();
+            journal.flush(durability.isForced());
+            persistenceListener.journalFlushed(journal.getFile().length() - before, System.nanoTime() - start);
+        } else {
+            journal.flush(durability.isForced());
+        }
+        int covered = pendingMutations;
+        pendingMutations = 0;
+        flushCount++;
+        flushedMutations += covered;
+        lastFlushSize = covered;
+        if (flushListener != null) {
+            flushListener.accept(covered);
+        }
+    }
+
+    public synchronized int getPendingMutations() {
+        return pendingMutations;
+    }
+
+    public synchronized long getFlushCount() {
+        return flushCount;
+    }
+
+    public synchronized long getFlushedMutations() {
+        return flushedMutations;
+    }
+
+    public synchronized int getLastFlushSize() {
+        return lastFlushSize;
+    }
+
+    private ScheduledExecutorService background() {
+        if (background == null) {
+            background = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "file-backed-manager");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return background;
+    }
+
+    public int getJournalSize() {
+        return journal == null ? 0 : journal.getRecordCount();
+    }
+
+    private void persist(String record) {
+        if (isInBatch()) {
+            batchRecords.add(record);
+            return;
+        }
+        if (journal != null) {
+            appendToJournal(record);
+        }
+        pendingMutations++;
+        if (durability.shouldFlush(pendingMutations)) {
+            flush();
+        }
+    }
+
+    private void appendToJournal(String record) {
+        if (compaction == null) {
+            startCompaction(DEFAULT_COMPACTION_INTERVAL_MS);
+        }
+        journal.append(record);
+    }
+
+    @Override
+    public void close() {
+        closeEvents(); // до замка менеджера: подписчики могут обращаться к нему, пока события досылаются
+        closeStorage();
+    }
+
+    private synchronized void closeStorage() {
+        flush();
+        if (background != null) {
+            background.shutdownNow();
+            background = null;
+            compaction = null;
+            flusher = null;
+        }
+        try {
+            synchronized (historyLock) {
+                historyLog.close();
+            }
+            if (journal != null) {
+                journal.close();
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при закрытии журнала", e);
+        }
+    }
+
+    @Override
+    public synchronized void beginBatch() {
+        super.beginBatch();
+        batchRecords.clear();
+    }
+
+    // Весь пакет попадает в файл одной записью снимка или одним блоком журнала
+    @Override
+    public synchronized void commitBatch() {
+        write(super::commitBatch);
+        if (batchRecords.isEmpty()) {
+            return;
+        }
+        if (journal != null) {
+            appendToJournal("BEGIN");
+            for (String record : batchRecords) {
+                appendToJournal(record);
+            }
+            appendToJournal("COMMIT");
+        }
+        pendingMutations += batchRecords.size();
+        batchRecords.clear();
+        if (durability.shouldFlush(pendingMutations)) {
+            flush();
+        }
+    }
+
+    @Override
+    public synchronized void rollbackBatch() {
+        write(super::rollbackBatch);
+        batchRecords.clear();
     }
 
     // Переопределяем методы модификации, чтобы сохранить файл после каждой операции
 
     @Override
-    public Task createTask(String title, String description, Status status) {
-        Task task = super.createTask(title, description, status);
-        save();
+    public synchronized Task createTask(String title, String description, Status status,
+                                       LocalDateTime startTime, Duration duration) {
+        Task task = write(() -> super.createTask(title, description, status, startTime, duration));
+        persist("PUT," + TaskCsv.format(task));
         return task;
     }
 
     @Override
-    public Epic createEpic(String title, String description, Status status) {
-        Epic epic = super.createEpic(title, description, status);
-        save();
+    public synchronized Epic createEpic(String title, String description, Status status) {
+        Epic epic = write(() -> super.createEpic(title, description, status));
+        persist("PUT," + TaskCsv.format(epic));
         return epic;
     }
 
     @Override
-    public Subtask createSubtask(String title, String description, Status status, int epicId) {
-        Subtask subtask = super.createSubtask(title, description, status, epicId);
-        save();
+    public synchronized Subtask createSubtask(String title, String description, Status status, int epicId,
+                                             LocalDateTime startTime, Duration duration) {
+        Subtask subtask = write(() -> super.createSubtask(title, description, status, epicId,
+                startTime, duration));
+        persist("PUT," + TaskCsv.format(subtask));
         return subtask;
     }
 
     @Override
-    public void removeById(int id) {
-        super.removeById(id);
-        save();
+    public synchronized void removeById(int id) {
+        write(() -> super.removeById(id));
+        persist("DEL," + id);
     }
 
     @Override
-    public void updateTask(Task task) {
-        super.updateTask(task);
-        save();
+    public synchronized void updateTask(Task task) {
+        write(() -> super.updateTask(task));
+        if (findById(task.getId()) == null) {
+            return; // неизвестная задача менеджером не принимается, сохранять нечего
+        }
+        persist("PUT," + TaskCsv.format(task));
+    }
+
+    @Override
+    public synchronized Epic updateEpic(int epicId, String title, String description) {
+        Epic epic = write(() -> super.updateEpic(epicId, title, description));
+        if (epic != null) {
+            persist("PUT," + TaskCsv.format(epic));
+        }
+        return epic;
     }
-}
 
+    @Override
+    public synchronized void removeAllTasks() {
+        write(super::removeAllTasks);
+        persist("CLEAR,TASK");
+    }
 
+    @Override
+    public synchronized void removeAllEpics() {
+        write(super::removeAllEpics);
+        persist("CLEAR,EPIC");
+    }
+
+    @Override
+    public synchronized void removeAllSubtasks() {
+        write(super::removeAllSubtasks);
+        persist("CLEAR,SUBTASK");
+    }
+}
@@ -11,4 +11,25 @@ public interface HistoryManager {
 
     void remove(int id);
 
+    // Заменяет историю сохранённой последовательностью просмотров (от старых к новым),
+    // например при загрузке менеджера из файла. Реализации не считают это новыми просмотрами
+    default void restore(List<Task> history) {
+        for (Task task : getHistory()) {
+            remove(task.getId());
+        }
+        for (Task task : history) {
+            add(task);
+        }
+    }
+
+    // Сколько раз добавлялась задача, уже бывшая в истории (просмотр переносится в конец)
+    default long getRepeatedViews() {
+        return 0;
+    }
+
+    // Сколько просмотров вытеснено из-за ограничения размера истории
+    default long getEvictions() {
+        return 0;
+    }
+
 }
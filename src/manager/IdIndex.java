@@ -0,0 +1,187 @@
+package manager;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+// Упорядоченное множество id на массивах int, разбитое на блоки до BLOCK элементов.
+// Поиск — двоичный по последним элементам блоков и затем внутри блока; вставка и удаление
+// сдвигают только один блок, поэтому id можно добавлять и удалять в любом порядке
+// (смена статуса, откат пакета, загрузка из файла), а новые id просто дописываются в конец
+class IdIndex {
+
+    private static final int BLOCK = 512;
+    private static final int CHUNK = 256;
+
+    private int[][] blocks = new int[4][];
+    private int[] blockSizes = new int[4];
+    private int blockCount;
+    private int size;
+
+    synchronized boolean add(int id) {
+        if (blockCount == 0) {
+            blocks[0] = new int[8];
+            blockCount = 1;
+        }
+        int block = findBlock(id);
+        int[] values = blocks[block];
+        int count = blockSizes[block];
+        int position = Arrays.binarySearch(values, 0, count, id);
+        if (position >= 0) {
+            return false;
+        }
+        position = -position - 1;
+        if (count == values.length) {
+            if (count == BLOCK) {
+                split(block);
+                add(id);
+                return true;
+            }
+            values = Arrays.copyOf(values, Math.min(count * 2, BLOCK));
+            blocks[block] = values;
+        }
+        System.arraycopy(values, position, values, position + 1, count - position);
+        values[position] = id;
+        blockSizes[block]++;
+        size++;
+        return true;
+    }
+
+    synchronized boolean remove(int id) {
+        if (blockCount == 0) {
+            return false;
+        }
+        int block = findBlock(id);
+        int[] values = blocks[block];
+        int count = blockSizes[block];
+        int position = Arrays.binarySearch(values, 0, count, id);
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(values, position + 1, values, position, count - position - 1);
+        blockSizes[block]--;
+        size--;
+        if (blockSizes[block] == 0 && blockCount > 1) {
+            removeBlock(block);
+        }
+        return true;
+    }
+
+    synchronized boolean contains(int id) {
+        if (blockCount == 0) {
+            return false;
+        }
+        int block = findBlock(id);
+        return Arrays.binarySearch(blocks[block], 0, blockSizes[block], id) >= 0;
+    }
+
+    synchronized void clear() {
+        blocks = new int[4][];
+        blockSizes = new int[4];
+        blockCount = 0;
+        size = 0;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    // Копирует в buffer следующие по порядку id из (afterId, toId], возвращает их количество
+    synchronized int fill(int afterId, int toId, int[] buffer) {
+        int count = 0;
+        if (blockCount == 0 || afterId == Integer.MAX_VALUE) {
+            return 0;
+        }
+        int block = findBlock(afterId + 1);
+        int position = Arrays.binarySearch(blocks[block], 0, blockSizes[block], afterId + 1);
+        position = position < 0 ? -position - 1 : position;
+        while (block < blockCount && count < buffer.length) {
+            int[] values = blocks[block];
+            while (position < blockSizes[block] && count < buffer.length) {
+                if (values[position] > toId) {
+                    return count;
+                }
+                buffer[count++] = values[position++];
+            }
+            block++;
+            position = 0;
+        }
+        return count;
+    }
+
+    // Ленивый обход id из [fromId, toId] по возрастанию; индекс читается порциями,
+    // поэтому обход не держит замок и не копирует весь индекс
+    PrimitiveIterator.OfInt iterator(int fromId, int toId) {
+        return new PrimitiveIterator.OfInt() {
+            private final int[] buffer = new int[CHUNK];
+            private int position;
+            private int count;
+            private int last = fromId - 1;
+            private boolean exhausted = fromId > toId;
+
+            @Override
+            public boolean hasNext() {
+                if (position < count) {
+                    return true;
+                }
+                if (exhausted) {
+                    return false;
+                }
+                count = fill(last, toId, buffer);
+                position = 0;
+                exhausted = count < buffer.length;
+                return count > 0;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                last = buffer[position++];
+                return last;
+            }
+        };
+    }
+
+    // Первый блок, последний элемент которого не меньше id; если такого нет — последний блок
+    private int findBlock(int id) {
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int count = blockSizes[middle];
+            if (count > 0 && blocks[middle][count - 1] >= id) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private void split(int block) {
+        if (blockCount == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blockCount * 2);
+            blockSizes = Arrays.copyOf(blockSizes, blockCount * 2);
+        }
+        System.arraycopy(blocks, block + 1, blocks, block + 2, blockCount - block - 1);
+        System.arraycopy(blockSizes, block + 1, blockSizes, block + 2, blockCount - block - 1);
+        int[] values = blocks[block];
+        int half = BLOCK / 2;
+        int[] upper = new int[BLOCK];
+        System.arraycopy(values, half, upper, 0, BLOCK - half);
+        blocks[block + 1] = upper;
+        blockSizes[block + 1] = BLOCK - half;
+        blockSizes[block] = half;
+        blockCount++;
+    }
+
+    private void removeBlock(int block) {
+        System.arraycopy(blocks, block + 1, blocks, block, blockCount - block - 1);
+        System.arraycopy(blockSizes, block + 1, blockSizes, block, blockCount - block - 1);
+        blockCount--;
+        blocks[blockCount] = null;
+        blockSizes[blockCount] = 0;
+    }
+}
@@ -3,30 +3,145 @@ package manager;
 import model.Task;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
+// История просмотров: двусвязный список узлов плюс индекс id -> узел,
+// поэтому добавление и удаление выполняются за O(1) при любой длине истории
 public class InMemoryHistoryManager implements HistoryManager {
-    private final int maxHistorySize = 10;
-    private final List<Task> history = new LinkedList<>();
+
+    public static final int UNLIMITED = 0;
+
+    private final int capacity;
+    private final Map<Integer, Node> nodes = new HashMap<>();
+    private Node head;
+    private Node tail;
+    private long repeatedViews;
+    private long evictions;
+
+    public InMemoryHistoryManager() {
+        this(UNLIMITED);
+    }
+
+    // capacity — сколько последних просмотров хранить; UNLIMITED — без ограничения
+    public InMemoryHistoryManager(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Размер истории не может быть отрицательным");
+        }
+        this.capacity = capacity;
+    }
 
     @Override
     public void add(Task task) {
-        history.remove(task);
-        if (history.size() >= maxHistorySize) {
-            history.remove(0);
+        if (task == null) {
+            return;
+        }
+        Node previous = nodes.remove(task.getId());
+        if (previous != null) {
+            repeatedViews++;
+            removeNode(previous);
+        }
+        linkLast(task);
+        if (capacity != UNLIMITED && nodes.size() > capacity) {
+            nodes.remove(head.task.getId());
+            removeNode(head);
+            evictions++;
         }
-        history.add(task);
     }
 
     public void remove(int id) {
-        history.removeIf(task -> task.getId() == id);
+        removeNode(nodes.remove(id));
+    }
+
+    // Счётчики повторов и вытеснений не меняются; при ограниченном размере остаются последние просмотры
+    @Override
+    public void restore(List<Task> history) {
+        nodes.clear();
+        head = null;
+        tail = null;
+        int from = capacity == UNLIMITED ? 0 : Math.max(0, history.size() - capacity);
+        for (Task task : history.subList(from, history.size())) {
+            Node previous = nodes.remove(task.getId());
+            removeNode(previous);
+            linkLast(task);
+        }
     }
 
     @Override
     public List<Task> getHistory() {
+        List<Task> history = new ArrayList<>(nodes.size());
+        for (Node node = head; node != null; node = node.next) {
+            history.add(node.task);
+        }
+        return history;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
 
-        return new ArrayList<>(history);
+    @Override
+    public long getRepeatedViews() {
+        return repeatedViews;
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions;
+    }
+
+    // Убирает самый старый просмотр, возвращает false, если история пуста
+    boolean removeOldest() {
+        if (head == null) {
+            return false;
+        }
+        nodes.remove(head.task.getId());
+        removeNode(head);
+        evictions++;
+        return true;
+    }
+
+    private void linkLast(Task task) {
+        Node node = new Node(task, tail);
+        if (tail == null) {
+            head = node;
+        } else {
+            tail.next = node;
+        }
+        tail = node;
+        nodes.put(task.getId(), node);
+    }
+
+    private void removeNode(Node node) {
+        if (node == null) {
+            return;
+        }
+        if (node.prev == null) {
+            head = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            tail = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+    }
+
+    private static class Node {
+        private final Task task;
+        private Node prev;
+        private Node next;
+
+        private Node(Task task, Node prev) {
+            this.task = task;
+            this.prev = prev;
+        }
     }
-}
\ No newline at end of file
+}
@@ -4,19 +4,75 @@ import model.Epic;
 import model.Status;
 import model.Subtask;
 import model.Task;
+import model.TaskType;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class InMemoryTaskManager implements TaskManager {
 
-    protected final HashMap<Integer, Task> tasks = new HashMap<>();
-    protected final HashMap<Integer, Epic> epics = new HashMap<>();
-    protected final HashMap<Integer, Subtask> subtasks = new HashMap<>();
-    private final HistoryManager historyManager = Managers.getDefaultHistory();
-    protected int nextId = 1;
+    protected final IndexedTaskMap<Task> tasks;
+    protected final IndexedTaskMap<Epic> epics;
+    protected final IndexedTaskMap<Subtask> subtasks;
+    private final HistoryManager historyManager;
+    private final SessionHistoryManager sessionHistories = Managers.getDefaultSessionHistory();
+    protected final AtomicInteger nextId = new AtomicInteger(1);
+    // Время задач и подзадач: порядок по началу и проверка пересечений
+    protected final ScheduleIndex schedule = new ScheduleIndex();
+    // Полнотекстовый индекс по названиям и описаниям всех задач
+    protected final TextIndex text = new TextIndex();
+    // В хранилище есть задачи, занесённые мимо put (ленивое хранилище поверх снимка):
+    // их текст индексируется при первом поиске
+    volatile boolean textIndexIncomplete;
+    // Версия хранилища и срез, построенный для неё. Срез строится при первом чтении
+    // после изменения, все последующие чтения той же версии получают его без копирования
+    private final AtomicLong version = new AtomicLong();
+    private volatile TaskSnapshot snapshot;
+
+    // Состояние открытого пакета: эпики, чей статус надо пересчитать, отложенные удаления
+    // из истории и журнал отмены, который проигрывается в обратном порядке при откате
+    private boolean inBatch;
+    private int batchStartId;
+    private final Set<Integer> dirtyEpics = new HashSet<>();
+    private final List<Integer> pendingHistoryRemovals = new ArrayList<>();
+    private final Deque<Runnable> undoLog = new ArrayDeque<>();
+
+    // Рассылка изменений создаётся при первой подписке, до неё события не собираются.
+    // Внутри пакета события копятся и публикуются при commitBatch, при откате отбрасываются
+    private volatile TaskEventDispatcher eventDispatcher;
+    private final Object dispatcherLock = new Object();
+    private boolean ownsDispatcher; // рассылку создал сам менеджер, а не передали через setEventDispatcher
+    private final List<TaskEvent> batchEvents = new ArrayList<>();
+
+    public InMemoryTaskManager() {
+        this(Managers.getDefaultHistory(), new IntTaskMap<>(), new IntTaskMap<>(), new IntTaskMap<>());
+    }
 
+    // Для наследников, которым нужны другие реализации хранилищ (например, потокобезопасные)
+    protected InMemoryTaskManager(HistoryManager historyManager, Map<Integer, Task> tasks,
+                                  Map<Integer, Epic> epics, Map<Integer, Subtask> subtasks) {
+        this.historyManager = historyManager;
+        this.tasks = new IndexedTaskMap<>(tasks, null, schedule, text);
+        this.epics = new IndexedTaskMap<>(epics, null, null, text);
+        this.subtasks = new IndexedTaskMap<>(subtasks, Subtask::getEpicId, schedule, text);
+    }
 
     @Override
     public Task getTaskById(int id) {
@@ -45,112 +101,323 @@ public class InMemoryTaskManager implements TaskManager {
         return subtask;
     }
 
+    @Override
+    public Task getTaskById(int id, String sessionId) {
+        Task task = tasks.get(id);
+        sessionHistories.add(sessionId, task);
+        return task;
+    }
+
+    @Override
+    public Epic getEpicById(int id, String sessionId) {
+        Epic epic = epics.get(id);
+        sessionHistories.add(sessionId, epic);
+        return epic;
+    }
+
+    @Override
+    public Subtask getSubtaskById(int id, String sessionId) {
+        Subtask subtask = subtasks.get(id);
+        sessionHistories.add(sessionId, subtask);
+        return subtask;
+    }
+
     // Удалить все задачи
     @Override
     public void removeAllTasks() {
+        if (inBatch) {
+            Map<Integer, Task> removed = new HashMap<>(tasks);
+            undoLog.push(() -> tasks.putAll(removed));
+        }
         for (Task task : tasks.values()) {
-            historyManager.remove(task.getId()); // удаляем задачи из истории
+            removeFromHistory(task.getId()); // удаляем задачи из истории
+            publish(TaskEvent.Type.REMOVED, task, null);
         }
         tasks.clear();
+        markModified();
     }
 
     @Override
     public void removeAllSubtasks() {
+        if (inBatch) {
+            List<Subtask> removed = new ArrayList<>(subtasks.values());
+            undoLog.push(() -> {
+                for (Subtask subtask : removed) {
+                    restoreSubtask(subtask);
+                }
+            });
+        }
         for (Subtask subtask : subtasks.values()) {
-            historyManager.remove(subtask.getId());
+            removeFromHistory(subtask.getId());
+            publish(TaskEvent.Type.REMOVED, subtask, null);
 
             // Обновляем список подзадач эпика, к которому принадлежит подзадача
             Epic epic = epics.get(subtask.getEpicId());
             if (epic != null) {
-                epic.getSubtaskIds().remove(Integer.valueOf(subtask.getId()));
-                epic.updateStatus();
+                epic.removeSubtask(subtask);
+                refreshEpicStatus(epic);
             }
         }
         subtasks.clear();
+        markModified();
     }
 
     @Override
     public void removeAllEpics() {
+        if (inBatch) {
+            Map<Integer, Epic> removedEpics = new HashMap<>(epics);
+            Map<Integer, Subtask> removedSubtasks = new HashMap<>(subtasks);
+            undoLog.push(() -> {
+                epics.putAll(removedEpics);
+                subtasks.putAll(removedSubtasks);
+            });
+        }
         for (Epic epic : epics.values()) {
             // Удаляем подзадачи, связанные с эпиком
             List<Integer> subtasksToRemove = new ArrayList<>(epic.getSubtaskIds());
             for (Integer subtaskId : subtasksToRemove) {
-                historyManager.remove(subtaskId);
-                subtasks.remove(subtaskId);
+                removeFromHistory(subtaskId);
+                Subtask subtask = subtasks.remove(subtaskId);
+                if (subtask != null) {
+                    publish(TaskEvent.Type.REMOVED, subtask, null);
+                }
             }
             // Удаляем эпик из истории
-            historyManager.remove(epic.getId());
+            removeFromHistory(epic.getId());
+            publish(TaskEvent.Type.REMOVED, epic, null);
         }
         epics.clear();
+        markModified();
     }
 
     @Override
-    public Task createTask(String title, String description, Status status) {
+    public Task createTask(String title, String description, Status status,
+                           LocalDateTime startTime, Duration duration) {
 
-        Task task = new Task(nextId++, title, description, status);
-        tasks.put(task.getId(), task);
+        Task task = new Task(nextId.getAndIncrement(), title, description, status, startTime, duration);
+        putNew(tasks, task);
+        if (inBatch) {
+            undoLog.push(() -> tasks.remove(task.getId()));
+        }
+        publish(TaskEvent.Type.CREATED, task, null);
+        markModified();
         return task;
     }
 
     @Override
     public Epic createEpic(String title, String description, Status status) {
 
-        Epic epic = new Epic(nextId++, title, description, status);
+        Epic epic = new Epic(nextId.getAndIncrement(), title, description, status);
         epics.put(epic.getId(), epic);
+        if (inBatch) {
+            undoLog.push(() -> epics.remove(epic.getId()));
+        }
+        publish(TaskEvent.Type.CREATED, epic, null);
+        markModified();
         return epic;
     }
 
     @Override
-    public Subtask createSubtask(String title, String description, Status status, int epicId) {
+    public Subtask createSubtask(String title, String description, Status status, int epicId,
+                                 LocalDateTime startTime, Duration duration) {
 
-        Subtask subtask = new Subtask(nextId++, title, description, status, epicId);
-        subtasks.put(subtask.getId(), subtask);
+        Subtask subtask = new Subtask(nextId.getAndIncrement(), title, description, status, epicId,
+                startTime, duration);
+        putNew(subtasks, subtask);
+        publish(TaskEvent.Type.CREATED, subtask, null);
         Epic epic = epics.get(epicId);
         if (epic != null) {
             epic.addSubtask(subtask);
-            epic.updateStatus();
+            refreshEpicStatus(epic);
         }
+        if (inBatch) {
+            undoLog.push(() -> {
+                subtasks.remove(subtask.getId());
+                if (epic != null) {
+                    epic.removeSubtask(subtask);
+                }
+            });
+        }
+        markModified();
         return subtask;
     }
 
     @Override
     public List<Task> getAllTasks() {
-        return new ArrayList<>(tasks.values());
+        return getSnapshot().getTasks();
     }
 
     @Override
     public List<Epic> getAllEpics() {
-        return new ArrayList<>(epics.values());
+        return getSnapshot().getEpics();
     }
 
     @Override
     public List<Subtask> getAllSubtasks() {
-        return new ArrayList<>(subtasks.values());
+        return getSnapshot().getSubtasks();
+    }
+
+    @Override
+    public TaskSnapshot getSnapshot() {
+        TaskSnapshot current = snapshot;
+        if (current != null && current.getVersion() == version.get()) {
+            return current;
+        }
+        current = buildSnapshot();
+        snapshot = current;
+        return current;
+    }
+
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public Stream<Task> query(TaskQuery query) {
+        PrimitiveIterator.OfInt ids = idsFor(query);
+        return StreamSupport.intStream(Spliterators.spliteratorUnknownSize(ids,
+                        Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false)
+                .mapToObj(this::findById)
+                .filter(Objects::nonNull)
+                .filter(query::matches);
+    }
+
+    @Override
+    public TaskPage queryPage(TaskQuery query, int afterId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть положительным");
+        }
+        int fromId = Math.max(query.getFromId(), afterId + 1);
+        if (afterId == Integer.MAX_VALUE || fromId > query.getToId()) {
+            return new TaskPage(new ArrayList<>(), afterId, false);
+        }
+        List<Task> items = new ArrayList<>(Math.min(limit + 1, 1024));
+        query(query.withIdRange(fromId, query.getToId()))
+                .limit(limit + 1L)
+                .forEach(items::add);
+        boolean hasMore = items.size() > limit;
+        if (hasMore) {
+            items.remove(items.size() - 1);
+        }
+        int nextCursor = items.isEmpty() ? afterId : items.get(items.size() - 1).getId();
+        return new TaskPage(items, nextCursor, hasMore);
+    }
+
+    // Выбирает самый узкий индекс под условие: эпик, затем статус, затем тип.
+    // Остальные условия проверяются уже на найденных задачах
+    private PrimitiveIterator.OfInt idsFor(TaskQuery query) {
+        int from = query.getFromId();
+        int to = query.getToId();
+        if (query.getEpicId() != null) {
+            return subtasks.groupIds(query.getEpicId(), from, to);
+        }
+        Status status = query.getStatus();
+        if (query.getType() == null) {
+            if (status != null) {
+                return new MergedIds(tasks.ids(status, from, to), epics.ids(status, from, to),
+                        subtasks.ids(status, from, to));
+            }
+            return new MergedIds(tasks.ids(from, to), epics.ids(from, to), subtasks.ids(from, to));
+        }
+        IndexedTaskMap<? extends Task> store = storeFor(query.getType());
+        return status != null ? store.ids(status, from, to) : store.ids(from, to);
+    }
+
+    @Override
+    public int count(TaskQuery query) {
+        if (query.getFromId() != TaskQuery.all().getFromId() || query.getToId() != TaskQuery.all().getToId()) {
+            return (int) query(query).count();
+        }
+        Status status = query.getStatus();
+        if (query.getEpicId() != null) {
+            Epic epic = epics.get(query.getEpicId());
+            if (epic == null) {
+                return 0;
+            }
+            return status == null ? subtasks.groupCount(epic.getId()) : epic.getSubtaskCount(status);
+        }
+        if (query.getType() == null) {
+            return tasks.count(status) + epics.count(status) + subtasks.count(status);
+        }
+        return storeFor(query.getType()).count(status);
+    }
+
+    private IndexedTaskMap<? extends Task> storeFor(TaskType type) {
+        switch (type) {
+            case TASK:
+                return tasks;
+            case EPIC:
+                return epics;
+            default:
+                return subtasks;
+        }
+    }
+
+    // Поиск задачи любого типа без записи в историю
+    protected Task findById(int id) {
+        Task task = tasks.get(id);
+        if (task == null) {
+            task = epics.get(id);
+        }
+        if (task == null) {
+            task = subtasks.get(id);
+        }
+        return task;
+    }
+
+    // Наследники могут переопределить, чтобы строить срез под своим замком
+    protected TaskSnapshot buildSnapshot() {
+        return new TaskSnapshot(version.get(), tasks.values(), epics.values(), subtasks.values());
+    }
+
+    // Вызывается после каждого изменения состава или содержимого хранилища
+    protected void markModified() {
+        version.incrementAndGet();
     }
 
     @Override
     public void removeById(int id) {
 
         if (tasks.containsKey(id)) {
-            tasks.remove(id);
+            Task task = tasks.remove(id);
+            if (inBatch) {
+                undoLog.push(() -> tasks.put(id, task));
+            }
+            publish(TaskEvent.Type.REMOVED, task, null);
         } else if (epics.containsKey(id)) {
             // При удалении эпика удаляем и подзадачи
             Epic epic = epics.get(id);
             for (Subtask st : epic.getSubtasks()) {
                 subtasks.remove(st.getId());
-                historyManager.remove(st.getId());
+                removeFromHistory(st.getId());
+                publish(TaskEvent.Type.REMOVED, st, null);
             }
             epics.remove(id);
+            publish(TaskEvent.Type.REMOVED, epic, null);
+            if (inBatch) {
+                undoLog.push(() -> {
+                    epics.put(id, epic);
+                    for (Subtask st : epic.getSubtasks()) {
+                        subtasks.put(st.getId(), st);
+                    }
+                });
+            }
         } else if (subtasks.containsKey(id)) {
             Subtask st = subtasks.get(id);
             subtasks.remove(id);
+            publish(TaskEvent.Type.REMOVED, st, null);
             Epic epic = epics.get(st.getEpicId());
             if (epic != null) {
-                epic.getSubtasks().remove(st);
-                epic.updateStatus();
+                epic.removeSubtask(st);
+                refreshEpicStatus(epic);
+            }
+            if (inBatch) {
+                undoLog.push(() -> restoreSubtask(st));
             }
         }
-        historyManager.remove(id);
+        removeFromHistory(id);
+        markModified();
     }
 
     @Override
@@ -158,19 +425,82 @@ public class InMemoryTaskManager implements TaskManager {
 
         int id = task.getId();
         if (tasks.containsKey(id)) {
-            tasks.put(id, task);
+            Task previous = tasks.putIfPresent(id, task);
+            if (previous == null) {
+                return; // задачу удалили параллельно
+            }
+            if (inBatch) {
+                undoLog.push(() -> tasks.put(id, previous));
+            }
+            publish(TaskEvent.Type.UPDATED, task, null);
         } else if (epics.containsKey(id)) {
             Epic epic = (Epic) task;
-            epics.put(id, epic);
-            epic.updateStatus();
+            Epic previous = epics.putIfPresent(id, epic);
+            if (previous == null) {
+                return;
+            }
+            publish(TaskEvent.Type.UPDATED, epic, null);
+            refreshEpicStatus(epic);
+            if (inBatch) {
+                undoLog.push(() -> epics.put(id, previous));
+            }
         } else if (subtasks.containsKey(id)) {
             Subtask subtask = (Subtask) task;
-            subtasks.put(id, subtask);
+            Subtask stored = subtasks.get(id);
+            // подзадача навсегда привязана к своему эпику, как и в HTTP API: перенос оставил бы её
+            // в группе и счётчиках старого эпика
+            if (stored != null && stored.getEpicId() != subtask.getEpicId()) {
+                throw new IllegalArgumentException("Подзадачу нельзя перенести в другой эпик");
+            }
+            Subtask previous = subtasks.putIfPresent(id, subtask);
+            if (previous == null) {
+                return;
+            }
+            publish(TaskEvent.Type.UPDATED, subtask, null);
             Epic epic = epics.get(subtask.getEpicId());
             if (epic != null) {
-                epic.updateStatus();
+                replaceInEpic(epic, previous, subtask);
+                refreshEpicStatus(epic);
+            }
+            if (inBatch) {
+                undoLog.push(() -> {
+                    subtasks.put(id, previous);
+                    if (epic != null) {
+                        replaceInEpic(epic, subtask, previous);
+                        dirtyEpics.add(epic.getId());
+                    }
+                });
             }
         }
+        markModified();
+    }
+
+    // Эпик не заменяется новым объектом: список подзадач остаётся тем же, поэтому подзадача,
+    // созданная одновременно с переименованием, не теряется
+    @Override
+    public Epic updateEpic(int epicId, String title, String description) {
+
+        Epic epic = epics.get(epicId);
+        if (epic == null) {
+            return null;
+        }
+        String previousTitle = epic.getTitle();
+        String previousDescription = epic.getDescription();
+        epic.setTitle(title);
+        if (description != null) {
+            epic.setDescription(description);
+        }
+        epics.putIfPresent(epicId, epic); // переиндексирует текст
+        if (inBatch) {
+            undoLog.push(() -> {
+                epic.setTitle(previousTitle);
+                epic.setDescription(previousDescription);
+                epics.putIfPresent(epicId, epic);
+            });
+        }
+        publish(TaskEvent.Type.UPDATED, epic, null);
+        markModified();
+        return epic;
     }
 
     @Override
@@ -188,10 +518,294 @@ public class InMemoryTaskManager implements TaskManager {
         return historyManager.getHistory();
     }
 
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        int[] ids = schedule.orderedIds();
+        List<Task> prioritized = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Task task = findById(id);
+            if (task != null) {
+                prioritized.add(task);
+            }
+        }
+        return prioritized;
+    }
+
+    @Override
+    public List<Task> search(String query, int limit) {
+        if (textIndexIncomplete) {
+            indexRemainingText();
+        }
+        int[] ids = text.search(query, limit);
+        List<Task> found = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Task task = findById(id);
+            if (task != null) {
+                found.add(task);
+            }
+        }
+        return found;
+    }
+
+    // Дочитывает текст задач, которые ещё не создавались как объекты. Это один раз читает
+    // весь снимок, поэтому делается не при открытии, а только если поиском пользуются
+    private void indexRemainingText() {
+        for (IndexedTaskMap<? extends Task> store : List.of(tasks, epics, subtasks)) {
+            PrimitiveIterator.OfInt ids = store.ids(0, Integer.MAX_VALUE);
+            while (ids.hasNext()) {
+                int id = ids.nextInt();
+                if (!text.contains(id)) {
+                    Task task = store.get(id);
+                    if (task != null) {
+                        text.putIfAbsent(id, task);
+                        // задачу могли удалить, пока читали: тогда её remove мог пройти раньше
+                        if (!store.containsKey(id)) {
+                            text.remove(id);
+                        }
+                    }
+                }
+            }
+        }
+        textIndexIncomplete = false;
+    }
+
+    // Удалённые задачи пропадают из истории сессии при следующем чтении
+    @Override
+    public List<Task> getHistory(String sessionId) {
+        return sessionHistories.getHistory(sessionId, this::contains);
+    }
+
+    public SessionHistoryManager getSessionHistoryManager() {
+        return sessionHistories;
+    }
+
+    public HistoryManager getHistoryManager() {
+        return historyManager;
+    }
+
+    // Пул для одинаковых названий и описаний задач; null — каждая задача хранит свои строки
+    public void setStringPool(StringPool strings) {
+        tasks.setStringPool(strings);
+        epics.setStringPool(strings);
+        subtasks.setStringPool(strings);
+    }
+
+    @Override
+    public void addListener(TaskListener listener) {
+        eventDispatcher().addListener(listener);
+    }
+
+    @Override
+    public void addListener(TaskListener listener, long afterSequence) {
+        eventDispatcher().addListener(listener, afterSequence);
+    }
+
+    @Override
+    public void removeListener(TaskListener listener) {
+        TaskEventDispatcher dispatcher = eventDispatcher;
+        if (dispatcher != null) {
+            dispatcher.removeListener(listener);
+        }
+    }
+
+    // Своя рассылка, например с другим размером буфера или политикой переполнения;
+    // ставится до первой подписки
+    public void setEventDispatcher(TaskEventDispatcher dispatcher) {
+        synchronized (dispatcherLock) {
+            eventDispatcher = dispatcher;
+            ownsDispatcher = false;
+        }
+    }
+
+    // null, пока никто не подписался
+    public TaskEventDispatcher getEventDispatcher() {
+        return eventDispatcher;
+    }
+
+    private TaskEventDispatcher eventDispatcher() {
+        synchronized (dispatcherLock) {
+            if (eventDispatcher == null) {
+                eventDispatcher = new TaskEventDispatcher();
+                ownsDispatcher = true;
+            }
+            return eventDispatcher;
+        }
+    }
+
+    // Останавливает поток рассылки, которую менеджер создал сам, дослав уже опубликованные события.
+    // Рассылку из setEventDispatcher закрывает тот, кто её передал. Вызывать не под замком менеджера:
+    // подписчик, который сам обращается к менеджеру, иначе не дал бы потоку рассылки завершиться
+    protected void closeEvents() {
+        TaskEventDispatcher owned;
+        synchronized (dispatcherLock) {
+            owned = ownsDispatcher ? eventDispatcher : null;
+            ownsDispatcher = false;
+        }
+        if (owned != null) {
+            owned.close();
+        }
+    }
+
+    private void publish(TaskEvent.Type type, Task task, Status previousStatus) {
+        TaskEventDispatcher dispatcher = eventDispatcher;
+        if (dispatcher == null) {
+            return;
+        }
+        TaskEvent event = new TaskEvent(type, task, previousStatus);
+        if (inBatch) {
+            batchEvents.add(event);
+        } else {
+            dispatcher.publish(event);
+        }
+    }
+
+    protected boolean contains(int id) {
+        return tasks.containsKey(id) || epics.containsKey(id) || subtasks.containsKey(id);
+    }
+
+    @Override
+    public void beginBatch() {
+        if (inBatch) {
+            throw new IllegalStateException("Пакет уже начат");
+        }
+        inBatch = true;
+        batchStartId = nextId.get();
+    }
+
+    @Override
+    public void commitBatch() {
+        checkInBatch();
+        inBatch = false;
+        TaskEventDispatcher dispatcher = eventDispatcher;
+        if (dispatcher != null) {
+            for (TaskEvent event : batchEvents) {
+                dispatcher.publish(event);
+            }
+        }
+        // Статус каждого затронутого эпика пересчитываем один раз на весь пакет
+        for (Integer epicId : dirtyEpics) {
+            Epic epic = epics.get(epicId);
+            if (epic != null) {
+                updateEpicStatus(epic);
+            }
+        }
+        for (Integer id : pendingHistoryRemovals) {
+            historyManager.remove(id);
+        }
+        clearBatch();
+        markModified();
+    }
+
+    // Откат возвращает набор хранимых задач и связи эпиков с подзадачами. Поля объектов,
+    // изменённые вызывающим кодом через сеттеры до updateTask, откат не восстанавливает
+    @Override
+    public void rollbackBatch() {
+        checkInBatch();
+        inBatch = false;
+        while (!undoLog.isEmpty()) {
+            undoLog.pop().run();
+        }
+        nextId.set(batchStartId);
+        for (Integer epicId : dirtyEpics) {
+            Epic epic = epics.get(epicId);
+            if (epic != null) {
+                updateEpicStatus(epic);
+            }
+        }
+        clearBatch();
+        markModified();
+    }
+
+    protected boolean isInBatch() {
+        return inBatch;
+    }
+
+    private void checkInBatch() {
+        if (!inBatch) {
+            throw new IllegalStateException("Пакет не начат");
+        }
+    }
+
+    private void clearBatch() {
+        dirtyEpics.clear();
+        pendingHistoryRemovals.clear();
+        undoLog.clear();
+        batchEvents.clear();
+    }
+
+    // Вне пакета статус эпика пересчитывается сразу, внутри пакета — один раз при commitBatch
+    protected void refreshEpicStatus(Epic epic) {
+        if (inBatch) {
+            dirtyEpics.add(epic.getId());
+        } else {
+            updateEpicStatus(epic);
+        }
+    }
+
+    // Пересчитывает статус эпика и переносит эпик в индекс нового статуса
+    private void updateEpicStatus(Epic epic) {
+        Status previous = epic.getStatus();
+        epic.updateStatus();
+        epics.reindex(epic.getId());
+        if (epic.getStatus() != previous) {
+            publish(TaskEvent.Type.EPIC_STATUS_CHANGED, epic, previous);
+        }
+    }
+
+    // Для случаев, когда статус хранимой задачи поменяли на месте, без updateTask
+    protected void reindexStatus(Task task) {
+        if (task instanceof Epic) {
+            epics.reindex(task.getId());
+        } else if (task instanceof Subtask) {
+            subtasks.reindex(task.getId());
+        } else {
+            tasks.reindex(task.getId());
+        }
+    }
+
+    private void removeFromHistory(int id) {
+        if (inBatch) {
+            pendingHistoryRemovals.add(id);
+        } else {
+            historyManager.remove(id);
+        }
+    }
+
+    // Эпик хранит сами объекты подзадач: если передан новый объект, подменяем старый,
+    // иначе только сообщаем эпику о возможной смене статуса и времени
+    private void replaceInEpic(Epic epic, Subtask previous, Subtask current) {
+        if (previous == current) {
+            epic.subtaskStatusChanged(current);
+            epic.subtaskTimeChanged(current);
+        } else {
+            epic.removeSubtask(previous);
+            epic.addSubtask(current);
+        }
+    }
+
+    // Новая задача кладётся в хранилище; если её время пересекается с другой задачей,
+    // id возвращается, чтобы отклонённое создание не оставляло дыр в нумерации
+    private <T extends Task> void putNew(IndexedTaskMap<T> store, T task) {
+        try {
+            store.put(task.getId(), task);
+        } catch (TimeOverlapException e) {
+            nextId.compareAndSet(task.getId() + 1, task.getId());
+            throw e;
+        }
+    }
+
+    private void restoreSubtask(Subtask subtask) {
+        subtasks.put(subtask.getId(), subtask);
+        Epic epic = epics.get(subtask.getEpicId());
+        if (epic != null) {
+            epic.addSubtask(subtask);
+            dirtyEpics.add(epic.getId());
+        }
+    }
+
 
     private Task assignId(Task task) {
-        task = copyTaskWithId(task, nextId);
-        nextId++;
+        task = copyTaskWithId(task, nextId.getAndIncrement());
         return task;
     }
 
@@ -199,14 +813,62 @@ public class InMemoryTaskManager implements TaskManager {
     // либо мы можем сделать конструктор, но для примера простой вариант:
     private Task copyTaskWithId(Task task, int id) {
         if (task instanceof Subtask st) {
-            return new Subtask(id, st.getTitle(), st.getDescription(), st.getStatus(), st.getEpicId());
+            return new Subtask(id, st.getTitle(), st.getDescription(), st.getStatus(), st.getEpicId(),
+                    st.getStartTime(), st.getDuration());
         } else if (task instanceof Epic ep) {
             return new Epic(id, ep.getTitle(), ep.getDescription(), ep.getStatus());
         } else {
-            return new Task(id, task.getTitle(), task.getDescription(), task.getStatus());
+            return new Task(id, task.getTitle(), task.getDescription(), task.getStatus(),
+                    task.getStartTime(), task.getDuration());
         }
     }
-}
 
+    // Слияние нескольких возрастающих последовательностей id в одну возрастающую
+    private static class MergedIds implements PrimitiveIterator.OfInt {
+        private final PrimitiveIterator.OfInt[] sources;
+        private final int[] heads;
+        private final boolean[] present;
+
+        private MergedIds(PrimitiveIterator.OfInt... sources) {
+            this.sources = sources;
+            this.heads = new int[sources.length];
+            this.present = new boolean[sources.length];
+            for (int i = 0; i < sources.length; i++) {
+                advance(i);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            for (boolean p : present) {
+                if (p) {
+                    return true;
+                }
+            }
+            return false;
+        }
 
+        @Override
+        public int nextInt() {
+            int min = -1;
+            for (int i = 0; i < sources.length; i++) {
+                if (present[i] && (min < 0 || heads[i] < heads[min])) {
+                    min = i;
+                }
+            }
+            if (min < 0) {
+                throw new NoSuchElementException();
+            }
+            int id = heads[min];
+            advance(min);
+            return id;
+        }
 
+        private void advance(int i) {
+            present[i] = sources[i].hasNext();
+            if (present[i]) {
+                heads[i] = sources[i].nextInt();
+            }
+        }
+    }
+}
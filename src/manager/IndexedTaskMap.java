@@ -0,0 +1,345 @@
+package manager;
+
+import model.Status;
+import model.Task;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+// Хранилище задач одного типа: обычная Map по id плюс вторичные индексы —
+// все id по порядку, id по статусам и, для подзадач, id по эпикам.
+// Все изменения идут через put/remove/clear, поэтому индексы не могут отстать от данных,
+// по какому бы пути (создание, откат пакета, загрузка из файла) задача ни попала в менеджер.
+// Если статус хранимой задачи поменялся без put (например, пересчёт статуса эпика),
+// хозяин хранилища вызывает reindex. Время задач ведётся в общем для задач и подзадач
+// ScheduleIndex: put с пересекающимся временем бросает TimeOverlapException, ничего не меняя.
+// Названия и описания всех типов задач попадают в общий полнотекстовый TextIndex.
+// Вызовы с int (get(id), put(id, task), remove(id)) идут мимо Integer, если хранилище — IntTaskMap.
+// Запись одного id (расписание, само хранилище, текст, индексы) идёт под замком его полосы:
+// иначе два одновременных изменения одной задачи могли бы оставить в хранилище объект одного,
+// а в расписании и тексте — данные другого
+class IndexedTaskMap<T extends Task> extends AbstractMap<Integer, T> {
+
+    private static final int NO_STATUS = Status.values().length;
+    private static final int STRIPES = 64;
+
+    private final Map<Integer, T> delegate;
+    private final IntTaskMap<T> primitive;
+    private final IdIndex ids = new IdIndex();
+    private final IdIndex[] byStatus = new IdIndex[Status.values().length + 1];
+    private final ToIntFunction<T> groupKey;
+    private final Map<Integer, IdIndex> groups = new ConcurrentHashMap<>();
+    private final ScheduleIndex schedule;
+    private final TextIndex text;
+    private volatile StringPool strings;
+    private final Object[] stripes = new Object[STRIPES];
+
+    IndexedTaskMap(Map<Integer, T> delegate) {
+        this(delegate, null);
+    }
+
+    // groupKey — по какому полю дополнительно группировать id (для подзадач — id эпика)
+    IndexedTaskMap(Map<Integer, T> delegate, ToIntFunction<T> groupKey) {
+        this(delegate, groupKey, null);
+    }
+
+    // schedule — расписание, в котором учитывается время задач; null — время не учитывается
+    IndexedTaskMap(Map<Integer, T> delegate, ToIntFunction<T> groupKey, ScheduleIndex schedule) {
+        this(delegate, groupKey, schedule, null);
+    }
+
+    // text — полнотекстовый индекс по названиям и описаниям; null — текст не индексируется
+    IndexedTaskMap(Map<Integer, T> delegate, ToIntFunction<T> groupKey, ScheduleIndex schedule, TextIndex text) {
+        this.delegate = delegate;
+        this.schedule = schedule;
+        this.text = text;
+        this.primitive = delegate instanceof IntTaskMap<T> map ? map : null;
+        this.groupKey = groupKey;
+        for (int i = 0; i < byStatus.length; i++) {
+            byStatus[i] = new IdIndex();
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    T get(int id) {
+        return primitive != null ? primitive.get(id) : delegate.get(id);
+    }
+
+    boolean containsKey(int id) {
+        return primitive != null ? primitive.containsKey(id) : delegate.containsKey(id);
+    }
+
+    @Override
+    public T get(Object key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return delegate.containsKey(key);
+    }
+
+    @Override
+    public T put(Integer key, T value) {
+        return put(key.intValue(), value);
+    }
+
+    T put(int key, T value) {
+        return put(key, value, false);
+    }
+
+    // Замена только уже лежащей задачи: если её успели удалить, ничего не меняется и
+    // возвращается null — обновление не должно возвращать удалённую задачу
+    T putIfPresent(int key, T value) {
+        return put(key, value, true);
+    }
+
+    private T put(int key, T value, boolean onlyPresent) {
+        if (strings != null) {
+            share(value);
+        }
+        synchronized (stripe(key)) {
+            if (onlyPresent && !containsKey(key)) {
+                return null;
+            }
+            if (schedule != null) {
+                schedule.place(key, value);
+            }
+            T previous = primitive != null ? primitive.put(key, value) : delegate.put(key, value);
+            if (text != null) {
+                text.put(key, value);
+            }
+            if (previous == null) {
+                ids.add(key);
+                byStatus[index(value.getStatus())].add(key);
+                if (groupKey != null) {
+                    groups.computeIfAbsent(groupKey.applyAsInt(value), group -> new IdIndex()).add(key);
+                }
+            } else {
+                reindex(key);
+            }
+            return previous;
+        }
+    }
+
+    @Override
+    public T remove(Object key) {
+        return key instanceof Integer id ? remove(id.intValue()) : null;
+    }
+
+    T remove(int id) {
+        synchronized (stripe(id)) {
+            return removeLocked(id);
+        }
+    }
+
+    private T removeLocked(int id) {
+        T removed = primitive != null ? primitive.remove(id) : delegate.remove(id);
+        if (removed != null) {
+            ids.remove(id);
+            if (schedule != null) {
+                schedule.remove(id);
+            }
+            if (text != null) {
+                text.remove(id);
+            }
+            // статус объекта мог смениться после индексации, поэтому чистим все статусные индексы
+            for (IdIndex statusIndex : byStatus) {
+                statusIndex.remove(id);
+            }
+            if (groupKey != null) {
+                int groupId = groupKey.applyAsInt(removed);
+                IdIndex group = groups.get(groupId);
+                if (group != null) {
+                    group.remove(id);
+                    if (group.size() == 0) {
+                        groups.remove(groupId, group);
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        if (schedule != null || text != null) {
+            PrimitiveIterator.OfInt stored = ids.iterator(0, Integer.MAX_VALUE);
+            while (stored.hasNext()) {
+                int id = stored.nextInt();
+                if (schedule != null) {
+                    schedule.remove(id);
+                }
+                if (text != null) {
+                    text.remove(id);
+                }
+            }
+        }
+        delegate.clear();
+        ids.clear();
+        for (IdIndex statusIndex : byStatus) {
+            statusIndex.clear();
+        }
+        groups.clear();
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    // Представления только для чтения: удаление через них прошло бы мимо индекса.
+    // Задачи IntTaskMap выдаются по возрастанию id через индекс ids: порядок самой таблицы
+    // зависит от хэша, а списки задач и снимки должны идти по порядку id
+    @Override
+    public Collection<T> values() {
+        if (primitive == null) {
+            return Collections.unmodifiableCollection(delegate.values());
+        }
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<T> iterator() {
+                PrimitiveIterator.OfInt order = ids.iterator(Integer.MIN_VALUE + 1, Integer.MAX_VALUE);
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return order.hasNext();
+                    }
+
+                    @Override
+                    public T next() {
+                        return primitive.get(order.nextInt());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return primitive.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<Integer, T>> entrySet() {
+        return Collections.unmodifiableMap(delegate).entrySet();
+    }
+
+    // Названия и описания задач, попадающих в хранилище, берутся из пула. Уже лежащие задачи
+    // переводятся на пул сразу, кроме ещё не созданных из отображённого снимка
+    void setStringPool(StringPool strings) {
+        this.strings = strings;
+        if (strings != null) {
+            Collection<T> stored = delegate instanceof LazyTaskMap<T> lazy ? lazy.loadedValues() : delegate.values();
+            stored.forEach(this::share);
+        }
+    }
+
+    // Сеттер вызывается, только если строка действительно подменяется: он сбрасывает хэш задачи
+    private void share(T task) {
+        String title = strings.intern(task.getTitle());
+        if (title != task.getTitle()) {
+            task.setTitle(title);
+        }
+        String description = strings.intern(task.getDescription());
+        if (description != task.getDescription()) {
+            task.setDescription(description);
+        }
+    }
+
+    // Кладёт задачу из снимка, заполняя только индексы самого хранилища. Расписание и текст
+    // общие для всех типов: загрузчик строит их потом целиком, а не задачу за задачей под
+    // общим замком, пока хранилища заполняются параллельно
+    T load(T value) {
+        int key = value.getId();
+        if (strings != null) {
+            share(value);
+        }
+        synchronized (stripe(key)) {
+            T previous = primitive != null ? primitive.put(key, value) : delegate.put(key, value);
+            if (previous == null) {
+                ids.add(key);
+                byStatus[index(value.getStatus())].add(key);
+                if (groupKey != null) {
+                    groups.computeIfAbsent(groupKey.applyAsInt(value), group -> new IdIndex()).add(key);
+                }
+            } else {
+                reindex(key);
+            }
+            return previous;
+        }
+    }
+
+    // Заносит в индексы задачу, которая уже лежит в хранилище, но ещё не создана как объект
+    // (ленивое хранилище поверх отображённого снимка); group учитывается только при groupKey
+    void indexExisting(int id, Status status, int group) {
+        indexExisting(id, status, group, ScheduleIndex.NO_TIME, ScheduleIndex.NO_TIME);
+    }
+
+    // То же с временем задачи из индекса снимка (в наносекундах, NO_TIME — не запланирована)
+    void indexExisting(int id, Status status, int group, long start, long end) {
+        if (schedule != null && start != ScheduleIndex.NO_TIME) {
+            schedule.add(id, start, end);
+        }
+        ids.add(id);
+        byStatus[index(status)].add(id);
+        if (groupKey != null) {
+            groups.computeIfAbsent(group, key -> new IdIndex()).add(id);
+        }
+    }
+
+    // Переносит id в индекс текущего статуса задачи
+    synchronized void reindex(int id) {
+        T value = get(id);
+        if (value == null) {
+            return;
+        }
+        int current = index(value.getStatus());
+        for (int i = 0; i < byStatus.length; i++) {
+            if (i != current) {
+                byStatus[i].remove(id);
+            }
+        }
+        byStatus[current].add(id);
+    }
+
+    PrimitiveIterator.OfInt ids(int fromId, int toId) {
+        return ids.iterator(fromId, toId);
+    }
+
+    PrimitiveIterator.OfInt ids(Status status, int fromId, int toId) {
+        return byStatus[index(status)].iterator(fromId, toId);
+    }
+
+    PrimitiveIterator.OfInt groupIds(int group, int fromId, int toId) {
+        IdIndex index = groups.get(group);
+        return (index == null ? new IdIndex() : index).iterator(fromId, toId);
+    }
+
+    int count(Status status) {
+        return status == null ? ids.size() : byStatus[index(status)].size();
+    }
+
+    int groupCount(int group) {
+        IdIndex index = groups.get(group);
+        return index == null ? 0 : index.size();
+    }
+
+    private Object stripe(int id) {
+        return stripes[id & (STRIPES - 1)];
+    }
+
+    private static int index(Status status) {
+        return status == null ? NO_STATUS : status.ordinal();
+    }
+}
@@ -0,0 +1,228 @@
+package manager;
+
+import model.Task;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+// Хранилище задач по id на открытой адресации: ключи — int в массиве, без Integer и узлов HashMap,
+// примерно 10 байт на задачу вместо 50. Линейное пробирование, удаление сдвигает следующие
+// элементы цепочки назад, без «надгробий». Хэш перемешивает биты id: у тождественного хэша
+// последовательные id занимают сплошной отрезок таблицы, и когда новые id по модулю ёмкости
+// попадают в него, пробирование идёт через весь отрезок. Порядок обхода поэтому произвольный —
+// упорядоченную выдачу даёт IdIndex. Как и HashMap, не потокобезопасно; null вместо задачи не хранится
+final class IntTaskMap<T extends Task> extends AbstractMap<Integer, T> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys = new int[MIN_CAPACITY];
+    private Object[] values = new Object[MIN_CAPACITY];
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    T get(int id) {
+        int position = find(id);
+        return position < 0 ? null : (T) values[position];
+    }
+
+    boolean containsKey(int id) {
+        return find(id) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    T put(int id, T value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Задача не может быть null");
+        }
+        int mask = values.length - 1;
+        int position = hash(id) & mask;
+        while (values[position] != null) {
+            if (keys[position] == id) {
+                T previous = (T) values[position];
+                values[position] = value;
+                return previous;
+            }
+            position = (position + 1) & mask;
+        }
+        keys[position] = id;
+        values[position] = value;
+        size++;
+        if (size * 4 > values.length * 3) {
+            resize(values.length * 2);
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    T remove(int id) {
+        int position = find(id);
+        if (position < 0) {
+            return null;
+        }
+        T removed = (T) values[position];
+        deleteAt(position);
+        size--;
+        return removed;
+    }
+
+    @Override
+    public T get(Object key) {
+        return key instanceof Integer id ? get(id.intValue()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Integer id && containsKey(id.intValue());
+    }
+
+    @Override
+    public T put(Integer key, T value) {
+        return put(key.intValue(), value);
+    }
+
+    @Override
+    public T remove(Object key) {
+        return key instanceof Integer id ? remove(id.intValue()) : null;
+    }
+
+    @Override
+    public void clear() {
+        keys = new int[MIN_CAPACITY];
+        values = new Object[MIN_CAPACITY];
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Collection<T> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new Slots<>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    T at(int position) {
+                        return (T) values[position];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<Integer, T>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Integer, T>> iterator() {
+                return new Slots<>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    Entry<Integer, T> at(int position) {
+                        return new SimpleImmutableEntry<>(keys[position], (T) values[position]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    // Обход занятых мест таблицы по порядку
+    private abstract class Slots<E> implements Iterator<E> {
+        private int next = advance(0);
+
+        abstract E at(int position);
+
+        @Override
+        public boolean hasNext() {
+            return next < values.length;
+        }
+
+        @Override
+        public E next() {
+            if (next >= values.length) {
+                throw new NoSuchElementException();
+            }
+            E element = at(next);
+            next = advance(next + 1);
+            return element;
+        }
+
+        private int advance(int from) {
+            while (from < values.length && values[from] == null) {
+                from++;
+            }
+            return from;
+        }
+    }
+
+    private int find(int id) {
+        int mask = values.length - 1;
+        int position = hash(id) & mask;
+        while (values[position] != null) {
+            if (keys[position] == id) {
+                return position;
+            }
+            position = (position + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Элемент цепочки сдвигается на место дыры, если его законное место не лежит между дырой и им
+    private void deleteAt(int position) {
+        int mask = values.length - 1;
+        int hole = position;
+        int next = (hole + 1) & mask;
+        while (values[next] != null) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[hole] = null;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int position = hash(oldKeys[i]) & mask;
+                while (values[position] != null) {
+                    position = (position + 1) & mask;
+                }
+                keys[position] = oldKeys[i];
+                values[position] = oldValues[i];
+            }
+        }
+    }
+
+    // Умножение на 2^32 / φ, как в TextIndex, и старшие биты вниз: маска берёт младшие
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,19 @@
+package manager;
+
+// Атрибуты одной операции в JMX
+public interface LatencyHistogramMBean {
+
+    long getCount();
+
+    long getTotalNanos();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getMaxMicros();
+
+    void reset();
+}
@@ -0,0 +1,272 @@
+package manager;
+
+import model.Task;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+// Хранилище задач одного типа поверх отображённого снимка. Записи снимка превращаются
+// в объекты при первом обращении и дальше живут в loaded вместе с новыми и изменёнными
+// задачами; удалённые записи снимка помечаются в removed. Сам снимок не меняется,
+// пока менеджер не пересохранит его и не переключит хранилища на новый файл (rebase).
+// Создание объектов идёт под общим для всех трёх хранилищ замком — самим кэшем, чтобы эпик
+// и его подзадачи не были созданы дважды из разных потоков. Кэш может вытеснить
+// из loaded объект, совпадающий со снимком: следующее обращение прочитает его заново
+class LazyTaskMap<T extends Task> extends AbstractMap<Integer, T> {
+
+    private final SnapshotCache cache;
+    private final byte type;
+    private final Map<Integer, T> loaded = new ConcurrentHashMap<>();
+    private final IdIndex removed = new IdIndex();
+    private IntFunction<T> loader;
+    private boolean cleared;
+    private int snapshotLive;
+    private int extra;
+
+    LazyTaskMap(SnapshotCache cache, byte type, int snapshotCount) {
+        this.cache = cache;
+        this.type = type;
+        this.snapshotLive = snapshotCount;
+        this.loader = this::read;
+        cache.register(type, this);
+    }
+
+    // Как создавать объект записи; эпики, например, заодно поднимают свои подзадачи
+    void setLoader(IntFunction<T> loader) {
+        this.loader = loader;
+    }
+
+    @SuppressWarnings("unchecked")
+    T read(int id) {
+        return (T) cache.snapshot().read(id);
+    }
+
+    // Запись снимка с этим id ещё числится в хранилище (неважно, создан ли уже объект)
+    boolean isLive(int id) {
+        return !cleared && cache.snapshot().typeOf(id) == type && !removed.contains(id);
+    }
+
+    boolean isLoaded(int id) {
+        return loaded.containsKey(id);
+    }
+
+    // Кладёт объект, созданный загрузчиком соседнего хранилища
+    void cache(int id, T value) {
+        loaded.put(id, value);
+    }
+
+    int loadedCount() {
+        return loaded.size();
+    }
+
+    Collection<T> loadedValues() {
+        return loaded.values();
+    }
+
+    // Кэш вытеснил объект; вызывается под замком кэша
+    void evict(int id) {
+        loaded.remove(id);
+    }
+
+    // Снимок пересохранён и уже содержит всё, что есть в хранилище; вызывается под замком кэша
+    void rebase(int snapshotCount) {
+        removed.clear();
+        cleared = false;
+        snapshotLive = snapshotCount;
+        extra = 0;
+    }
+
+    @Override
+    public T get(Object key) {
+        if (!(key instanceof Integer id)) {
+            return null;
+        }
+        T value = loaded.get(id);
+        if (value != null) {
+            cache.hit(id);
+            return value;
+        }
+        synchronized (cache) {
+            value = loaded.get(id);
+            if (value == null && isLive(id)) {
+                value = loader.apply(id);
+                loaded.put(id, value);
+                cache.admit(value);
+            }
+            return value;
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return loaded.containsKey(key) || key instanceof Integer id && isLive(id);
+    }
+
+    @Override
+    public T put(Integer key, T value) {
+        synchronized (cache) {
+            if (isLive(key)) {
+                get(key); // прежний объект должен существовать, чтобы его можно было вернуть и заменить
+                cache.pin(key);
+                return loaded.put(key, value);
+            }
+            cache.pin(key);
+            T previous = loaded.put(key, value);
+            if (previous == null) {
+                extra++;
+            }
+            return previous;
+        }
+    }
+
+    @Override
+    public T remove(Object key) {
+        if (!(key instanceof Integer id)) {
+            return null;
+        }
+        synchronized (cache) {
+            if (isLive(id)) {
+                T value = get(id);
+                cache.pin(id);
+                loaded.remove(id);
+                removed.add(id);
+                snapshotLive--;
+                return value;
+            }
+            cache.pin(id);
+            T value = loaded.remove(id);
+            if (value != null) {
+                extra--;
+            }
+            return value;
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (cache) {
+            cache.pinAll();
+            loaded.clear();
+            removed.clear();
+            cleared = true;
+            snapshotLive = 0;
+            extra = 0;
+        }
+    }
+
+    @Override
+    public int size() {
+        synchronized (cache) {
+            return snapshotLive + extra;
+        }
+    }
+
+    // Обход с созданием и запоминанием всех объектов: после него хранилище целиком в памяти
+    @Override
+    public Collection<T> values() {
+        return new Values(true);
+    }
+
+    // Обход для записи снимка: непрочитанные записи создаются на время обхода и не запоминаются
+    Collection<T> transientValues() {
+        return new Values(false);
+    }
+
+    @Override
+    public Set<Entry<Integer, T>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Integer, T>> iterator() {
+                Iterator<T> values = values().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return values.hasNext();
+                    }
+
+                    @Override
+                    public Entry<Integer, T> next() {
+                        T value = values.next();
+                        return new SimpleImmutableEntry<>(value.getId(), value);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return LazyTaskMap.this.size();
+            }
+        };
+    }
+
+    // Сначала живые записи снимка в порядке id, затем задачи, которых в снимке нет
+    private class Values extends AbstractCollection<T> {
+        private final boolean remember;
+
+        private Values(boolean remember) {
+            this.remember = remember;
+        }
+
+        @Override
+        public int size() {
+            return LazyTaskMap.this.size();
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            MappedSnapshot snapshot = cache.snapshot();
+            return new Iterator<>() {
+                private int entry;
+                private Iterator<T> added;
+                private T next;
+
+                @Override
+                public boolean hasNext() {
+                    if (next != null) {
+                        return true;
+                    }
+                    while (added == null && entry < snapshot.size()) {
+                        int current = entry++;
+                        int id = snapshot.idAt(current);
+                        if (snapshot.typeAt(current) == type && isLive(id)) {
+                            T value = loaded.get(id);
+                            next = value != null ? value : remember ? get(id) : read(id);
+                            if (next != null) {
+                                return true;
+                            }
+                        }
+                    }
+                    if (added == null) {
+                        added = loaded.values().iterator();
+                    }
+                    while (added.hasNext()) {
+                        T value = added.next();
+                        if (!isLive(value.getId())) {
+                            next = value;
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+
+                @Override
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    T value = next;
+                    next = null;
+                    return value;
+                }
+            };
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package manager;
 
+import java.io.File;
+
 public class Managers {
 
     private Managers() {
@@ -10,7 +12,36 @@ public class Managers {
         return new InMemoryTaskManager();
     }
 
+    // Менеджер для множества однотипных задач: одинаковые названия и описания хранятся один раз
+    public static TaskManager getCompact() {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        manager.setStringPool(new StringPool());
+        return manager;
+    }
+
+    // Менеджер для одновременной работы из нескольких потоков
+    public static TaskManager getConcurrent() {
+        return new ConcurrentTaskManager();
+    }
+
+    // Хранилище на диске с журналом, в памяти — не больше memoryBudgetBytes неизменённых задач
+    // и всё, что изменено со времени последнего снимка
+    public static FileBackedTaskManager getCached(File file, long memoryBudgetBytes) {
+        return FileBackedTaskManager.openMapped(file, true, memoryBudgetBytes);
+    }
+
+    // Обёртка с метриками над любым менеджером; показатели — в getMetrics()
+    public static MeteredTaskManager withMetrics(TaskManager manager) {
+        return new MeteredTaskManager(manager);
+    }
+
     public static HistoryManager getDefaultHistory() {
         return new InMemoryHistoryManager();
     }
+
+    // До 100 просмотров на сессию, не больше миллиона записей на все сессии,
+    // сессия закрывается после 30 минут бездействия
+    public static SessionHistoryManager getDefaultSessionHistory() {
+        return new SessionHistoryManager(100, 1_000_000, 30 * 60 * 1000L);
+    }
 }
@@ -0,0 +1,280 @@
+package manager;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// Двоичный снимок текущей версии, отображённый в память. Индекс в конце файла отсортирован по id,
+// поэтому запись находится двоичным поиском прямо по отображению, без структур в куче.
+// Задачи создаются только при чтении конкретной записи; при открытии читаются лишь заголовок
+// и окончание файла. Контрольная сумма при открытии не проверяется: для этого пришлось бы
+// прочитать весь файл, а быстрое открытие — смысл этого режима
+final class MappedSnapshot {
+
+    // Освобождение отображения без сборщика мусора (Unsafe.invokeCleaner); null — недоступно
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // без Unsafe отображение снимет сборщик мусора
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final int indexOffset;
+    private boolean closed;
+
+    private MappedSnapshot(MappedByteBuffer buffer, int count, int indexOffset) {
+        this.buffer = buffer;
+        this.count = count;
+        this.indexOffset = indexOffset;
+    }
+
+    // null, если файл нельзя отобразить: его нет, это CSV, двоичный снимок старой версии
+    // (без индекса или без времени задач) или файл больше 2 ГБ
+    static MappedSnapshot open(File file) throws IOException {
+        if (!file.exists() || !BinarySnapshot.isBinary(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE || size < BinarySnapshot.HEADER_SIZE + 2L * Long.BYTES) {
+                return null;
+            }
+            // отображение остаётся действительным и после закрытия канала
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getShort(BinarySnapshot.MAGIC.length) != BinarySnapshot.VERSION) {
+                return null;
+            }
+            int count = buffer.getInt(BinarySnapshot.MAGIC.length + Short.BYTES);
+            long indexOffset = buffer.getLong((int) size - 2 * Long.BYTES);
+            if (count < 0 || indexOffset < BinarySnapshot.HEADER_SIZE
+                    || indexOffset + (long) count * BinarySnapshot.INDEX_ENTRY_SIZE != size - 2 * Long.BYTES) {
+                throw new IOException("Индекс двоичного снимка повреждён");
+            }
+            return new MappedSnapshot(buffer, count, (int) indexOffset);
+        }
+    }
+
+    // Снимает отображение сразу, не дожидаясь сборщика мусора: пока оно живо, файл на некоторых
+    // системах нельзя заменить новым снимком. Вызывается, когда задачи уже прочитаны в кучу и
+    // других читателей нет — чтение после close обращается к уже освобождённой памяти
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        unmap(buffer);
+    }
+
+    private static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // не вышло — отображение снимет сборщик мусора
+        }
+    }
+
+    int size() {
+        return count;
+    }
+
+    int idAt(int entry) {
+        return buffer.getInt(entryOffset(entry));
+    }
+
+    byte typeAt(int entry) {
+        byte type = buffer.get(entryOffset(entry) + Integer.BYTES);
+        if (!BinarySnapshot.isType(type)) {
+            throw corrupted("неизвестный тип " + type + " в индексе");
+        }
+        return type;
+    }
+
+    Status statusAt(int entry) {
+        byte code = buffer.get(entryOffset(entry) + Integer.BYTES + 1);
+        if (!BinarySnapshot.isStatus(code)) {
+            throw corrupted("неизвестный статус " + code + " в индексе");
+        }
+        return BinarySnapshot.status(code);
+    }
+
+    int epicIdAt(int entry) {
+        return buffer.getInt(entryOffset(entry) + Integer.BYTES + 2);
+    }
+
+    // Номер записи индекса с этим id или -1
+    int find(int id) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int current = idAt(middle);
+            if (current < id) {
+                low = middle + 1;
+            } else if (current > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    // Тип записи с этим id или -1, если её в снимке нет
+    byte typeOf(int id) {
+        int entry = find(id);
+        return entry < 0 ? -1 : typeAt(entry);
+    }
+
+    // Создаёт задачу по записи снимка; каждый вызов возвращает новый объект
+    Task read(int id) {
+        int entry = find(id);
+        return entry < 0 ? null : readAt(offsetAt(entry));
+    }
+
+    int offsetAt(int entry) {
+        return (int) buffer.getLong(entryOffset(entry) + Integer.BYTES + 2 + Integer.BYTES);
+    }
+
+    // Начало и окончание задачи в наносекундах, ScheduleIndex.NO_TIME — не запланирована
+    long startAt(int entry) {
+        return buffer.getLong(entryOffset(entry) + Integer.BYTES + 2 + Integer.BYTES + Long.BYTES);
+    }
+
+    long endAt(int entry) {
+        return buffer.getLong(entryOffset(entry) + Integer.BYTES + 2 + Integer.BYTES + 2 * Long.BYTES);
+    }
+
+    // Смещения всех записей в порядке их следования в файле
+    int[] recordOffsets() {
+        int[] offsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = offsetAt(i);
+        }
+        Arrays.parallelSort(offsets);
+        return offsets;
+    }
+
+    // Полная проверка контрольной суммы, которую open пропускает
+    boolean checksumMatches() {
+        int payloadSize = buffer.capacity() - Long.BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, payloadSize));
+        return crc.getValue() == buffer.getLong(payloadSize);
+    }
+
+    // Создаёт задачу по записи, начинающейся с position. Контрольная сумма к этому моменту
+    // не проверена, поэтому коды, длины строк и смещения сверяются с границами записей:
+    // повреждённая запись даёт ManagerSaveException, а не выход за буфер или огромный массив
+    Task readAt(int position) {
+        try {
+            return decode(position);
+        } catch (IndexOutOfBoundsException | DateTimeException | ArithmeticException e) {
+            throw new ManagerSaveException("Двоичный снимок повреждён: запись по смещению " + position, e);
+        }
+    }
+
+    private Task decode(int position) {
+        if (position < BinarySnapshot.HEADER_SIZE || position >= indexOffset) {
+            throw corrupted("смещение записи " + position + " вне области записей");
+        }
+        byte type = buffer.get(position);
+        if (!BinarySnapshot.isType(type)) {
+            throw corrupted("неизвестный тип записи " + type);
+        }
+        int recordId = buffer.getInt(position + 1);
+        byte statusCode = buffer.get(position + 5);
+        if (!BinarySnapshot.isStatus(statusCode)) {
+            throw corrupted("неизвестный статус " + statusCode + " в записи " + recordId);
+        }
+        Status status = BinarySnapshot.status(statusCode);
+        position += 6;
+        int epicId = 0;
+        if (type == BinarySnapshot.TYPE_SUBTASK) {
+            epicId = buffer.getInt(position);
+            position += Integer.BYTES;
+        }
+        LocalDateTime startTime = null;
+        long seconds = buffer.getLong(position);
+        position += Long.BYTES;
+        if (seconds != Long.MIN_VALUE) {
+            startTime = LocalDateTime.ofEpochSecond(seconds, buffer.getInt(position), ZoneOffset.UTC);
+            position += Integer.BYTES;
+        }
+        Duration duration = null;
+        seconds = buffer.getLong(position);
+        position += Long.BYTES;
+        if (seconds != Long.MIN_VALUE) {
+            duration = Duration.ofSeconds(seconds, buffer.getInt(position));
+            position += Integer.BYTES;
+        }
+        int titleLength = buffer.getInt(position);
+        String title = getString(position);
+        position += Integer.BYTES + Math.max(titleLength, 0);
+        String description = getString(position);
+        switch (type) {
+            case BinarySnapshot.TYPE_TASK:
+                return new Task(recordId, title, description, status, startTime, duration);
+            case BinarySnapshot.TYPE_EPIC:
+                return new Epic(recordId, title, description, status);
+            default:
+                return new Subtask(recordId, title, description, status, epicId, startTime, duration);
+        }
+    }
+
+    private String getString(int position) {
+        int length = buffer.getInt(position);
+        if (length == -1) {
+            return null;
+        }
+        // строка не может выходить за область записей, которая кончается перед индексом
+        if (length < 0 || length > indexOffset - position - Integer.BYTES) {
+            throw corrupted("некорректная длина строки " + length);
+        }
+        byte[] bytes = new byte[length];
+        // чтение по абсолютной позиции не трогает position буфера, поэтому безопасно из разных потоков
+        buffer.get(position + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ManagerSaveException corrupted(String detail) {
+        return new ManagerSaveException("Двоичный снимок повреждён: " + detail, null);
+    }
+
+    private int entryOffset(int entry) {
+        return indexOffset + entry * BinarySnapshot.INDEX_ENTRY_SIZE;
+    }
+}
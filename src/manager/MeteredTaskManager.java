@@ -0,0 +1,355 @@
+package manager;
+
+import manager.TaskManagerMetrics.Operation;
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Обёртка над любым менеджером, которая замеряет каждую операцию и передаёт вызов дальше.
+// Для FileBackedTaskManager дополнительно подписывается на сохранения снимка и сбросы журнала.
+// Время query замеряется только до возврата потока: сам поток читается уже вызывающим
+public class MeteredTaskManager implements TaskManager {
+
+    private final TaskManager delegate;
+    private final TaskManagerMetrics metrics;
+
+    public MeteredTaskManager(TaskManager delegate) {
+        this.delegate = delegate;
+        this.metrics = new TaskManagerMetrics(delegate);
+        if (delegate instanceof FileBackedTaskManager fileBacked) {
+            fileBacked.setPersistenceListener(metrics);
+        }
+    }
+
+    public TaskManager getDelegate() {
+        return delegate;
+    }
+
+    public TaskManagerMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public Task createTask(String title, String description, Status status,
+                           LocalDateTime startTime, Duration duration) {
+        long start = metrics.start();
+        try {
+            return delegate.createTask(title, description, status, startTime, duration);
+        } finally {
+            metrics.record(Operation.CREATE_TASK, start);
+        }
+    }
+
+    @Override
+    public Epic createEpic(String title, String description, Status status) {
+        long start = metrics.start();
+        try {
+            return delegate.createEpic(title, description, status);
+        } finally {
+            metrics.record(Operation.CREATE_EPIC, start);
+        }
+    }
+
+    @Override
+    public Subtask createSubtask(String title, String description, Status status, int epicId,
+                                 LocalDateTime startTime, Duration duration) {
+        long start = metrics.start();
+        try {
+            return delegate.createSubtask(title, description, status, epicId, startTime, duration);
+        } finally {
+            metrics.record(Operation.CREATE_SUBTASK, start);
+        }
+    }
+
+    @Override
+    public Task getTaskById(int id) {
+        long start = metrics.start();
+        Task task = delegate.getTaskById(id);
+        metrics.record(Operation.GET_BY_ID, start);
+        metrics.recordLookup(task);
+        return task;
+    }
+
+    @Override
+    public Epic getEpicById(int id) {
+        long start = metrics.start();
+        Epic epic = delegate.getEpicById(id);
+        metrics.record(Operation.GET_BY_ID, start);
+        metrics.recordLookup(epic);
+        return epic;
+    }
+
+    @Override
+    public Subtask getSubtaskById(int id) {
+        long start = metrics.start();
+        Subtask subtask = delegate.getSubtaskById(id);
+        metrics.record(Operation.GET_BY_ID, start);
+        metrics.recordLookup(subtask);
+        return subtask;
+    }
+
+    @Override
+    public Task getTaskById(int id, String sessionId) {
+        long start = metrics.start();
+        Task task = delegate.getTaskById(id, sessionId);
+        metrics.record(Operation.GET_BY_ID, start);
+        metrics.recordLookup(task);
+        return task;
+    }
+
+    @Override
+    public Epic getEpicById(int id, String sessionId) {
+        long start = metrics.start();
+        Epic epic = delegate.getEpicById(id, sessionId);
+        metrics.record(Operation.GET_BY_ID, start);
+        metrics.recordLookup(epic);
+        return epic;
+    }
+
+    @Override
+    public Subtask getSubtaskById(int id, String sessionId) {
+        long start = metrics.start();
+        Subtask subtask = delegate.getSubtaskById(id, sessionId);
+        metrics.record(Operation.GET_BY_ID, start);
+        metrics.recordLookup(subtask);
+        return subtask;
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        long start = metrics.start();
+        try {
+            return delegate.getAllTasks();
+        } finally {
+            metrics.record(Operation.GET_ALL, start);
+        }
+    }
+
+    @Override
+    public List<Epic> getAllEpics() {
+        long start = metrics.start();
+        try {
+            return delegate.getAllEpics();
+        } finally {
+            metrics.record(Operation.GET_ALL, start);
+        }
+    }
+
+    @Override
+    public List<Subtask> getAllSubtasks() {
+        long start = metrics.start();
+        try {
+            return delegate.getAllSubtasks();
+        } finally {
+            metrics.record(Operation.GET_ALL, start);
+        }
+    }
+
+    @Override
+    public TaskSnapshot getSnapshot() {
+        long start = metrics.start();
+        try {
+            return delegate.getSnapshot();
+        } finally {
+            metrics.record(Operation.GET_ALL, start);
+        }
+    }
+
+    @Override
+    public long getVersion() {
+        return delegate.getVersion();
+    }
+
+    @Override
+    public Stream<Task> query(TaskQuery query) {
+        long start = metrics.start();
+        try {
+            return delegate.query(query);
+        } finally {
+            metrics.record(Operation.QUERY, start);
+        }
+    }
+
+    @Override
+    public TaskPage queryPage(TaskQuery query, int afterId, int limit) {
+        long start = metrics.start();
+        try {
+            return delegate.queryPage(query, afterId, limit);
+        } finally {
+            metrics.record(Operation.QUERY, start);
+        }
+    }
+
+    @Override
+    public int count(TaskQuery query) {
+        long start = metrics.start();
+        try {
+            return delegate.count(query);
+        } finally {
+            metrics.record(Operation.COUNT, start);
+        }
+    }
+
+    @Override
+    public void removeById(int id) {
+        long start = metrics.start();
+        try {
+            delegate.removeById(id);
+        } finally {
+            metrics.record(Operation.REMOVE, start);
+        }
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        long start = metrics.start();
+        try {
+            delegate.updateTask(task);
+        } finally {
+            metrics.record(Operation.UPDATE, start);
+        }
+    }
+
+    @Override
+    public Epic updateEpic(int epicId, String title, String description) {
+        long start = metrics.start();
+        try {
+            return delegate.updateEpic(epicId, title, description);
+        } finally {
+            metrics.record(Operation.UPDATE, start);
+        }
+    }
+
+    @Override
+    public void removeAllSubtasks() {
+        long start = metrics.start();
+        try {
+            delegate.removeAllSubtasks();
+        } finally {
+            metrics.record(Operation.REMOVE_ALL, start);
+        }
+    }
+
+    @Override
+    public void removeAllEpics() {
+        long start = metrics.start();
+        try {
+            delegate.removeAllEpics();
+        } finally {
+            metrics.record(Operation.REMOVE_ALL, start);
+        }
+    }
+
+    @Override
+    public void removeAllTasks() {
+        long start = metrics.start();
+        try {
+            delegate.removeAllTasks();
+        } finally {
+            metrics.record(Operation.REMOVE_ALL, start);
+        }
+    }
+
+    @Override
+    public List<Subtask> getSubtasksOfEpic(int epicId) {
+        long start = metrics.start();
+        try {
+            return delegate.getSubtasksOfEpic(epicId);
+        } finally {
+            metrics.record(Operation.GET_SUBTASKS_OF_EPIC, start);
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        long start = metrics.start();
+        try {
+            return delegate.getHistory();
+        } finally {
+            metrics.record(Operation.GET_HISTORY, start);
+        }
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        long start = metrics.start();
+        try {
+            return delegate.getPrioritizedTasks();
+        } finally {
+            metrics.record(Operation.GET_PRIORITIZED, start);
+        }
+    }
+
+    @Override
+    public List<Task> search(String query, int limit) {
+        long start = metrics.start();
+        try {
+            return delegate.search(query, limit);
+        } finally {
+            metrics.record(Operation.SEARCH, start);
+        }
+    }
+
+    @Override
+    public List<Task> getHistory(String sessionId) {
+        long start = metrics.start();
+        try {
+            return delegate.getHistory(sessionId);
+        } finally {
+            metrics.record(Operation.GET_HISTORY, start);
+        }
+    }
+
+    @Override
+    public void addListener(TaskListener listener) {
+        delegate.addListener(listener);
+    }
+
+    @Override
+    public void addListener(TaskListener listener, long afterSequence) {
+        delegate.addListener(listener, afterSequence);
+    }
+
+    @Override
+    public void removeListener(TaskListener listener) {
+        delegate.removeListener(listener);
+    }
+
+    // Начало, фиксация и откат пакета замеряются по отдельности: пакет может держать
+    // замок или копить записи, и дольше всего обычно длится commitBatch
+    @Override
+    public void beginBatch() {
+        long start = metrics.start();
+        try {
+            delegate.beginBatch();
+        } finally {
+            metrics.record(Operation.BATCH, start);
+        }
+    }
+
+    @Override
+    public void commitBatch() {
+        long start = metrics.start();
+        try {
+            delegate.commitBatch();
+        } finally {
+            metrics.record(Operation.BATCH, start);
+        }
+    }
+
+    @Override
+    public void rollbackBatch() {
+        long start = metrics.start();
+        try {
+            delegate.rollbackBatch();
+        } finally {
+            metrics.record(Operation.BATCH, start);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package manager;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+// Разбор снимка по частям в пуле fork-join. Каждая часть разбирается независимо,
+// а результат — задачи по типам в порядке файла, поэтому раскладка по хранилищам
+// даёт то же состояние, что и последовательная загрузка
+final class ParallelSnapshotLoader {
+
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int MIN_CHUNK_RECORDS = 16_384;
+    private static final int SCAN_WINDOW = 4096;
+
+    private ParallelSnapshotLoader() {
+    }
+
+    // Задачи одной части файла, разложенные по типам
+    static final class Chunk {
+        final List<Task> tasks = new ArrayList<>();
+        final List<Epic> epics = new ArrayList<>();
+        final List<Subtask> subtasks = new ArrayList<>();
+        int maxId;
+        boolean quoted;
+
+        private void add(Task task) {
+            if (task instanceof Epic epic) {
+                epics.add(epic);
+            } else if (task instanceof Subtask subtask) {
+                subtasks.add(subtask);
+            } else {
+                tasks.add(task);
+            }
+            maxId = Math.max(maxId, task.getId());
+        }
+
+        int size() {
+            return tasks.size() + epics.size() + subtasks.size();
+        }
+    }
+
+    // CSV режется по границам строк; первая строка файла — заголовок. Перевод строки внутри
+    // кавычек не отличить от границы записи, поэтому файл с кавычками не делится: тогда null
+    static List<Chunk> parseCsv(File file, ForkJoinPool pool, Function<String, Task> parser) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = lineStart(channel, 0, size);
+            int parts = (int) Math.max(1, Math.min(pool.getParallelism() * 4L, (size - start) / MIN_CHUNK_SIZE));
+            long[] bounds = new long[parts + 1];
+            bounds[0] = start;
+            for (int i = 1; i < parts; i++) {
+                bounds[i] = lineStart(channel, Math.max(bounds[i - 1], start + (size - start) * i / parts), size);
+            }
+            bounds[parts] = size;
+
+            List<Callable<Chunk>> jobs = new ArrayList<>();
+            for (int i = 0; i < parts; i++) {
+                long from = bounds[i];
+                long to = bounds[i + 1];
+                jobs.add(() -> parseLines(channel, from, to, parser));
+            }
+            List<Chunk> chunks = invokeAll(pool, jobs);
+            for (Chunk chunk : chunks) {
+                if (chunk.quoted) {
+                    return null;
+                }
+            }
+            return chunks;
+        }
+    }
+
+    // Записи двоичного снимка делятся по смещениям из индекса; контрольная сумма
+    // проверяется одновременно с разбором
+    static List<Chunk> parseBinary(MappedSnapshot snapshot, ForkJoinPool pool) throws IOException {
+        Future<Boolean> checksum = pool.submit(snapshot::checksumMatches);
+        int[] offsets = snapshot.recordOffsets();
+        int parts = Math.max(1, Math.min(pool.getParallelism() * 4, offsets.length / MIN_CHUNK_RECORDS));
+        List<Callable<Chunk>> jobs = new ArrayList<>();
+        for (int i = 0; i < parts; i++) {
+            int from = (int) ((long) offsets.length * i / parts);
+            int to = (int) ((long) offsets.length * (i + 1) / parts);
+            jobs.add(() -> {
+                Chunk chunk = new Chunk();
+                for (int j = from; j < to; j++) {
+                    chunk.add(snapshot.readAt(offsets[j]));
+                }
+                return chunk;
+            });
+        }
+        List<Chunk> chunks;
+        try {
+            chunks = invokeAll(pool, jobs);
+        } catch (IOException | RuntimeException e) {
+            // проверка суммы тоже читает отображение: после выхода снимок могут закрыть
+            try {
+                await(checksum);
+            } catch (IOException | RuntimeException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        if (!await(checksum)) {
+            throw new IOException("Контрольная сумма снимка не совпадает: файл повреждён");
+        }
+        return chunks;
+    }
+
+    static <T> List<T> invokeAll(ForkJoinPool pool, List<? extends Callable<T>> jobs) throws IOException {
+        List<T> results = new ArrayList<>(jobs.size());
+        for (Future<T> future : pool.invokeAll(jobs)) {
+            results.add(await(future));
+        }
+        return results;
+    }
+
+    // Ошибки частей пробрасываются как есть, чтобы загрузка падала так же, как последовательная
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Загрузка прервана", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static Chunk parseLines(FileChannel channel, long from, long to,
+                                    Function<String, Task> parser) throws IOException {
+        Chunk chunk = new Chunk();
+        if (from >= to) {
+            return chunk;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate((int) (to - from));
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, from + bytes.position()) < 0) {
+                throw new IOException("Файл изменился во время загрузки");
+            }
+        }
+        String text = new String(bytes.array(), StandardCharsets.UTF_8);
+        if (text.indexOf('"') >= 0) {
+            chunk.quoted = true;
+            return chunk;
+        }
+        int position = 0;
+        while (position < text.length()) {
+            int end = text.indexOf('\n', position);
+            if (end < 0) {
+                end = text.length();
+            }
+            int lineEnd = end > position && text.charAt(end - 1) == '\r' ? end - 1 : end;
+            if (lineEnd > position) {
+                chunk.add(parser.apply(text.substring(position, lineEnd)));
+            }
+            position = end + 1;
+        }
+        return chunk;
+    }
+
+    // Начало первой строки, которая начинается строго после position (или конец файла)
+    private static long lineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(SCAN_WINDOW);
+        while (position < size) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+}
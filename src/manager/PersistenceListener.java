@@ -0,0 +1,10 @@
+package manager;
+
+// Получает размер и длительность каждой записи FileBackedTaskManager на диск:
+// полного сохранения снимка и сброса накопленных записей журнала
+public interface PersistenceListener {
+
+    void snapshotSaved(long bytes, long nanos);
+
+    void journalFlushed(long bytes, long nanos);
+}
@@ -0,0 +1,265 @@
+package manager;
+
+import model.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Запланированные задачи и подзадачи в порядке начала (при равном начале — по id) и дерево
+// интервалов для проверки пересечений. Дерево — декартово (treap): ключ — начало и id,
+// случайный приоритет держит глубину O(log n), а каждый узел помнит самое позднее окончание
+// в своём поддереве. Поэтому поиск пересечения спускается по одной ветке, а не сравнивает
+// новое время со всеми задачами. Интервалы полуоткрытые [начало, окончание): задача,
+// которая начинается ровно в момент окончания другой, с ней не пересекается.
+// Время хранится в наносекундах от 1970-01-01T00:00 (примерно 1677–2262 годы)
+class ScheduleIndex {
+
+    // Нет времени: задача не запланирована
+    static final long NO_TIME = Long.MIN_VALUE;
+
+    private final Map<Integer, Node> nodes = new HashMap<>();
+    private Node root;
+
+    // Ставит задачу на её текущее время вместо прежнего; без начала задача из расписания убирается.
+    // При пересечении расписание не меняется
+    synchronized void place(int id, Task task) {
+        long start = start(task);
+        long end = start == NO_TIME ? NO_TIME : end(start, task.getDuration());
+        Node previous = nodes.remove(id);
+        if (previous != null) {
+            root = delete(root, previous);
+        }
+        if (start == NO_TIME) {
+            return;
+        }
+        int conflict = findOverlap(start, end);
+        if (conflict >= 0) {
+            if (previous != null) {
+                nodes.put(id, previous);
+                root = insert(root, previous.reset());
+            }
+            throw new TimeOverlapException(id, conflict);
+        }
+        add(id, start, end);
+    }
+
+    // Без проверки пересечений: задача из снимка, который уже был согласован
+    synchronized void add(int id, long start, long end) {
+        Node node = new Node(id, start, end);
+        Node previous = nodes.put(id, node);
+        if (previous != null) {
+            root = delete(root, previous);
+        }
+        root = insert(root, node);
+    }
+
+    // То же для задач, уже разобранных из снимка: расписание строится за один захват замка
+    synchronized void addAll(Iterable<? extends Task> tasks) {
+        for (Task task : tasks) {
+            long start = start(task);
+            if (start != NO_TIME) {
+                add(task.getId(), start, end(start, task.getDuration()));
+            }
+        }
+    }
+
+    synchronized void remove(int id) {
+        Node node = nodes.remove(id);
+        if (node != null) {
+            root = delete(root, node);
+        }
+    }
+
+    synchronized int size() {
+        return nodes.size();
+    }
+
+    synchronized boolean contains(int id) {
+        return nodes.containsKey(id);
+    }
+
+    // Id задачи, чей интервал пересекается с [start, end), или -1
+    synchronized int findOverlap(long start, long end) {
+        Node node = root;
+        while (node != null) {
+            if (node.start < end && start < node.end) {
+                return node.id;
+            }
+            // Если в левом поддереве есть окончание позже start, но пересечения там нет, то эта задача
+            // начинается не раньше end, а правее начала ещё позже — туда идти незачем
+            if (node.left != null && node.left.maxEnd > start) {
+                node = node.left;
+            } else if (node.start < end) {
+                node = node.right;
+            } else {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    // Id в порядке начала
+    synchronized int[] orderedIds() {
+        int[] ids = new int[nodes.size()];
+        Node[] stack = new Node[64];
+        int depth = 0;
+        int count = 0;
+        Node node = root;
+        while (node != null || depth > 0) {
+            while (node != null) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = node;
+                node = node.left;
+            }
+            node = stack[--depth];
+            ids[count++] = node.id;
+            node = node.right;
+        }
+        return ids;
+    }
+
+    // Начало задачи в наносекундах или NO_TIME
+    static long start(Task task) {
+        LocalDateTime start = task.getStartTime();
+        return start == null ? NO_TIME : toNanos(start);
+    }
+
+    // Окончание задачи, начинающейся в start; продолжительность без знака, null — ноль
+    static long end(long start, Duration duration) {
+        if (duration == null) {
+            return start;
+        }
+        if (duration.isNegative()) {
+            throw new IllegalArgumentException("Продолжительность не может быть отрицательной: " + duration);
+        }
+        try {
+            return Math.addExact(start, duration.toNanos());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Окончание задачи вне поддерживаемого диапазона", e);
+        }
+    }
+
+    static long toNanos(LocalDateTime time) {
+        try {
+            return Math.addExact(Math.multiplyExact(time.toEpochSecond(ZoneOffset.UTC), 1_000_000_000L), time.getNano());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Время вне поддерживаемого диапазона: " + time, e);
+        }
+    }
+
+    private static Node insert(Node tree, Node node) {
+        if (tree == null) {
+            return node;
+        }
+        if (node.priority > tree.priority) {
+            Node[] parts = split(tree, node);
+            node.left = parts[0];
+            node.right = parts[1];
+            return node.update();
+        }
+        if (node.compareTo(tree) < 0) {
+            tree.left = insert(tree.left, node);
+        } else {
+            tree.right = insert(tree.right, node);
+        }
+        return tree.update();
+    }
+
+    private static Node delete(Node tree, Node node) {
+        if (tree == null) {
+            return null;
+        }
+        if (tree == node) {
+            return merge(tree.left, tree.right);
+        }
+        if (node.compareTo(tree) < 0) {
+            tree.left = delete(tree.left, node);
+        } else {
+            tree.right = delete(tree.right, node);
+        }
+        return tree.update();
+    }
+
+    // Делит дерево на узлы меньше key и не меньше key
+    private static Node[] split(Node tree, Node key) {
+        if (tree == null) {
+            return new Node[2];
+        }
+        if (tree.compareTo(key) < 0) {
+            Node[] parts = split(tree.right, key);
+            tree.right = parts[0];
+            parts[0] = tree.update();
+            return parts;
+        }
+        Node[] parts = split(tree.left, key);
+        tree.left = parts[1];
+        parts[1] = tree.update();
+        return parts;
+    }
+
+    // Все ключи left меньше ключей right
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return left.update();
+        }
+        right.left = merge(left, right.left);
+        return right.update();
+    }
+
+    private static final class Node implements Comparable<Node> {
+        private final int id;
+        private final long start;
+        private final long end;
+        private final int priority = ThreadLocalRandom.current().nextInt();
+        private long maxEnd;
+        private Node left;
+        private Node right;
+
+        private Node(int id, long start, long end) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.maxEnd = end;
+        }
+
+        private Node update() {
+            long max = end;
+            if (left != null && left.maxEnd > max) {
+                max = left.maxEnd;
+            }
+            if (right != null && right.maxEnd > max) {
+                max = right.maxEnd;
+            }
+            maxEnd = max;
+            return this;
+        }
+
+        // Узел вынут из дерева и вставляется заново
+        private Node reset() {
+            left = null;
+            right = null;
+            maxEnd = end;
+            return this;
+        }
+
+        @Override
+        public int compareTo(Node other) {
+            int byStart = Long.compare(start, other.start);
+            return byStart != 0 ? byStart : Integer.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package manager;
+
+import model.Task;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.LongSupplier;
+
+// Отдельные истории просмотров для каждого пользователя/сессии.
+// Сессии хранятся в порядке последнего обращения, поэтому самая давно неактивная
+// всегда первая: простой по времени и превышение общего лимита записей
+// обрабатываются с начала списка за O(1) на каждую вытесненную сессию
+public class SessionHistoryManager {
+
+    private final int sessionCapacity;
+    private final int maxTotalEntries;
+    private final long idleTimeoutMillis;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, Session> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    private int totalEntries;
+    private long evictedSessions;
+
+    public SessionHistoryManager(int sessionCapacity, int maxTotalEntries, long idleTimeoutMillis) {
+        this(sessionCapacity, maxTotalEntries, idleTimeoutMillis, System::currentTimeMillis);
+    }
+
+    public SessionHistoryManager(int sessionCapacity, int maxTotalEntries, long idleTimeoutMillis,
+                                 LongSupplier clock) {
+        if (maxTotalEntries < 1 || idleTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Лимит записей и время простоя должны быть положительными");
+        }
+        this.sessionCapacity = sessionCapacity;
+        this.maxTotalEntries = maxTotalEntries;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.clock = clock;
+    }
+
+    public synchronized void add(String sessionId, Task task) {
+        if (task == null) {
+            return;
+        }
+        long now = clock.getAsLong();
+        evictIdle(now);
+        Session session = sessions.get(sessionId);
+        if (session == null) {
+            session = new Session(new InMemoryHistoryManager(sessionCapacity));
+            sessions.put(sessionId, session);
+        }
+        session.lastAccess = now;
+        int before = session.history.size();
+        session.history.add(task);
+        totalEntries += session.history.size() - before;
+        enforceBudget(session);
+    }
+
+    // История сессии; записи о задачах, которых уже нет (alive вернул false), выбрасываются.
+    // Удалённые задачи чистятся здесь лениво, чтобы удаление задачи не обходило все сессии
+    public synchronized List<Task> getHistory(String sessionId, IntPredicate alive) {
+        long now = clock.getAsLong();
+        evictIdle(now);
+        Session session = sessions.get(sessionId);
+        if (session == null) {
+            return new ArrayList<>();
+        }
+        session.lastAccess = now;
+        List<Task> history = session.history.getHistory();
+        List<Task> result = new ArrayList<>(history.size());
+        for (Task task : history) {
+            if (alive.test(task.getId())) {
+                result.add(task);
+            } else {
+                session.history.remove(task.getId());
+                totalEntries--;
+            }
+        }
+        return result;
+    }
+
+    public synchronized void removeSession(String sessionId) {
+        Session session = sessions.remove(sessionId);
+        if (session != null) {
+            totalEntries -= session.history.size();
+        }
+    }
+
+    // Закрывает сессии, к которым не обращались дольше idleTimeoutMillis
+    public synchronized void evictIdle() {
+        evictIdle(clock.getAsLong());
+    }
+
+    public synchronized int getSessionCount() {
+        return sessions.size();
+    }
+
+    public synchronized int getTotalEntries() {
+        return totalEntries;
+    }
+
+    public synchronized long getEvictedSessions() {
+        return evictedSessions;
+    }
+
+    private void evictIdle(long now) {
+        Iterator<Session> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            Session eldest = iterator.next();
+            if (now - eldest.lastAccess < idleTimeoutMillis) {
+                return;
+            }
+            totalEntries -= eldest.history.size();
+            iterator.remove();
+            evictedSessions++;
+        }
+    }
+
+    // При превышении общего лимита сначала целиком вытесняем самые давние сессии,
+    // а если осталась только текущая — укорачиваем её собственную историю
+    private void enforceBudget(Session current) {
+        Iterator<Map.Entry<String, Session>> iterator = sessions.entrySet().iterator();
+        while (totalEntries > maxTotalEntries && iterator.hasNext()) {
+            Session eldest = iterator.next().getValue();
+            if (eldest == current) {
+                break;
+            }
+            totalEntries -= eldest.history.size();
+            iterator.remove();
+            evictedSessions++;
+        }
+        while (totalEntries > maxTotalEntries && current.history.removeOldest()) {
+            totalEntries--;
+        }
+    }
+
+    private static class Session {
+        private final InMemoryHistoryManager history;
+        private long lastAccess;
+
+        private Session(InMemoryHistoryManager history) {
+            this.history = history;
+        }
+    }
+}
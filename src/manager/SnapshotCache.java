@@ -0,0 +1,233 @@
+package manager;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Общее состояние трёх LazyTaskMap: отображённый снимок, замок, под которым создаются
+// объекты, и кэш этих объектов с ограничением по памяти.
+// Вытесняются только «чистые» объекты — те, что совпадают со своей записью в снимке:
+// такой объект всегда можно прочитать заново. Всё, что менеджер тронул во время изменения,
+// и все новые задачи закрепляются в памяти до следующего снимка и в бюджет не входят.
+// Эпик вытесняется вместе с подзадачами из снимка, потому что хранит их объекты.
+// Порядок вытеснения — CLOCK, приближение LRU: попадание только ставит отметку
+// без замка, а обход по кругу снимает отметки и вытесняет первый неотмеченный объект
+final class SnapshotCache {
+
+    private volatile MappedSnapshot snapshot;
+    private final LazyTaskMap<?>[] maps = new LazyTaskMap<?>[3];
+    // Единица вытеснения по id любого её объекта: задача, эпик с подзадачами или подзадача без эпика
+    private final Map<Integer, Unit> units = new ConcurrentHashMap<>();
+    private final ArrayDeque<Unit> clock = new ArrayDeque<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile int writers;
+    private long budget;
+    private long usedBytes;
+
+    SnapshotCache(MappedSnapshot snapshot, long budget) {
+        this.snapshot = snapshot;
+        setBudget(budget);
+    }
+
+    MappedSnapshot snapshot() {
+        return snapshot;
+    }
+
+    void register(byte type, LazyTaskMap<?> map) {
+        maps[type] = map;
+    }
+
+    synchronized void setBudget(long budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Бюджет памяти не может быть отрицательным");
+        }
+        this.budget = budget;
+        evict(null);
+    }
+
+    synchronized long getBudget() {
+        return budget;
+    }
+
+    synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    // Изменение менеджера: пока оно идёт, прочитанные объекты закрепляются, а не кэшируются,
+    // и ничего не вытесняется — операция может держать ссылку на объект и менять его
+    synchronized void beginWrite() {
+        writers++;
+    }
+
+    synchronized void endWrite() {
+        writers--;
+        if (writers == 0) {
+            evict(null);
+        }
+    }
+
+    // Объект уже в памяти
+    void hit(int id) {
+        hits.increment();
+        if (writers > 0) {
+            pin(id);
+            return;
+        }
+        Unit unit = units.get(id);
+        if (unit != null) {
+            unit.referenced = true;
+        }
+    }
+
+    // Объект только что прочитан из снимка; вызывается под замком
+    void admit(Task task) {
+        misses.increment();
+        if (writers > 0 || units.containsKey(task.getId())) {
+            return; // закреплён или уже учтён вместе с эпиком
+        }
+        Unit unit = unitOf(task);
+        evict(unit);
+    }
+
+    // Объект изменён или удалён: его единица больше не совпадает со снимком
+    synchronized void pin(int id) {
+        Unit unit = units.get(id);
+        if (unit == null) {
+            return;
+        }
+        for (int member : unit.ids) {
+            units.remove(member);
+        }
+        unit.dead = true;
+        usedBytes -= unit.bytes;
+    }
+
+    synchronized void pinAll() {
+        units.clear();
+        clock.clear();
+        usedBytes = 0;
+    }
+
+    // Снимок пересохранён: всё, что в памяти, совпадает с новым файлом и снова может быть вытеснено
+    synchronized void rebase(MappedSnapshot snapshot) {
+        this.snapshot = snapshot;
+        pinAll();
+        int[] counts = new int[maps.length];
+        for (int i = 0; i < snapshot.size(); i++) {
+            counts[snapshot.typeAt(i)]++;
+        }
+        for (byte type = 0; type < maps.length; type++) {
+            maps[type].rebase(counts[type]);
+        }
+        // эпики первыми, чтобы их подзадачи попали в ту же единицу
+        for (byte type : new byte[]{BinarySnapshot.TYPE_EPIC, BinarySnapshot.TYPE_TASK, BinarySnapshot.TYPE_SUBTASK}) {
+            for (Task task : maps[type].loadedValues()) {
+                if (!units.containsKey(task.getId())) {
+                    unitOf(task).referenced = false;
+                }
+            }
+        }
+        evict(null);
+    }
+
+    private Unit unitOf(Task task) {
+        int[] ids;
+        long bytes = estimateBytes(task);
+        if (task instanceof Epic epic) {
+            ids = new int[epic.getSubtasks().size() + 1];
+            int i = 1;
+            for (Subtask subtask : epic.getSubtasks()) {
+                ids[i++] = subtask.getId();
+                bytes += estimateBytes(subtask);
+            }
+        } else {
+            ids = new int[1];
+        }
+        ids[0] = task.getId();
+        Unit unit = new Unit(ids, bytes);
+        for (int id : ids) {
+            units.put(id, unit);
+        }
+        clock.addLast(unit);
+        usedBytes += bytes;
+        return unit;
+    }
+
+    // Вытесняет единицы, пока объём больше бюджета; keep — только что прочитанная, её не трогаем
+    private void evict(Unit keep) {
+        while (usedBytes > budget && writers == 0) {
+            Unit unit = clock.pollFirst();
+            if (unit == null) {
+                return;
+            }
+            if (unit.dead) {
+                continue;
+            }
+            if (unit == keep) {
+                clock.addLast(unit);
+                if (clock.size() == 1) {
+                    return;
+                }
+                continue;
+            }
+            if (unit.referenced) {
+                unit.referenced = false;
+                clock.addLast(unit);
+                continue;
+            }
+            for (int id : unit.ids) {
+                units.remove(id);
+                for (LazyTaskMap<?> map : maps) {
+                    map.evict(id);
+                }
+            }
+            unit.dead = true;
+            usedBytes -= unit.bytes;
+            evictions.increment();
+        }
+    }
+
+    // Оценка сверху: объект с полями, строки по два байта на символ, узел ConcurrentHashMap с ключом
+    static long estimateBytes(Task task) {
+        long bytes = 128 + chars(task.getTitle()) + chars(task.getDescription());
+        if (task instanceof Epic epic) {
+            bytes += 160 + 80L * epic.getSubtaskIds().size();
+        }
+        return bytes;
+    }
+
+    private static long chars(String value) {
+        return value == null ? 0 : 48 + 2L * value.length();
+    }
+
+    private static final class Unit {
+        private final int[] ids;
+        private final long bytes;
+        private volatile boolean referenced = true;
+        private boolean dead;
+
+        private Unit(int[] ids, long bytes) {
+            this.ids = ids;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package manager;
+
+// Формат файла-снимка FileBackedTaskManager. При загрузке формат определяется по заголовку файла
+public enum SnapshotFormat {
+    CSV,
+    BINARY
+}
@@ -0,0 +1,60 @@
+package manager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Пул строк для повторяющихся названий и описаний: одинаковые строки разных задач
+// хранятся одним объектом. В пуле не больше capacity разных строк; когда он заполнен,
+// уже известные строки по-прежнему подменяются, а новые возвращаются как есть.
+// Строки удалённых задач из пула не уходят — для этого есть clear()
+public final class StringPool {
+
+    public static final int DEFAULT_CAPACITY = 100_000;
+
+    private final int capacity;
+    private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+
+    public StringPool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public StringPool(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Размер пула строк должен быть положительным");
+        }
+        this.capacity = capacity;
+    }
+
+    // Строка из пула, равная value, или сама value
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = strings.get(value);
+        if (pooled != null) {
+            if (pooled != value) {
+                hits.increment();
+            }
+            return pooled;
+        }
+        if (strings.size() >= capacity) {
+            return value;
+        }
+        pooled = strings.putIfAbsent(value, value);
+        return pooled == null ? value : pooled;
+    }
+
+    public int size() {
+        return strings.size();
+    }
+
+    // Сколько раз вместо переданной строки отдана уже лежащая в пуле
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public void clear() {
+        strings.clear();
+    }
+}
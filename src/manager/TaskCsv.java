@@ -0,0 +1,345 @@
+package manager;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import model.TaskType;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+// Потоковый экспорт и импорт задач в CSV: записи читаются и пишутся по одной, поэтому память
+// не зависит от размера файла. Поля с запятыми, кавычками и переводами строк берутся в кавычки
+// (кавычка внутри удваивается). Пустое поле без кавычек — null, пустая строка пишется как "".
+// Формат совпадает со снимком FileBackedTaskManager: "id,type,name,status,description,epic,start,duration".
+// Начало и продолжительность — в ISO-8601 (2024-05-01T10:00, PT1H30M); у эпика они не пишутся,
+// потому что считаются по подзадачам. Файлы без двух последних полей читаются как задачи без времени
+public final class TaskCsv {
+
+    public static final String HEADER = "id,type,name,status,description,epic,start,duration";
+    // Как часто (в записях) вызывается слушатель прогресса; в конце он вызывается всегда
+    public static final int PROGRESS_INTERVAL = 1000;
+
+    private TaskCsv() {
+    }
+
+    public static void writeHeader(Writer writer) throws IOException {
+        writer.write(HEADER);
+        writer.write('\n');
+    }
+
+    public static void write(Writer writer, Task task) throws IOException {
+        writer.write(String.valueOf(task.getId()));
+        writer.write(',');
+        writer.write(task.getType().name());
+        writer.write(',');
+        writeField(writer, task.getTitle());
+        writer.write(',');
+        writeField(writer, task.getStatus() == null ? null : task.getStatus().name());
+        writer.write(',');
+        writeField(writer, task.getDescription());
+        writer.write(',');
+        if (task instanceof Subtask subtask) {
+            writer.write(String.valueOf(subtask.getEpicId()));
+        }
+        writer.write(',');
+        if (!(task instanceof Epic) && task.getStartTime() != null) {
+            writer.write(task.getStartTime().toString());
+        }
+        writer.write(',');
+        if (!(task instanceof Epic) && task.getDuration() != null) {
+            writer.write(task.getDuration().toString());
+        }
+        writer.write('\n');
+    }
+
+    // Читает записи по одной и отдаёт их consumer с исходными id; первая строка — заголовок.
+    // Возвращает количество прочитанных задач
+    public static long read(Reader reader, Consumer<Task> consumer) throws IOException {
+        RecordReader records = new RecordReader(reader);
+        List<String> fields = new ArrayList<>(8);
+        boolean header = true;
+        long count = 0;
+        while (records.next(fields)) {
+            if (header) {
+                header = false;
+                continue;
+            }
+            if (fields.size() == 1 && fields.get(0) == null) {
+                continue; // пустая строка
+            }
+            consumer.accept(toTask(fields, records.line));
+            count++;
+        }
+        return count;
+    }
+
+    // Одна запись без перевода строки в конце: так задача пишется в журнал FileBackedTaskManager
+    static String format(Task task) {
+        StringWriter out = new StringWriter();
+        try {
+            write(out, task);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        StringBuffer record = out.getBuffer();
+        record.setLength(record.length() - 1);
+        return record.toString();
+    }
+
+    // Одна запись; переводы строк в ней допустимы только внутри кавычек
+    static Task parse(String line) {
+        RecordReader records = new RecordReader(new StringReader(line));
+        List<String> fields = new ArrayList<>(8);
+        try {
+            records.next(fields);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return toTask(fields, 1);
+    }
+
+    public static long export(TaskManager manager, OutputStream output, LongConsumer progress) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        long count = export(manager, writer, progress);
+        writer.flush();
+        return count;
+    }
+
+    // Задачи, эпики и подзадачи выгружаются ленивыми запросами по индексам менеджера,
+    // без копий списков getAll*. Эпики идут раньше подзадач, как того требует импорт
+    public static long export(TaskManager manager, Writer writer, LongConsumer progress) throws IOException {
+        writeHeader(writer);
+        long count = 0;
+        for (TaskType type : TaskType.values()) {
+            Iterator<Task> tasks = manager.query(TaskQuery.all().withType(type)).iterator();
+            while (tasks.hasNext()) {
+                write(writer, tasks.next());
+                count++;
+                if (progress != null && count % PROGRESS_INTERVAL == 0) {
+                    progress.accept(count);
+                }
+            }
+        }
+        writer.flush();
+        if (progress != null) {
+            progress.accept(count);
+        }
+        return count;
+    }
+
+    public static long importInto(TaskManager manager, InputStream input, LongConsumer progress) throws IOException {
+        return importInto(manager, new InputStreamReader(input, StandardCharsets.UTF_8), 0, progress);
+    }
+
+    public static long importInto(TaskManager manager, Reader reader, LongConsumer progress) throws IOException {
+        return importInto(manager, reader, 0, progress);
+    }
+
+    // Создаёт задачи из CSV в существующем менеджере; задачи получают новые id, подзадачи
+    // переводятся на новые id своих эпиков из того же файла (id эпика не из файла остаётся как есть).
+    // Импорт идёт пакетами по batchSize записей, при batchSize <= 0 — одним пакетом: файловый
+    // менеджер сохраняется один раз на пакет, а ошибка откатывает весь текущий пакет.
+    // Запомнить приходится только соответствие id эпиков
+    public static long importInto(TaskManager manager, Reader reader, int batchSize,
+                                  LongConsumer progress) throws IOException {
+        Map<Integer, Integer> epicIds = new HashMap<>();
+        long[] count = new long[1];
+        manager.beginBatch();
+        try {
+            read(reader, task -> {
+                importTask(manager, task, epicIds);
+                count[0]++;
+                if (batchSize > 0 && count[0] % batchSize == 0) {
+                    manager.commitBatch();
+                    manager.beginBatch();
+                }
+                if (progress != null && count[0] % PROGRESS_INTERVAL == 0) {
+                    progress.accept(count[0]);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            manager.rollbackBatch();
+            throw e;
+        }
+        manager.commitBatch();
+        if (progress != null) {
+            progress.accept(count[0]);
+        }
+        return count[0];
+    }
+
+    private static void importTask(TaskManager manager, Task task, Map<Integer, Integer> epicIds) {
+        if (task instanceof Epic) {
+            Epic epic = manager.createEpic(task.getTitle(), task.getDescription(), task.getStatus());
+            epicIds.put(task.getId(), epic.getId());
+        } else if (task instanceof Subtask subtask) {
+            int epicId = epicIds.getOrDefault(subtask.getEpicId(), subtask.getEpicId());
+            manager.createSubtask(task.getTitle(), task.getDescription(), task.getStatus(), epicId,
+                    task.getStartTime(), task.getDuration());
+        } else {
+            manager.createTask(task.getTitle(), task.getDescription(), task.getStatus(),
+                    task.getStartTime(), task.getDuration());
+        }
+    }
+
+    private static Task toTask(List<String> fields, long line) {
+        if (fields.size() < 5) {
+            throw new IllegalArgumentException("Строка " + line + ": ожидалось 6 полей, получено " + fields.size());
+        }
+        try {
+            int id = Integer.parseInt(fields.get(0));
+            TaskType type = TaskType.valueOf(fields.get(1));
+            String title = fields.get(2);
+            Status status = fields.get(3) == null ? null : Status.valueOf(fields.get(3));
+            String description = fields.get(4);
+            LocalDateTime startTime = fields.size() > 6 && fields.get(6) != null
+                    ? LocalDateTime.parse(fields.get(6)) : null;
+            Duration duration = fields.size() > 7 && fields.get(7) != null ? Duration.parse(fields.get(7)) : null;
+            switch (type) {
+                case TASK:
+                    return new Task(id, title, description, status, startTime, duration);
+                case EPIC:
+                    return new Epic(id, title, description, status);
+                default:
+                    if (fields.size() < 6 || fields.get(5) == null) {
+                        throw new IllegalArgumentException("у подзадачи не указан эпик");
+                    }
+                    return new Subtask(id, title, description, status, Integer.parseInt(fields.get(5)),
+                            startTime, duration);
+            }
+        } catch (NullPointerException | IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Строка " + line + ": некорректная запись: " + e.getMessage(), e);
+        }
+    }
+
+    private static void writeField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (!value.isEmpty() && !needsQuotes(value)) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Разбор записей посимвольно из буферизованного потока; запись может занимать
+    // несколько строк, если перевод строки стоит внутри кавычек
+    private static class RecordReader {
+        private final Reader reader;
+        private final StringBuilder field = new StringBuilder();
+        private int lookahead = -2;
+        private long line;
+
+        private RecordReader(Reader reader) {
+            this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+        }
+
+        // Заполняет fields полями следующей записи; false — поток закончился
+        boolean next(List<String> fields) throws IOException {
+            fields.clear();
+            int c = read();
+            if (c < 0) {
+                return false;
+            }
+            line++;
+            while (true) {
+                field.setLength(0);
+                boolean quoted = false;
+                if (c == '"') {
+                    quoted = true;
+                    c = readQuoted();
+                } else {
+                    while (c >= 0 && c != ',' && c != '\n' && c != '\r') {
+                        field.append((char) c);
+                        c = read();
+                    }
+                }
+                fields.add(quoted || field.length() > 0 ? field.toString() : null);
+                if (c == ',') {
+                    c = read();
+                    continue;
+                }
+                if (c == '\r') {
+                    int next = read();
+                    if (next != '\n') {
+                        lookahead = next;
+                    }
+                } else if (c >= 0 && c != '\n') {
+                    throw new IllegalArgumentException("Строка " + line + ": лишние символы после кавычек");
+                }
+                return true;
+            }
+        }
+
+        // Читает поле в кавычках, возвращает первый символ после закрывающей кавычки
+        private int readQuoted() throws IOException {
+            long start = line;
+            while (true) {
+                int c = read();
+                if (c < 0) {
+                    throw new IllegalArgumentException("Строка " + start + ": не закрыта кавычка");
+                }
+                if (c == '"') {
+                    int next = read();
+                    if (next != '"') {
+                        return next;
+                    }
+                } else if (c == '\n') {
+                    line++;
+                }
+                field.append((char) c);
+            }
+        }
+
+        private int read() throws IOException {
+            if (lookahead != -2) {
+                int c = lookahead;
+                lookahead = -2;
+                return c;
+            }
+            return reader.read();
+        }
+    }
+}
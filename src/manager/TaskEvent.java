@@ -0,0 +1,94 @@
+package manager;
+
+import model.Status;
+import model.Subtask;
+import model.Task;
+import model.TaskType;
+
+// Изменение задачи в менеджере. Поля задачи копируются в момент изменения, поэтому событие
+// не меняется вместе с объектом. Номер события сквозной для менеджера и начинается с 1:
+// по нему подписчик продолжает получать события после переподключения
+public final class TaskEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        REMOVED,
+        // previousStatus — статус эпика до пересчёта
+        EPIC_STATUS_CHANGED
+    }
+
+    private long sequence;
+    private final Type type;
+    private final int taskId;
+    private final TaskType taskType;
+    private final String title;
+    private final String description;
+    private final Status status;
+    private final Status previousStatus;
+    private final int epicId;
+
+    TaskEvent(Type type, Task task, Status previousStatus) {
+        this.type = type;
+        this.taskId = task.getId();
+        this.taskType = task.getType();
+        this.title = task.getTitle();
+        this.description = task.getDescription();
+        this.status = task.getStatus();
+        this.previousStatus = previousStatus;
+        this.epicId = task instanceof Subtask subtask ? subtask.getEpicId() : 0;
+    }
+
+    // Номер присваивается диспетчером при публикации, до того как событие увидят подписчики
+    void assignSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getTaskId() {
+        return taskId;
+    }
+
+    public TaskType getTaskType() {
+        return taskType;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Status getPreviousStatus() {
+        return previousStatus;
+    }
+
+    // Эпик подзадачи; 0 для задач и эпиков
+    public int getEpicId() {
+        return epicId;
+    }
+
+    @Override
+    public String toString() {
+        return "TaskEvent{" +
+                "sequence=" + sequence +
+                ", type=" + type +
+                ", taskId=" + taskId +
+                ", taskType=" + taskType +
+                ", status=" + status +
+                '}';
+    }
+}
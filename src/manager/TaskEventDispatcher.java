@@ -0,0 +1,296 @@
+package manager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Асинхронная рассылка событий менеджера подписчикам. События лежат в кольцевом буфере
+// фиксированного размера, отдельный поток забирает их пачками и отдаёт каждому подписчику
+// по очереди. Писатель только кладёт событие в буфер и ждёт лишь при переполнении с политикой BLOCK.
+// Разосланные события остаются в буфере, пока их не перезапишут новые, поэтому подписчик,
+// запомнивший номер последнего полученного события, может продолжить с него после переподключения
+public final class TaskEventDispatcher implements AutoCloseable {
+
+    // Что делать писателю, когда буфер заполнен неразосланными событиями
+    public enum Overflow {
+        // ждать, пока поток рассылки освободит место; подписчик при этом не должен ждать замков менеджера
+        BLOCK,
+        // вытеснить самое старое неразосланное событие; подписчики узнают о потере через onEventsLost
+        DROP_OLDEST
+    }
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final TaskEvent[] ring;
+    private final int mask;
+    private final int batchSize;
+    private final Overflow overflow;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final Thread worker;
+
+    // Дальше всё под lock: номера последнего опубликованного и последнего разосланного события
+    private long lastPublished;
+    private long lastDispatched;
+    private boolean workerWaiting;
+    // новому подписчику надо дослать уже разосланные события
+    private boolean catchUp;
+    private boolean closed;
+
+    public TaskEventDispatcher() {
+        this(DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, Overflow.BLOCK);
+    }
+
+    // Ёмкость округляется вверх до степени двойки
+    public TaskEventDispatcher(int capacity, int batchSize, Overflow overflow) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Некорректная ёмкость буфера событий: " + capacity);
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Размер пачки должен быть положительным");
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.ring = new TaskEvent[size];
+        this.mask = size - 1;
+        this.batchSize = batchSize;
+        this.overflow = overflow;
+        this.worker = new Thread(this::run, "task-events");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Подписка на события, опубликованные после этого вызова
+    public void addListener(TaskListener listener) {
+        lock.lock();
+        try {
+            addListener(listener, lastPublished);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Подписка с продолжением: подписчик получит все события с номерами больше afterSequence.
+    // Если часть из них уже вытеснена из буфера, сначала придёт onEventsLost
+    public void addListener(TaskListener listener, long afterSequence) {
+        lock.lock();
+        try {
+            if (afterSequence < 0 || afterSequence > lastPublished) {
+                throw new IllegalArgumentException("Нет события с номером " + afterSequence
+                        + ", последнее опубликованное — " + lastPublished);
+            }
+            subscriptions.add(new Subscription(listener, afterSequence));
+            if (afterSequence < lastDispatched) {
+                catchUp = true;
+                signalWorker();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void removeListener(TaskListener listener) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.listener == listener) {
+                subscription.active = false;
+                subscriptions.remove(subscription);
+            }
+        }
+    }
+
+    // Кладёт событие в буфер и присваивает ему номер. После close события отбрасываются
+    void publish(TaskEvent event) {
+        lock.lock();
+        try {
+            if (lastPublished - lastDispatched == ring.length) {
+                // поток рассылки не может ждать сам себя, если подписчик меняет менеджер
+                if (overflow == Overflow.BLOCK && Thread.currentThread() != worker) {
+                    while (lastPublished - lastDispatched == ring.length && !closed) {
+                        notFull.awaitUninterruptibly();
+                    }
+                } else {
+                    lastDispatched++;
+                    dropped.increment();
+                }
+            }
+            if (closed) {
+                return;
+            }
+            long sequence = ++lastPublished;
+            event.assignSequence(sequence);
+            ring[(int) sequence & mask] = event;
+            signalWorker();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getLastSequence() {
+        lock.lock();
+        try {
+            return lastPublished;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Сколько событий вытеснено до рассылки при политике DROP_OLDEST
+    public long getDroppedEvents() {
+        return dropped.sum();
+    }
+
+    // Сколько раз подписчик бросил исключение; события такой пачки считаются доставленными
+    public long getListenerFailures() {
+        return failures.sum();
+    }
+
+    // Ждёт, пока событие с номером sequence разошлётся всем подписчикам
+    public boolean awaitDispatched(long sequence, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (lastDispatched < sequence) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Досылает уже опубликованные события и останавливает поток рассылки
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (Thread.currentThread() != worker) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void signalWorker() {
+        if (workerWaiting) {
+            notEmpty.signal();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            long first;
+            List<TaskEvent> batch;
+            lock.lock();
+            try {
+                while (lastDispatched == lastPublished && !catchUp && !closed) {
+                    workerWaiting = true;
+                    notEmpty.awaitUninterruptibly();
+                    workerWaiting = false;
+                }
+                if (closed && lastDispatched == lastPublished) {
+                    return;
+                }
+                catchUp = false;
+                first = lastDispatched + 1;
+                long last = Math.min(lastPublished, lastDispatched + batchSize);
+                batch = new ArrayList<>((int) (last - first + 1));
+                for (long sequence = first; sequence <= last; sequence++) {
+                    batch.add(ring[(int) sequence & mask]);
+                }
+            } finally {
+                lock.unlock();
+            }
+            List<TaskEvent> events = Collections.unmodifiableList(batch);
+            for (Subscription subscription : subscriptions) {
+                deliver(subscription, first, events);
+            }
+            lock.lock();
+            try {
+                // при DROP_OLDEST писатель мог сдвинуть счётчик дальше этой пачки
+                lastDispatched = Math.max(lastDispatched, first + batch.size() - 1);
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Пачка начинается с номера first; подписчик, отставший от неё, сначала получает пропущенное
+    private void deliver(Subscription subscription, long first, List<TaskEvent> events) {
+        try {
+            if (subscription.delivered < first - 1) {
+                catchUp(subscription, first - 1);
+            }
+            int from = (int) Math.max(0, subscription.delivered + 1 - first);
+            if (from < events.size() && subscription.active) {
+                subscription.listener.onEvents(from == 0 ? events : events.subList(from, events.size()));
+            }
+        } catch (RuntimeException e) {
+            failures.increment();
+        }
+        subscription.delivered = Math.max(subscription.delivered, first + events.size() - 1);
+    }
+
+    private void catchUp(Subscription subscription, long upTo) {
+        long from = subscription.delivered + 1;
+        long lostTo = 0;
+        List<TaskEvent> missed;
+        lock.lock();
+        try {
+            long oldest = Math.max(1, lastPublished - ring.length + 1);
+            if (from < oldest) {
+                lostTo = Math.min(upTo, oldest - 1);
+            }
+            long start = Math.max(from, lostTo + 1);
+            missed = new ArrayList<>((int) Math.max(0, upTo - start + 1));
+            for (long sequence = start; sequence <= upTo; sequence++) {
+                missed.add(ring[(int) sequence & mask]);
+            }
+        } finally {
+            lock.unlock();
+        }
+        subscription.delivered = upTo;
+        if (!subscription.active) {
+            return;
+        }
+        if (lostTo > 0) {
+            subscription.listener.onEventsLost(from, lostTo);
+        }
+        for (int i = 0; i < missed.size(); i += batchSize) {
+            List<TaskEvent> part = missed.subList(i, Math.min(missed.size(), i + batchSize));
+            subscription.listener.onEvents(Collections.unmodifiableList(part));
+        }
+    }
+
+    private static final class Subscription {
+        private final TaskListener listener;
+        // номер последнего события, отданного подписчику; меняется только потоком рассылки
+        private long delivered;
+        private volatile boolean active = true;
+
+        private Subscription(TaskListener listener, long delivered) {
+            this.listener = listener;
+            this.delivered = delivered;
+        }
+    }
+}
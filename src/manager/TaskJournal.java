@@ -0,0 +1,117 @@
+package manager;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.function.Consumer;
+
+// Журнал изменений: каждая операция дописывается в конец файла одной записью,
+// поэтому стоимость записи не зависит от количества задач в менеджере. Запись заканчивается
+// переводом строки вне кавычек: поле в кавычках (как в CSV) может содержать и перевод строки
+public class TaskJournal implements Closeable {
+
+    private final File file;
+    private FileOutputStream output;
+    private Writer writer;
+    private int recordCount;
+
+    public TaskJournal(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    // Количество записей, накопленных с момента последнего сжатия
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    public void append(String record) {
+        try {
+            if (writer == null) {
+                output = new FileOutputStream(file, true);
+                writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            }
+            writer.write(record);
+            writer.write('\n');
+            recordCount++;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при записи в журнал", e);
+        }
+    }
+
+    // Отдаёт накопленные записи операционной системе; при force ещё и дожидается записи на диск
+    public void flush(boolean force) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+            if (force) {
+                output.getChannel().force(false);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при записи в журнал", e);
+        }
+    }
+
+    // Проигрывает все записи журнала по порядку, возвращает их количество. Запись без перевода
+    // строки в конце файла — оборванная сбоем дозапись: она пропускается, а не читается наполовину
+    public int replay(Consumer<String> handler) {
+        if (!file.exists()) {
+            return 0;
+        }
+        int count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            StringBuilder record = new StringBuilder();
+            boolean quoted = false;
+            int c;
+            while ((c = reader.read()) >= 0) {
+                if (c == '"') {
+                    quoted = !quoted; // удвоенная кавычка внутри поля переключает дважды
+                } else if (c == '\n' && !quoted) {
+                    if (record.length() > 0) {
+                        handler.accept(record.toString());
+                        count++;
+                    }
+                    record.setLength(0);
+                    continue;
+                }
+                record.append((char) c);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при чтении журнала", e);
+        }
+        recordCount = count;
+        return count;
+    }
+
+    // Очищает журнал после того, как его содержимое попало в снимок
+    public void truncate() {
+        try {
+            close();
+            Files.deleteIfExists(file.toPath());
+            recordCount = 0;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при очистке журнала", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+            output = null;
+        }
+    }
+}
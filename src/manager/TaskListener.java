@@ -0,0 +1,16 @@
+package manager;
+
+import java.util.List;
+
+// Подписчик на изменения задач. Методы вызываются из потока рассылки TaskEventDispatcher,
+// события приходят пачками строго по возрастанию номеров
+public interface TaskListener {
+
+    void onEvents(List<TaskEvent> events);
+
+    // События с номерами from..to подписчик уже не получит: их вытеснили из буфера новые
+    // (политика DROP_OLDEST или подписка с номера, которого в буфере нет).
+    // Состояние стоит перечитать целиком, например через getSnapshot
+    default void onEventsLost(long fromSequence, long toSequence) {
+    }
+}
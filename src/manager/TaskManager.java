@@ -5,15 +5,29 @@ import model.Status;
 import model.Subtask;
 import model.Task;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface TaskManager {
 
-    Task createTask(String title, String description, Status status);
+    default Task createTask(String title, String description, Status status) {
+        return createTask(title, description, status, null, null);
+    }
+
+    // Задача со временем начала и продолжительностью; если время пересекается с другой
+    // запланированной задачей или подзадачей, бросается TimeOverlapException и ничего не создаётся
+    Task createTask(String title, String description, Status status, LocalDateTime startTime, Duration duration);
 
     Epic createEpic(String title, String description, Status status);
 
-    Subtask createSubtask(String title, String description, Status status, int epicId);
+    default Subtask createSubtask(String title, String description, Status status, int epicId) {
+        return createSubtask(title, description, status, epicId, null, null);
+    }
+
+    Subtask createSubtask(String title, String description, Status status, int epicId,
+                          LocalDateTime startTime, Duration duration);
 
     // Новые методы для получения по id
     Task getTaskById(int id);
@@ -22,19 +36,46 @@ public interface TaskManager {
 
     Subtask getSubtaskById(int id);
 
-    // Получить задачи всех типов
+    // Получение по id с записью в историю конкретного пользователя/сессии
+    Task getTaskById(int id, String sessionId);
+
+    Epic getEpicById(int id, String sessionId);
+
+    Subtask getSubtaskById(int id, String sessionId);
+
+    // Получить задачи всех типов (неизменяемые списки из текущего среза)
     List<Task> getAllTasks();
 
     List<Epic> getAllEpics();
 
     List<Subtask> getAllSubtasks();
 
+    // Согласованный неизменяемый срез всех задач; пока ничего не менялось, возвращается тот же объект
+    TaskSnapshot getSnapshot();
+
+    // Номер версии растёт при каждом изменении: если он не изменился, перечитывать задачи не нужно
+    long getVersion();
+
+    // Ленивая выборка в порядке возрастания id: задачи читаются по мере потребления потока,
+    // хранилище целиком не копируется. Поток не добавляет задачи в историю
+    Stream<Task> query(TaskQuery query);
+
+    // Страница выборки: не больше limit задач с id больше afterId (для первой страницы afterId = 0)
+    TaskPage queryPage(TaskQuery query, int afterId, int limit);
+
+    // Количество задач под условием; для условий только по типу, статусу и эпику — за O(1) по индексам
+    int count(TaskQuery query);
+
     // Удалить задачу по ID
     void removeById(int id);
 
     // Обновление задачи по ID (полностью заменить)
     void updateTask(Task task);
 
+    // Меняет название и описание хранимого эпика на месте, не трогая его подзадачи и статус;
+    // null в description оставляет прежнее описание. Возвращает эпик или null, если его нет
+    Epic updateEpic(int epicId, String title, String description);
+
     void removeAllSubtasks();
 
     void removeAllEpics();
@@ -46,4 +87,43 @@ public interface TaskManager {
 
     List<Task> getHistory();
 
+    // Задачи и подзадачи со временем начала в порядке начала; задачи без времени и эпики не входят.
+    // Порядок поддерживается индексом при каждом изменении, при вызове ничего не сортируется
+    List<Task> getPrioritizedTasks();
+
+    // Полнотекстовый поиск по названиям и описаниям задач всех типов: не больше limit задач,
+    // самые подходящие первыми. Слова запроса объединяются по «И», регистр и окончания
+    // не важны, «*» в конце слова ищет по префиксу («разраб*»). В историю не попадает
+    List<Task> search(String query, int limit);
+
+    List<Task> getHistory(String sessionId);
+
+    // Подписка на изменения задач: события приходят асинхронно, пачками, по возрастанию номеров.
+    // С afterSequence подписчик продолжает с события, следующего за уже полученным
+    void addListener(TaskListener listener);
+
+    void addListener(TaskListener listener, long afterSequence);
+
+    void removeListener(TaskListener listener);
+
+    // Пакетное изменение: пересчёт статусов эпиков и сохранение откладываются до commitBatch,
+    // а rollbackBatch возвращает хранилище к состоянию на момент beginBatch
+    void beginBatch();
+
+    void commitBatch();
+
+    void rollbackBatch();
+
+    // Выполняет все операции одним пакетом; при исключении пакет откатывается
+    default void executeBatch(Runnable batch) {
+        beginBatch();
+        try {
+            batch.run();
+        } catch (RuntimeException e) {
+            rollbackBatch();
+            throw e;
+        }
+        commitBatch();
+    }
+
 }
@@ -0,0 +1,239 @@
+package manager;
+
+import model.TaskType;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+// Показатели менеджера задач: гистограмма длительности каждой операции, попадания и промахи
+// чтения по id, размеры хранилищ, история и запись на диск. Размеры и история читаются
+// у менеджера в момент запроса, а не считаются на каждой операции.
+// Выключенные метрики ничего не записывают: операция стоит одного чтения volatile-флага
+public class TaskManagerMetrics implements TaskManagerMetricsMBean, PersistenceListener {
+
+    public enum Operation {
+        CREATE_TASK("createTask"),
+        CREATE_EPIC("createEpic"),
+        CREATE_SUBTASK("createSubtask"),
+        GET_BY_ID("getById"),
+        GET_ALL("getAll"),
+        QUERY("query"),
+        COUNT("count"),
+        UPDATE("updateTask"),
+        REMOVE("removeById"),
+        REMOVE_ALL("removeAll"),
+        GET_SUBTASKS_OF_EPIC("getSubtasksOfEpic"),
+        GET_HISTORY("getHistory"),
+        GET_PRIORITIZED("getPrioritizedTasks"),
+        SEARCH("search"),
+        BATCH("batch"),
+        SAVE("save"),
+        JOURNAL_FLUSH("journalFlush");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final TaskManager manager;
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+    private final LongAdder historyHits = new LongAdder();
+    private final LongAdder historyMisses = new LongAdder();
+    private final LongAdder snapshotBytes = new LongAdder();
+    private final LongAdder journalBytes = new LongAdder();
+    private final List<ObjectName> registered = new ArrayList<>();
+    private volatile boolean enabled = true;
+
+    public TaskManagerMetrics(TaskManager manager) {
+        this.manager = manager;
+        for (Operation operation : Operation.values()) {
+            latencies[operation.ordinal()] = new LatencyHistogram(operation.getLabel());
+        }
+    }
+
+    // Отметка начала операции; 0 — метрики выключены и замер не нужен
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void record(Operation operation, long start) {
+        if (start != 0) {
+            latencies[operation.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    // Чтение по id: найдено (и попало в историю) или нет
+    public void recordLookup(Object result) {
+        if (!enabled) {
+            return;
+        }
+        if (result != null) {
+            historyHits.increment();
+        } else {
+            historyMisses.increment();
+        }
+    }
+
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    @Override
+    public void snapshotSaved(long bytes, long nanos) {
+        if (enabled) {
+            snapshotBytes.add(bytes);
+            latencies[Operation.SAVE.ordinal()].record(nanos);
+        }
+    }
+
+    @Override
+    public void journalFlushed(long bytes, long nanos) {
+        if (enabled) {
+            journalBytes.add(bytes);
+            latencies[Operation.JOURNAL_FLUSH.ordinal()].record(nanos);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public int getTaskCount() {
+        return manager.count(TaskQuery.all().withType(TaskType.TASK));
+    }
+
+    @Override
+    public int getEpicCount() {
+        return manager.count(TaskQuery.all().withType(TaskType.EPIC));
+    }
+
+    @Override
+    public int getSubtaskCount() {
+        return manager.count(TaskQuery.all().withType(TaskType.SUBTASK));
+    }
+
+    @Override
+    public long getHistoryHits() {
+        return historyHits.sum();
+    }
+
+    @Override
+    public long getHistoryMisses() {
+        return historyMisses.sum();
+    }
+
+    @Override
+    public long getHistoryRepeatedViews() {
+        return manager instanceof InMemoryTaskManager inMemory
+                ? inMemory.getHistoryManager().getRepeatedViews() : 0;
+    }
+
+    @Override
+    public long getHistoryEvictions() {
+        return manager instanceof InMemoryTaskManager inMemory
+                ? inMemory.getHistoryManager().getEvictions() : 0;
+    }
+
+    @Override
+    public long getEvictedSessions() {
+        return manager instanceof InMemoryTaskManager inMemory
+                ? inMemory.getSessionHistoryManager().getEvictedSessions() : 0;
+    }
+
+    @Override
+    public long getSnapshotBytes() {
+        return snapshotBytes.sum();
+    }
+
+    @Override
+    public long getJournalBytes() {
+        return journalBytes.sum();
+    }
+
+    // Все показатели текстом, по строке на операцию
+    @Override
+    public String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "%-18s %10s %12s %12s %12s %12s%n",
+                "operation", "count", "mean_us", "p50_us", "p99_us", "max_us"));
+        for (LatencyHistogram latency : latencies) {
+            out.append(String.format(Locale.ROOT, "%-18s %10d %12.2f %12.2f %12.2f %12.2f%n",
+                    latency.getName(), latency.getCount(), latency.getMeanMicros(),
+                    latency.getP50Micros(), latency.getP99Micros(), latency.getMaxMicros()));
+        }
+        out.append("tasks=").append(getTaskCount())
+                .append(" epics=").append(getEpicCount())
+                .append(" subtasks=").append(getSubtaskCount()).append('\n');
+        out.append("history_hits=").append(getHistoryHits())
+                .append(" history_misses=").append(getHistoryMisses())
+                .append(" history_repeated_views=").append(getHistoryRepeatedViews())
+                .append(" history_evictions=").append(getHistoryEvictions())
+                .append(" evicted_sessions=").append(getEvictedSessions()).append('\n');
+        out.append("snapshot_bytes=").append(getSnapshotBytes())
+                .append(" journal_bytes=").append(getJournalBytes()).append('\n');
+        return out.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram latency : latencies) {
+            latency.reset();
+        }
+        historyHits.reset();
+        historyMisses.reset();
+        snapshotBytes.reset();
+        journalBytes.reset();
+    }
+
+    // Регистрирует в платформенном MBeanServer общий MBean "kanban:type=TaskManager,name=<name>"
+    // и по MBean на операцию "kanban:type=TaskManagerOperation,manager=<name>,operation=<операция>"
+    public synchronized void registerMBeans(String name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            register(server, new ObjectName("kanban:type=TaskManager,name=" + ObjectName.quote(name)), this);
+            for (LatencyHistogram latency : latencies) {
+                register(server, new ObjectName("kanban:type=TaskManagerOperation,manager="
+                        + ObjectName.quote(name) + ",operation=" + latency.getName()), latency);
+            }
+        } catch (JMException e) {
+            unregisterMBeans();
+            throw new IllegalStateException("Не удалось зарегистрировать MBean метрик", e);
+        }
+    }
+
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                // уже снят — снимать нечего
+            }
+        }
+        registered.clear();
+    }
+
+    private void register(MBeanServer server, ObjectName name, Object bean) throws JMException {
+        server.registerMBean(bean, name);
+        registered.add(name);
+    }
+}
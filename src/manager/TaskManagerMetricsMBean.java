@@ -0,0 +1,33 @@
+package manager;
+
+// Общие показатели менеджера в JMX; длительности операций — в отдельных MBean на каждую операцию
+public interface TaskManagerMetricsMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    int getTaskCount();
+
+    int getEpicCount();
+
+    int getSubtaskCount();
+
+    long getHistoryHits();
+
+    long getHistoryMisses();
+
+    long getHistoryRepeatedViews();
+
+    long getHistoryEvictions();
+
+    long getEvictedSessions();
+
+    long getSnapshotBytes();
+
+    long getJournalBytes();
+
+    String dump();
+
+    void reset();
+}
@@ -0,0 +1,31 @@
+package manager;
+
+import model.Task;
+
+import java.util.List;
+
+// Страница результатов выборки. Следующая страница запрашивается с afterId = getNextCursor()
+public final class TaskPage {
+
+    private final List<Task> items;
+    private final int nextCursor;
+    private final boolean hasMore;
+
+    TaskPage(List<Task> items, int nextCursor, boolean hasMore) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    public List<Task> getItems() {
+        return items;
+    }
+
+    public int getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+}
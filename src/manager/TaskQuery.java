@@ -0,0 +1,96 @@
+package manager;
+
+import model.Status;
+import model.Subtask;
+import model.Task;
+import model.TaskType;
+
+// Условия выборки задач: тип, статус, эпик и диапазон id. Пустое условие не ограничивает выборку.
+// Объект неизменяемый, каждый метод with... возвращает новое условие
+public final class TaskQuery {
+
+    private static final TaskQuery ALL = new TaskQuery(null, null, null, 0, Integer.MAX_VALUE);
+
+    private final TaskType type;
+    private final Status status;
+    private final Integer epicId;
+    private final int fromId;
+    private final int toId;
+
+    private TaskQuery(TaskType type, Status status, Integer epicId, int fromId, int toId) {
+        this.type = type;
+        this.status = status;
+        this.epicId = epicId;
+        this.fromId = fromId;
+        this.toId = toId;
+    }
+
+    public static TaskQuery all() {
+        return ALL;
+    }
+
+    public TaskQuery withType(TaskType type) {
+        return new TaskQuery(type, status, epicId, fromId, toId);
+    }
+
+    public TaskQuery withStatus(Status status) {
+        return new TaskQuery(type, status, epicId, fromId, toId);
+    }
+
+    // Подзадачи указанного эпика
+    public TaskQuery withEpic(int epicId) {
+        return new TaskQuery(TaskType.SUBTASK, status, epicId, fromId, toId);
+    }
+
+    // Id в диапазоне [fromId, toId] включительно
+    public TaskQuery withIdRange(int fromId, int toId) {
+        if (fromId < 0 || fromId > toId) {
+            throw new IllegalArgumentException("Некорректный диапазон id: " + fromId + ".." + toId);
+        }
+        return new TaskQuery(type, status, epicId, fromId, toId);
+    }
+
+    public TaskType getType() {
+        return type;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Integer getEpicId() {
+        return epicId;
+    }
+
+    public int getFromId() {
+        return fromId;
+    }
+
+    public int getToId() {
+        return toId;
+    }
+
+    public boolean matches(Task task) {
+        if (type != null && task.getType() != type) {
+            return false;
+        }
+        if (status != null && task.getStatus() != status) {
+            return false;
+        }
+        if (epicId != null && (!(task instanceof Subtask subtask) || subtask.getEpicId() != epicId)) {
+            return false;
+        }
+        return task.getId() >= fromId && task.getId() <= toId;
+    }
+
+    @Override
+    public String toString() {
+        return "TaskQuery{" +
+                "type=" + type +
+                ", status=" + status +
+                ", epicId=" + epicId +
+                ", fromId=" + fromId +
+                ", toId=" + toId +
+                '}';
+    }
+}
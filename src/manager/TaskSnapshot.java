@@ -0,0 +1,43 @@
+package manager;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+// Неизменяемый срез содержимого менеджера на момент версии version.
+// Фиксирует состав задач, а не поля самих объектов: Task по-прежнему изменяемые
+public final class TaskSnapshot {
+
+    private final long version;
+    private final List<Task> tasks;
+    private final List<Epic> epics;
+    private final List<Subtask> subtasks;
+
+    TaskSnapshot(long version, Collection<Task> tasks, Collection<Epic> epics, Collection<Subtask> subtasks) {
+        this.version = version;
+        this.tasks = Collections.unmodifiableList(new ArrayList<>(tasks));
+        this.epics = Collections.unmodifiableList(new ArrayList<>(epics));
+        this.subtasks = Collections.unmodifiableList(new ArrayList<>(subtasks));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    public List<Epic> getEpics() {
+        return epics;
+    }
+
+    public List<Subtask> getSubtasks() {
+        return subtasks;
+    }
+}
@@ -0,0 +1,123 @@
+package manager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Разбор текста на термины для полнотекстового индекса. Термин — последовательность букв
+// и цифр, приведённая к нижнему регистру, «ё» заменяется на «е». Затем отрезается окончание:
+// у русских слов — самое длинное из падежных окончаний существительных и прилагательных
+// (глагольные не трогаются: «-ет» у «отчет» — часть основы), у английских — множественное
+// число и -ing/-ed. Основа не короче трёх букв, поэтому «задача», «задачи»
+// и «задачу» дают один термин, а короткие слова остаются как есть. Это не полноценный
+// стеммер: редкие формы могут не совпасть, для них есть запрос по префиксу
+final class TextAnalyzer {
+
+    // Слишком длинные «слова» (ссылки, хэши) обрезаются
+    static final int MAX_TERM_LENGTH = 40;
+    private static final int MIN_STEM = 3;
+
+    // Отсортированы по убыванию длины: отрезается самое длинное подходящее
+    private static final String[] RUSSIAN_ENDINGS = {
+            "иями", "ями", "ами", "ого", "его", "ому", "ему", "ыми", "ими", "ой", "ей", "ий", "ый", "ая",
+            "яя", "ое", "ее", "ые", "ие", "ам", "ям", "ах", "ях", "ом", "ем", "ов", "ев", "ью", "ия", "ию",
+            "ии", "а", "я", "о", "е", "ы", "и", "у", "ю", "ь", "й"};
+
+    private TextAnalyzer() {
+    }
+
+    // Термины текста по порядку, с повторами; null — пустой список
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (word.length() < MAX_TERM_LENGTH) {
+                    word.append(normalize(c));
+                }
+            } else if (word.length() > 0) {
+                terms.add(stem(word.toString()));
+                word.setLength(0);
+            }
+        }
+        return terms;
+    }
+
+    // Запрос: термины через пробел, «*» в конце слова — поиск по префиксу.
+    // Возвращает пары (термин, префикс ли) по порядку
+    static List<QueryTerm> query(String query) {
+        List<QueryTerm> terms = new ArrayList<>();
+        if (query == null) {
+            return terms;
+        }
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= query.length(); i++) {
+            char c = i < query.length() ? query.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (word.length() < MAX_TERM_LENGTH) {
+                    word.append(normalize(c));
+                }
+            } else if (word.length() > 0) {
+                // у префикса тоже отрезается окончание: «задача*» должно найти основу «задач»
+                terms.add(new QueryTerm(stem(word.toString()), c == '*'));
+                word.setLength(0);
+            }
+        }
+        return terms;
+    }
+
+    private static char normalize(char c) {
+        char lower = Character.toLowerCase(c);
+        return lower == 'ё' ? 'е' : lower;
+    }
+
+    static String stem(String word) {
+        if (word.isEmpty()) {
+            return word;
+        }
+        char last = word.charAt(word.length() - 1);
+        if (last >= 'а' && last <= 'я') {
+            return stemRussian(word);
+        }
+        if (last >= 'a' && last <= 'z') {
+            return stemEnglish(word);
+        }
+        return word;
+    }
+
+    private static String stemRussian(String word) {
+        for (String ending : RUSSIAN_ENDINGS) {
+            if (word.length() - ending.length() >= MIN_STEM && word.endsWith(ending)) {
+                return word.substring(0, word.length() - ending.length());
+            }
+        }
+        return word;
+    }
+
+    private static String stemEnglish(String word) {
+        int length = word.length();
+        if (length > 4 && word.endsWith("ies")) {
+            return word.substring(0, length - 3) + "y";
+        }
+        if (length > 4 && (word.endsWith("sses") || word.endsWith("xes") || word.endsWith("ches")
+                || word.endsWith("shes"))) {
+            word = word.substring(0, length - 2);
+        } else if (length > MIN_STEM && word.endsWith("s") && !word.endsWith("ss")) {
+            word = word.substring(0, length - 1);
+        }
+        length = word.length();
+        if (length - 3 >= MIN_STEM && word.endsWith("ing")) {
+            return word.substring(0, length - 3);
+        }
+        if (length - 2 >= MIN_STEM && word.endsWith("ed")) {
+            return word.substring(0, length - 2);
+        }
+        return word;
+    }
+
+    record QueryTerm(String text, boolean prefix) {
+    }
+}
@@ -0,0 +1,385 @@
+package manager;
+
+import model.Task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+// Полнотекстовый индекс по названиям и описаниям задач. Словарь терминов упорядочен,
+// поэтому запрос по префиксу — это диапазон словаря. У каждого термина id задач разложены
+// по «весу» вхождения: вес = TITLE_WEIGHT × повторы в названии + повторы в описании,
+// не больше MAX_IMPACT. Вклад термина в оценку — idf × tf-насыщение веса (BM25 без поправки
+// на длину), так что внутри одной корзины вклад одинаковый и известен заранее.
+// Поиск — пороговый алгоритм Фейгина: корзины всех слов запроса читаются от тяжёлых
+// к лёгким, каждая новая задача сразу оценивается целиком по прямому индексу (её термины
+// и веса), и чтение останавливается, как только сумма вкладов текущих корзин не может
+// обогнать k-ю найденную задачу. Для частого слова это первые k задач, а не весь список;
+// слова объединяются по «И», поэтому исчерпанное редкое слово заканчивает поиск сразу.
+// Для каждой задачи запоминаются строки, с которыми она проиндексирована: put с тем же
+// текстом (смена статуса или времени) ничего не переиндексирует, а remove снимает ровно то,
+// что было добавлено, даже если объект задачи с тех пор изменили
+class TextIndex {
+
+    static final int TITLE_WEIGHT = 3;
+    static final int MAX_IMPACT = 15;
+    private static final double K1 = 1.2;
+
+    private final TreeMap<String, Term> dictionary = new TreeMap<>();
+    private final Map<Integer, Doc> docs = new HashMap<>();
+
+    // Индексирует текущий текст задачи вместо прежнего
+    synchronized void put(int id, Task task) {
+        Doc previous = docs.get(id);
+        if (previous != null && previous.indexes(task)) {
+            return;
+        }
+        if (previous != null) {
+            unlink(id, previous);
+        }
+        docs.put(id, link(id, task));
+    }
+
+    // Для задач, которые попали в хранилище мимо put: не перезаписывает уже проиндексированное
+    synchronized void putIfAbsent(int id, Task task) {
+        if (!docs.containsKey(id)) {
+            docs.put(id, link(id, task));
+        }
+    }
+
+    synchronized void remove(int id) {
+        Doc doc = docs.remove(id);
+        if (doc != null) {
+            unlink(id, doc);
+        }
+    }
+
+    synchronized boolean contains(int id) {
+        return docs.containsKey(id);
+    }
+
+    synchronized int size() {
+        return docs.size();
+    }
+
+    // Id лучших limit задач по запросу: сначала большая оценка, при равной — меньший id
+    synchronized int[] search(String query, int limit) {
+        if (limit <= 0) {
+            return new int[0];
+        }
+        List<TextAnalyzer.QueryTerm> parsed = TextAnalyzer.query(query);
+        if (parsed.isEmpty()) {
+            return new int[0];
+        }
+        int total = docs.size();
+        List<QueryTerm> terms = new ArrayList<>(parsed.size());
+        for (TextAnalyzer.QueryTerm term : parsed) {
+            QueryTerm expanded = expand(term, total);
+            if (expanded == null) {
+                return new int[0];
+            }
+            terms.add(expanded);
+        }
+        PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, TextIndex::worseFirst);
+        IdSet seen = new IdSet();
+        while (true) {
+            // Читается слово, у которого порог падает сильнее всего на одну прочитанную задачу.
+            // Порог — лучшая оценка, которую может набрать ещё не прочитанная задача: у каждого
+            // слова она не тяжелее текущей корзины. Задача с оценкой ровно на пороге лежит в текущих
+            // корзинах всех слов, а там id идут по возрастанию, так что её id больше уже прочитанных
+            double threshold = 0;
+            int tieBound = Integer.MIN_VALUE;
+            QueryTerm next = null;
+            for (QueryTerm term : terms) {
+                if (term.exhausted()) {
+                    // все задачи с этим словом прочитаны, у остальных его нет
+                    return drain(top);
+                }
+                threshold += term.level();
+                tieBound = Math.max(tieBound, term.tieBound());
+                if (next == null || term.gain() > next.gain()) {
+                    next = term;
+                }
+            }
+            if (top.size() == limit && !better(threshold, tieBound, top.peek())) {
+                return drain(top);
+            }
+            int id = next.nextId();
+            if (id < 0 || !seen.add(id)) {
+                continue;
+            }
+            double score = score(docs.get(id), terms, total);
+            if (Double.isNaN(score)) {
+                continue;
+            }
+            Hit hit = new Hit(id, score);
+            if (top.size() < limit) {
+                top.add(hit);
+            } else if (better(score, id, top.peek())) {
+                top.poll();
+                top.add(hit);
+            }
+        }
+    }
+
+    // Найденное от лучшего к худшему
+    private static int[] drain(PriorityQueue<Hit> top) {
+        int[] result = new int[top.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = top.poll().id;
+        }
+        return result;
+    }
+
+    // Термины словаря, подходящие под слово запроса, или null, если таких нет
+    private QueryTerm expand(TextAnalyzer.QueryTerm term, int total) {
+        List<Term> matches = new ArrayList<>();
+        if (term.prefix()) {
+            NavigableMap<String, Term> range = dictionary.subMap(term.text(), true, term.text() + Character.MAX_VALUE, false);
+            matches.addAll(range.values());
+        } else {
+            Term exact = dictionary.get(term.text());
+            if (exact != null) {
+                matches.add(exact);
+            }
+        }
+        if (matches.isEmpty()) {
+            return null;
+        }
+        List<Bucket> buckets = new ArrayList<>();
+        for (Term match : matches) {
+            double idf = idf(match, total);
+            for (int impact = MAX_IMPACT; impact > 0; impact--) {
+                if (match.byImpact[impact] != null) {
+                    buckets.add(new Bucket(match.byImpact[impact], idf * saturation(impact)));
+                }
+            }
+        }
+        buckets.sort((x, y) -> Double.compare(y.contribution, x.contribution));
+        return new QueryTerm(term.text(), term.prefix() ? null : matches.get(0), buckets);
+    }
+
+    // Сумма вкладов слов запроса; NaN — какого-то слова в задаче нет
+    private static double score(Doc doc, List<QueryTerm> terms, int total) {
+        double score = 0;
+        for (QueryTerm query : terms) {
+            double best = Double.NaN;
+            for (int i = 0; i < doc.terms.length; i++) {
+                Term term = doc.terms[i];
+                boolean matches = query.exact != null ? term == query.exact : term.text.startsWith(query.text);
+                if (matches) {
+                    double contribution = idf(term, total) * saturation(doc.impacts[i]);
+                    if (Double.isNaN(best) || contribution > best) {
+                        best = contribution;
+                    }
+                }
+            }
+            if (Double.isNaN(best)) {
+                return Double.NaN;
+            }
+            score += best;
+        }
+        return score;
+    }
+
+    private Doc link(int id, Task task) {
+        Map<String, Integer> weights = new HashMap<>();
+        for (String term : TextAnalyzer.terms(task.getTitle())) {
+            weights.merge(term, TITLE_WEIGHT, Integer::sum);
+        }
+        for (String term : TextAnalyzer.terms(task.getDescription())) {
+            weights.merge(term, 1, Integer::sum);
+        }
+        Term[] terms = new Term[weights.size()];
+        byte[] impacts = new byte[weights.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> weight : weights.entrySet()) {
+            Term term = dictionary.computeIfAbsent(weight.getKey(), Term::new);
+            int impact = Math.min(weight.getValue(), MAX_IMPACT);
+            term.add(id, impact);
+            terms[i] = term;
+            impacts[i] = (byte) impact;
+            i++;
+        }
+        return new Doc(task.getTitle(), task.getDescription(), terms, impacts);
+    }
+
+    private void unlink(int id, Doc doc) {
+        for (int i = 0; i < doc.terms.length; i++) {
+            Term term = doc.terms[i];
+            term.remove(id, doc.impacts[i]);
+            if (term.df == 0) {
+                dictionary.remove(term.text, term);
+            }
+        }
+    }
+
+    private static double idf(Term term, int total) {
+        return Math.log(1 + (total - term.df + 0.5) / (term.df + 0.5));
+    }
+
+    private static double saturation(int impact) {
+        return impact * (K1 + 1) / (impact + K1);
+    }
+
+    // Лучше ли (score, id), чем худшее из найденного: больше оценка, при равной — меньше id
+    private static boolean better(double score, int id, Hit worst) {
+        return score > worst.score || (score == worst.score && id < worst.id);
+    }
+
+    private static int worseFirst(Hit a, Hit b) {
+        int byScore = Double.compare(a.score, b.score);
+        return byScore != 0 ? byScore : Integer.compare(b.id, a.id);
+    }
+
+    private static final class Term {
+        private final String text;
+        // id задач по весу вхождения; корзина создаётся при первом id
+        private final IdIndex[] byImpact = new IdIndex[MAX_IMPACT + 1];
+        private int df;
+
+        private Term(String text) {
+            this.text = text;
+        }
+
+        private void add(int id, int impact) {
+            if (byImpact[impact] == null) {
+                byImpact[impact] = new IdIndex();
+            }
+            byImpact[impact].add(id);
+            df++;
+        }
+
+        private void remove(int id, int impact) {
+            IdIndex bucket = byImpact[impact];
+            if (bucket != null && bucket.remove(id)) {
+                df--;
+                if (bucket.size() == 0) {
+                    byImpact[impact] = null;
+                }
+            }
+        }
+    }
+
+    // Прямой индекс задачи: с какими строками она проиндексирована и её термины с весами
+    private record Doc(String title, String description, Term[] terms, byte[] impacts) {
+
+        private boolean indexes(Task task) {
+            return Objects.equals(title, task.getTitle()) && Objects.equals(description, task.getDescription());
+        }
+    }
+
+    // Слово запроса: подходящие термины и чтение их корзин от тяжёлых к лёгким
+    private static final class QueryTerm {
+        private final String text;
+        // термин словаря для слова без «*»; у префикса — null, сверяется начало термина
+        private final Term exact;
+        private final List<Bucket> buckets;
+        private int bucket;
+        private PrimitiveIterator.OfInt ids;
+        private int lastId = Integer.MIN_VALUE;
+        private int remaining;
+
+        private QueryTerm(String text, Term exact, List<Bucket> buckets) {
+            this.text = text;
+            this.exact = exact;
+            this.buckets = buckets;
+        }
+
+        private boolean exhausted() {
+            return bucket == buckets.size();
+        }
+
+        // Вклад текущей корзины — больше у непрочитанных задач не бывает
+        private double level() {
+            return buckets.get(bucket).contribution;
+        }
+
+        // На сколько опустится порог, если дочитать текущую корзину, в расчёте на одну задачу.
+        // Исчерпанное слово заканчивает поиск, поэтому дочитать последнюю корзину — упасть до нуля
+        private double gain() {
+            open();
+            double drop = bucket + 1 < buckets.size() ? level() - buckets.get(bucket + 1).contribution : level();
+            return drop / (remaining + 1);
+        }
+
+        // Непрочитанная задача с вкладом level() имеет id больше этого. Если такой же вклад
+        // и у следующей корзины (у префикса — другой термин), гарантии нет
+        private int tieBound() {
+            boolean onlyAtLevel = bucket + 1 == buckets.size() || buckets.get(bucket + 1).contribution < level();
+            return onlyAtLevel ? lastId : Integer.MIN_VALUE;
+        }
+
+        // Следующий id текущей корзины или -1, если она кончилась и чтение перешло к следующей
+        private int nextId() {
+            open();
+            if (ids.hasNext()) {
+                remaining--;
+                lastId = ids.nextInt();
+                return lastId;
+            }
+            bucket++;
+            ids = null;
+            lastId = Integer.MIN_VALUE;
+            return -1;
+        }
+
+        private void open() {
+            if (ids == null) {
+                IdIndex current = buckets.get(bucket).ids;
+                ids = current.iterator(0, Integer.MAX_VALUE);
+                remaining = current.size();
+            }
+        }
+    }
+
+    // Множество id на открытой адресации: прочитанные задачи, без упаковки в Integer
+    private static final class IdSet {
+        private int[] slots = new int[64];
+        private int size;
+        // 0 — пустая ячейка, поэтому сам id 0 хранится отдельно
+        private boolean zero;
+
+        // false — id уже был
+        private boolean add(int id) {
+            if (id == 0) {
+                boolean added = !zero;
+                zero = true;
+                return added;
+            }
+            if (size * 2 >= slots.length) {
+                int[] old = slots;
+                slots = new int[old.length * 2];
+                size = 0;
+                for (int value : old) {
+                    if (value != 0) {
+                        add(value);
+                    }
+                }
+            }
+            int mask = slots.length - 1;
+            for (int i = (id * 0x9E3779B9) >>> 7 & mask; ; i = (i + 1) & mask) {
+                if (slots[i] == id) {
+                    return false;
+                }
+                if (slots[i] == 0) {
+                    slots[i] = id;
+                    size++;
+                    return true;
+                }
+            }
+        }
+    }
+
+    private record Bucket(IdIndex ids, double contribution) {
+    }
+
+    private record Hit(int id, double score) {
+    }
+}
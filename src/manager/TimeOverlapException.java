@@ -0,0 +1,21 @@
+package manager;
+
+// Время задачи пересекается с уже запланированной задачей
+public class TimeOverlapException extends IllegalArgumentException {
+    private final int taskId;
+    private final int conflictingId;
+
+    public TimeOverlapException(int taskId, int conflictingId) {
+        super("Задача " + taskId + " пересекается по времени с задачей " + conflictingId);
+        this.taskId = taskId;
+        this.conflictingId = conflictingId;
+    }
+
+    public int getTaskId() {
+        return taskId;
+    }
+
+    public int getConflictingId() {
+        return conflictingId;
+    }
+}
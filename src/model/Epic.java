@@ -1,56 +1,156 @@
 package model;
 
-import java.util.ArrayList;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
 
 public class Epic extends Task {
 
-    private final List<Subtask> subtasks;
-    private final List<Integer> subtaskIds;
+    // Включается в тестах: каждый пересчёт статуса по счётчикам сверяется с полным обходом подзадач
+    private static volatile boolean verifyStatusCounters;
+
+    // Подзадачи по id вместе со статусом, с которым каждая учтена в счётчиках
+    private final SubtaskSet subtasks = new SubtaskSet();
+    // Сколько подзадач в каждом статусе (последняя ячейка — подзадачи без статуса)
+    private final int[] statusCounts = new int[Status.values().length + 1];
+    // Начало, окончание и продолжительность эпика, которые ведутся по подзадачам
+    private final EpicSchedule schedule = new EpicSchedule();
 
     public Epic(int id, String title, String description, Status status) {
         super(id, title, description, status);
-        this.subtasks = new ArrayList<>();
-        this.subtaskIds = new ArrayList<>();
     }
 
-    public List<Integer> getSubtaskIds() {
-        return subtaskIds;
+    public static void setVerifyStatusCounters(boolean verify) {
+        verifyStatusCounters = verify;
     }
 
-    public void addSubtaskId(int id) {
-        subtaskIds.add(id);
+    @Override
+    public TaskType getType() {
+        return TaskType.EPIC;
     }
 
-    public void removeSubtaskId(Integer id) {
-        subtaskIds.remove(id);
+    // Id и объекты подзадач в порядке добавления; списки только для чтения
+    public List<Integer> getSubtaskIds() {
+        return subtasks.ids();
     }
 
     public List<Subtask> getSubtasks() {
-        return subtasks;
+        return subtasks.subtasks();
+    }
+
+    public boolean hasSubtask(int id) {
+        return subtasks.contains(id);
     }
 
+    // Подзадача с уже известным id заменяет прежнюю на её месте
     public void addSubtask(Subtask subtask) {
-        subtasks.add(subtask);
-        addSubtaskId(subtask.getId());
+        byte previous = subtasks.put(subtask, index(subtask.getStatus()));
+        if (previous != SubtaskSet.ABSENT) {
+            statusCounts[previous]--; // подзадача с таким id уже учтена — снимаем старый статус
+        }
+        statusCounts[index(subtask.getStatus())]++;
+        schedule.put(subtask);
     }
 
+    // Удаление по id подзадачи за O(1), время эпика поправляется за O(log n)
     public void removeSubtask(Subtask subtask) {
-        subtasks.remove(subtask);
-        removeSubtaskId(subtask.getId());
+        byte counted = subtasks.remove(subtask.getId());
+        if (counted != SubtaskSet.ABSENT) {
+            statusCounts[counted]--;
+            schedule.remove(subtask.getId());
+        }
+    }
+
+    // Сообщает эпику, что время подзадачи могло измениться
+    public void subtaskTimeChanged(Subtask subtask) {
+        if (subtasks.contains(subtask.getId())) {
+            schedule.put(subtask);
+        }
+    }
+
+    // Время эпика не задаётся, а считается по подзадачам
+    @Override
+    public LocalDateTime getStartTime() {
+        return schedule.getStartTime();
+    }
+
+    @Override
+    public Duration getDuration() {
+        return schedule.getDuration();
+    }
+
+    @Override
+    public LocalDateTime getEndTime() {
+        return schedule.getEndTime();
+    }
+
+    @Override
+    public void setStartTime(LocalDateTime startTime) {
+        throw new UnsupportedOperationException("Время эпика считается по подзадачам");
+    }
+
+    @Override
+    public void setDuration(Duration duration) {
+        throw new UnsupportedOperationException("Время эпика считается по подзадачам");
+    }
+
+    // Сообщает эпику, что статус подзадачи мог измениться; счётчики правятся за O(1)
+    public void subtaskStatusChanged(Subtask subtask) {
+        byte counted = subtasks.setCounted(subtask.getId(), index(subtask.getStatus()));
+        if (counted == SubtaskSet.ABSENT) {
+            return;
+        }
+        statusCounts[counted]--;
+        statusCounts[index(subtask.getStatus())]++;
     }
 
-    // Метод для обновления статуса эпика в зависимости от статусов подзадач
+    public int getSubtaskCount(Status status) {
+        return statusCounts[index(status)];
+    }
+
+    private static byte index(Status status) {
+        return (byte) (status == null ? Status.values().length : status.ordinal());
+    }
+
+    // Статус эпика по счётчикам подзадач, без обхода списка
     public void updateStatus() {
-        if (subtasks.isEmpty()) {
+        int total = subtasks.size();
+        if (total == 0 || statusCounts[Status.NEW.ordinal()] == total) {
             setStatus(Status.NEW);
-            return;
+        } else if (statusCounts[Status.DONE.ordinal()] == total) {
+            setStatus(Status.DONE);
+        } else {
+            setStatus(Status.IN_PROGRESS);
+        }
+        if (verifyStatusCounters && getStatus() != scanStatus()) {
+            throw new IllegalStateException("Счётчики статусов эпика " + getId()
+                    + " разошлись с подзадачами: " + getStatus() + " вместо " + scanStatus());
+        }
+    }
+
+    // Полный пересчёт: заново учитывает статусы и время всех подзадач, например после того,
+    // как они менялись через сеттеры без уведомления эпика
+    public void recalculateStatus() {
+        Arrays.fill(statusCounts, 0);
+        schedule.clear();
+        for (Subtask subtask : getSubtasks()) {
+            subtasks.setCounted(subtask.getId(), index(subtask.getStatus()));
+            statusCounts[index(subtask.getStatus())]++;
+            schedule.put(subtask);
+        }
+        updateStatus();
+    }
+
+    // Метод для вычисления статуса эпика обходом всех подзадач
+    private Status scanStatus() {
+        if (subtasks.size() == 0) {
+            return Status.NEW;
         }
         boolean allNew = true;
         boolean allDone = true;
 
-        for (Subtask subtask : subtasks) {
+        for (Subtask subtask : getSubtasks()) {
             Status subtaskStatus = subtask.getStatus();
             if (subtaskStatus != Status.NEW) {
                 allNew = false;
@@ -61,11 +161,11 @@ public class Epic extends Task {
         }
 
         if (allNew) {
-            setStatus(Status.NEW);
+            return Status.NEW;
         } else if (allDone) {
-            setStatus(Status.DONE);
+            return Status.DONE;
         } else {
-            setStatus(Status.IN_PROGRESS);
+            return Status.IN_PROGRESS;
         }
     }
 
@@ -85,12 +185,11 @@ public class Epic extends Task {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Epic epic = (Epic) o;
-        return Objects.equals(subtasks, epic.subtasks) &&
-                Objects.equals(subtaskIds, epic.subtaskIds);
+        return getSubtasks().equals(epic.getSubtasks());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(subtasks, subtaskIds);
+        return getSubtasks().hashCode();
     }
 }
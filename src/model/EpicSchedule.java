@@ -0,0 +1,84 @@
+package model;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Время эпика по подзадачам: начало — самое раннее начало, окончание — самое позднее
+// окончание, продолжительность — сумма продолжительностей. Начала и окончания лежат
+// в упорядоченных мультимножествах, поэтому добавление, удаление и смена времени подзадачи
+// стоят O(log n), без обхода всех подзадач. Для каждой подзадачи запоминается время,
+// с которым она учтена: объект могли изменить сеттерами, и снимать надо учтённое значение
+final class EpicSchedule {
+
+    private final Map<Integer, Counted> counted = new HashMap<>();
+    private final TreeMap<LocalDateTime, Integer> starts = new TreeMap<>();
+    private final TreeMap<LocalDateTime, Integer> ends = new TreeMap<>();
+    private Duration total = Duration.ZERO;
+    // сколько подзадач с продолжительностью: без них продолжительность эпика не задана
+    private int withDuration;
+
+    // Учитывает текущее время подзадачи вместо прежнего
+    void put(Subtask subtask) {
+        remove(subtask.getId());
+        LocalDateTime start = subtask.getStartTime();
+        Duration duration = subtask.getDuration();
+        if (start == null && duration == null) {
+            return;
+        }
+        Counted entry = new Counted(start, subtask.getEndTime(), duration);
+        counted.put(subtask.getId(), entry);
+        if (start != null) {
+            starts.merge(start, 1, Integer::sum);
+            ends.merge(entry.end, 1, Integer::sum);
+        }
+        if (duration != null) {
+            total = total.plus(duration);
+            withDuration++;
+        }
+    }
+
+    void remove(int subtaskId) {
+        Counted entry = counted.remove(subtaskId);
+        if (entry == null) {
+            return;
+        }
+        if (entry.start != null) {
+            decrement(starts, entry.start);
+            decrement(ends, entry.end);
+        }
+        if (entry.duration != null) {
+            total = total.minus(entry.duration);
+            withDuration--;
+        }
+    }
+
+    void clear() {
+        counted.clear();
+        starts.clear();
+        ends.clear();
+        total = Duration.ZERO;
+        withDuration = 0;
+    }
+
+    LocalDateTime getStartTime() {
+        return starts.isEmpty() ? null : starts.firstKey();
+    }
+
+    LocalDateTime getEndTime() {
+        return ends.isEmpty() ? null : ends.lastKey();
+    }
+
+    Duration getDuration() {
+        return withDuration == 0 ? null : total;
+    }
+
+    private static void decrement(TreeMap<LocalDateTime, Integer> counts, LocalDateTime key) {
+        counts.computeIfPresent(key, (time, count) -> count == 1 ? null : count - 1);
+    }
+
+    private record Counted(LocalDateTime start, LocalDateTime end, Duration duration) {
+    }
+}
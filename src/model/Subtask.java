@@ -1,6 +1,7 @@
 package model;
 
-import java.util.Objects;
+import java.time.Duration;
+import java.time.LocalDateTime;
 
 public class Subtask extends Task {
     private int epicId;
@@ -10,6 +11,12 @@ public class Subtask extends Task {
         this.epicId = epicId;
     }
 
+    public Subtask(int id, String title, String description, Status status, int epicId,
+                   LocalDateTime startTime, Duration duration) {
+        super(id, title, description, status, startTime, duration);
+        this.epicId = epicId;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
@@ -20,7 +27,13 @@ public class Subtask extends Task {
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), epicId);
+        // то же значение, что Objects.hash(super.hashCode(), epicId), но без массива на каждый вызов
+        return 31 * (31 + super.hashCode()) + epicId;
+    }
+
+    @Override
+    public TaskType getType() {
+        return TaskType.SUBTASK;
     }
 
     public int getEpicId() {
@@ -39,6 +52,7 @@ public class Subtask extends Task {
                 ", description='" + getDescription() + '\'' +
                 ", status=" + getStatus() +
                 ", epicId=" + epicId +
+                (getStartTime() == null ? "" : ", startTime=" + getStartTime() + ", duration=" + getDuration()) +
                 '}';
     }
 }
@@ -0,0 +1,270 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// Подзадачи эпика в порядке добавления с поиском по id за O(1). Объекты лежат в массиве,
+// а таблица на открытой адресации хранит для каждого id номер ячейки массива (сам id берётся
+// у подзадачи, отдельно не хранится). Рядом с подзадачей лежит статус, с которым она учтена
+// в счётчиках эпика. Удаление оставляет в массиве дыру; когда дыр становится больше,
+// чем подзадач, массив уплотняется, поэтому удаление в среднем тоже O(1).
+// Уплотнение идёт только при изменении, чтение ничего не перестраивает
+final class SubtaskSet {
+
+    static final byte ABSENT = -1;
+
+    private static final Subtask[] NO_SUBTASKS = new Subtask[0];
+    private static final byte[] NO_STATUSES = new byte[0];
+    private static final int[] NO_TABLE = new int[0];
+
+    private Subtask[] items = NO_SUBTASKS;
+    private byte[] counted = NO_STATUSES;
+    // номер ячейки items плюс один; 0 — свободное место
+    private int[] table = NO_TABLE;
+    // занятая часть items вместе с дырами
+    private int end;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int id) {
+        return find(id) >= 0;
+    }
+
+    // Кладёт подзадачу с учтённым статусом status; подзадача с тем же id заменяется на своём месте.
+    // Возвращает статус, с которым была учтена прежняя, или ABSENT
+    byte put(Subtask subtask, byte status) {
+        int position = find(subtask.getId());
+        if (position >= 0) {
+            int slot = table[position] - 1;
+            byte previous = counted[slot];
+            items[slot] = subtask;
+            counted[slot] = status;
+            return previous;
+        }
+        if (end == items.length) {
+            resize(Math.max(4, size * 2));
+        }
+        if ((size + 1) * 2 > table.length) {
+            rehash(Math.max(8, table.length * 2));
+        }
+        items[end] = subtask;
+        counted[end] = status;
+        insert(subtask.getId(), end);
+        end++;
+        size++;
+        return ABSENT;
+    }
+
+    byte remove(int id) {
+        int position = find(id);
+        if (position < 0) {
+            return ABSENT;
+        }
+        int slot = table[position] - 1;
+        byte previous = counted[slot];
+        items[slot] = null;
+        size--;
+        deleteAt(position);
+        if (slot == end - 1) {
+            end = skipHolesBack(slot);
+        } else if (end - size > size) {
+            resize(items.length);
+        }
+        return previous;
+    }
+
+    // Меняет учтённый статус подзадачи; возвращает прежний или ABSENT, если подзадачи нет
+    byte setCounted(int id, byte status) {
+        int position = find(id);
+        if (position < 0) {
+            return ABSENT;
+        }
+        int slot = table[position] - 1;
+        byte previous = counted[slot];
+        counted[slot] = status;
+        return previous;
+    }
+
+    Subtask get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Индекс " + index + " при " + size + " подзадачах");
+        }
+        if (end == size) {
+            return items[index];
+        }
+        for (int i = 0; i < end; i++) {
+            if (items[i] != null && index-- == 0) {
+                return items[i];
+            }
+        }
+        throw new IllegalStateException("Подзадачи эпика изменены во время чтения");
+    }
+
+    Iterator<Subtask> iterator() {
+        return new Iterator<>() {
+            private int next = skipHoles(0);
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            public Subtask next() {
+                if (next >= end) {
+                    throw new NoSuchElementException();
+                }
+                Subtask subtask = items[next];
+                next = skipHoles(next + 1);
+                return subtask;
+            }
+        };
+    }
+
+    // Представления только для чтения; менять подзадачи можно лишь через методы эпика
+    List<Subtask> subtasks() {
+        return new AbstractList<>() {
+            @Override
+            public Subtask get(int index) {
+                return SubtaskSet.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Subtask> iterator() {
+                return SubtaskSet.this.iterator();
+            }
+        };
+    }
+
+    List<Integer> ids() {
+        return new AbstractList<>() {
+            @Override
+            public Integer get(int index) {
+                return SubtaskSet.this.get(index).getId();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Integer> iterator() {
+                Iterator<Subtask> subtasks = SubtaskSet.this.iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return subtasks.hasNext();
+                    }
+
+                    @Override
+                    public Integer next() {
+                        return subtasks.next().getId();
+                    }
+                };
+            }
+        };
+    }
+
+    private int skipHolesBack(int to) {
+        while (to > 0 && items[to - 1] == null) {
+            to--;
+        }
+        return to;
+    }
+
+    private int skipHoles(int from) {
+        while (from < end && items[from] == null) {
+            from++;
+        }
+        return from;
+    }
+
+    // Уплотняет массив и переносит его в новый размер capacity
+    private void resize(int capacity) {
+        Subtask[] movedItems = new Subtask[capacity];
+        byte[] movedCounted = new byte[capacity];
+        int next = 0;
+        for (int i = 0; i < end; i++) {
+            if (items[i] != null) {
+                movedItems[next] = items[i];
+                movedCounted[next] = counted[i];
+                next++;
+            }
+        }
+        boolean moved = next != end;
+        items = movedItems;
+        counted = movedCounted;
+        end = next;
+        if (moved) {
+            rehash(table.length);
+        }
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int i = 0; i < end; i++) {
+            if (items[i] != null) {
+                insert(items[i].getId(), i);
+            }
+        }
+    }
+
+    private void insert(int id, int slot) {
+        int mask = table.length - 1;
+        int position = hash(id) & mask;
+        while (table[position] != 0) {
+            position = (position + 1) & mask;
+        }
+        table[position] = slot + 1;
+    }
+
+    // Место id в таблице или -1
+    private int find(int id) {
+        if (table.length == 0) {
+            return -1;
+        }
+        int mask = table.length - 1;
+        int position = hash(id) & mask;
+        while (table[position] != 0) {
+            if (items[table[position] - 1].getId() == id) {
+                return position;
+            }
+            position = (position + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Линейное пробирование без «надгробий»: следующие элементы цепочки сдвигаются на освободившееся место
+    private void deleteAt(int position) {
+        int mask = table.length - 1;
+        int hole = position;
+        int next = (hole + 1) & mask;
+        while (table[next] != 0) {
+            int home = hash(items[table[next] - 1].getId()) & mask;
+            // элемент можно сдвинуть, если его законное место не лежит между дырой и им самим
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[hole] = 0;
+    }
+
+    // Перемешивание как в IntTaskMap: последовательные id не должны ложиться сплошным отрезком
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
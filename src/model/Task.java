@@ -1,11 +1,20 @@
 package model;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
 public class Task {
 
     private final int id;
     private String title;
     private String description;
     private Status status;
+    // Время начала и продолжительность; без начала задача не планируется по времени
+    private LocalDateTime startTime;
+    private Duration duration;
+    // Хэш по полям считается один раз и сбрасывается сеттерами; 0 — ещё не посчитан
+    private int hash;
 
     public Task(int id, String title, String description, Status status) {
         this.id = id;
@@ -14,24 +23,36 @@ public class Task {
         this.status = status;
     }
 
+    public Task(int id, String title, String description, Status status, LocalDateTime startTime, Duration duration) {
+        this(id, title, description, status);
+        this.startTime = startTime;
+        this.duration = duration;
+    }
+
     public Status getStatus() {
         return status;
     }
 
     public void setStatus(Status status) {
         this.status = status;
+        this.hash = 0;
     }
 
     public int getId() {
         return id;
     }
 
+    public TaskType getType() {
+        return TaskType.TASK;
+    }
+
     public String getTitle() {
         return title;
     }
 
     public void setTitle(String title) {
         this.title = title;
+        this.hash = 0;
     }
 
     public String getDescription() {
@@ -40,10 +61,42 @@ public class Task {
 
     public void setDescription(String description) {
         this.description = description;
+        this.hash = 0;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(LocalDateTime startTime) {
+        this.startTime = startTime;
+        this.hash = 0;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public void setDuration(Duration duration) {
+        this.duration = duration;
+        this.hash = 0;
+    }
+
+    // Время окончания: начало плюс продолжительность (без продолжительности — само начало)
+    public LocalDateTime getEndTime() {
+        LocalDateTime start = getStartTime();
+        if (start == null) {
+            return null;
+        }
+        Duration length = getDuration();
+        return length == null ? start : start.plus(length);
     }
 
     @Override
     public int hashCode() {
+        if (hash != 0) {
+            return hash;
+        }
         int result = Integer.hashCode(id);
 
         if (title != null) {
@@ -64,6 +117,15 @@ public class Task {
             result = 31 * result;
         }
 
+        // без времени хэш остаётся прежним
+        if (startTime != null) {
+            result = 31 * result + startTime.hashCode();
+        }
+        if (duration != null) {
+            result = 31 * result + duration.hashCode();
+        }
+
+        hash = result;
         return result;
     }
 
@@ -83,6 +145,10 @@ public class Task {
         if (id != other.id) {
             return false;
         }
+        // оба хэша уже посчитаны и различаются — поля сравнивать незачем
+        if (hash != 0 && other.hash != 0 && hash != other.hash) {
+            return false;
+        }
         if (title == null) {
             if (other.title != null) {
                 return false;
@@ -101,11 +167,10 @@ public class Task {
                 return false;
             }
         }
-        if (status == null) {
-            return other.status == null;
-        } else {
-            return status.equals(other.status);
+        if (status != other.status) {
+            return false;
         }
+        return Objects.equals(startTime, other.startTime) && Objects.equals(duration, other.duration);
     }
 
 
@@ -116,6 +181,7 @@ public class Task {
                 ", description='" + description + '\'' +
                 ", title='" + title + '\'' +
                 ", status=" + status +
+                (startTime == null ? "" : ", startTime=" + startTime + ", duration=" + duration) +
                 '}';
     }
 }
@@ -0,0 +1,7 @@
+package model;
+
+public enum TaskType {
+    TASK,
+    EPIC,
+    SUBTASK
+}
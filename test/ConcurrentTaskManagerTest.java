@@ -0,0 +1,183 @@
+import manager.ConcurrentTaskManager;
+import manager.TimeOverlapException;
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrentTaskManagerTest {
+
+    private static final int THREADS = 8;
+    private static final int PER_THREAD = 500;
+
+    private ConcurrentTaskManager taskManager;
+
+    @BeforeEach
+    void setup() {
+        Epic.setVerifyStatusCounters(true);
+        taskManager = new ConcurrentTaskManager();
+    }
+
+    @Test
+    public void testParallelCreateGivesUniqueIds() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<List<Task>>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                List<Task> created = new ArrayList<>();
+                for (int i = 0; i < PER_THREAD; i++) {
+                    created.add(taskManager.createTask("Task", "Desc", Status.NEW));
+                }
+                return created;
+            }));
+        }
+        Set<Integer> ids = new HashSet<>();
+        for (Future<List<Task>> future : futures) {
+            for (Task task : future.get()) {
+                ids.add(task.getId());
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(THREADS * PER_THREAD, ids.size(), "Все id должны быть разными");
+        assertEquals(THREADS * PER_THREAD, taskManager.getAllTasks().size());
+    }
+
+    @Test
+    public void testParallelSubtaskUpdatesKeepEpicStatusConsistent() throws Exception {
+        Epic epic = taskManager.createEpic("Epic", "Desc", Status.NEW);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < PER_THREAD; i++) {
+                    Subtask subtask = taskManager.createSubtask("Subtask", "Desc", Status.NEW, epic.getId());
+                    taskManager.updateTask(new Subtask(subtask.getId(), "Subtask", "Desc", Status.DONE,
+                            epic.getId()));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(THREADS * PER_THREAD, taskManager.getSubtasksOfEpic(epic.getId()).size());
+        assertEquals(THREADS * PER_THREAD, epic.getSubtaskCount(Status.DONE));
+        assertEquals(Status.DONE, epic.getStatus());
+    }
+
+    @Test
+    public void testEpicRenameKeepsSubtasksCreatedMeanwhile() throws Exception {
+        Epic epic = taskManager.createEpic("Epic", "Desc", Status.NEW);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < PER_THREAD; i++) {
+                    if (thread == 0) {
+                        taskManager.updateEpic(epic.getId(), "Renamed" + i, null);
+                    } else {
+                        taskManager.createSubtask("Subtask", "Desc", Status.NEW, epic.getId());
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        Epic stored = taskManager.getEpicById(epic.getId());
+        assertEquals((THREADS - 1) * PER_THREAD, stored.getSubtaskIds().size(), "Ни одна подзадача не потеряна");
+        assertEquals("Renamed" + (PER_THREAD - 1), stored.getTitle());
+        assertEquals("Desc", stored.getDescription(), "Без описания остаётся прежнее");
+        assertEquals(List.of(stored), taskManager.search("Renamed" + (PER_THREAD - 1), 10));
+        assertTrue(taskManager.search("Epic", 10).isEmpty(), "Старое название больше не ищется");
+        assertNull(taskManager.updateEpic(-1, "Нет", null));
+    }
+
+    @Test
+    public void testParallelUpdatesOfOneTaskKeepIndexesInStep() throws Exception {
+        LocalDateTime nine = LocalDateTime.of(2024, 5, 1, 9, 0);
+        Task task = taskManager.createTask("window0", "Desc", Status.NEW, nine, Duration.ofMinutes(30));
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int window = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < PER_THREAD; i++) {
+                    taskManager.updateTask(new Task(task.getId(), "window" + window, "Desc", Status.NEW,
+                            nine.plusHours(window), Duration.ofMinutes(30)));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        Task stored = taskManager.getTaskById(task.getId());
+        assertEquals(List.of(stored), taskManager.getPrioritizedTasks(), "В расписании лежит сохранённый объект");
+        for (int t = 0; t < THREADS; t++) {
+            LocalDateTime start = nine.plusHours(t).plusMinutes(10);
+            if (start.minusMinutes(10).equals(stored.getStartTime())) {
+                assertThrows(TimeOverlapException.class, () -> taskManager.createTask("probe", "Desc", Status.NEW,
+                        start, Duration.ofMinutes(5)), "Занято окно сохранённой задачи");
+            } else {
+                taskManager.removeById(taskManager.createTask("probe", "Desc", Status.NEW, start,
+                        Duration.ofMinutes(5)).getId());
+            }
+            List<Task> found = taskManager.search("window" + t, 10);
+            assertEquals(stored.getTitle().equals("window" + t) ? List.of(stored) : List.of(), found,
+                    "Текстовый индекс совпадает с хранилищем");
+        }
+
+        // удаление вперемешку с обновлениями не должно возвращать задачу
+        for (int round = 0; round < 20; round++) {
+            Task victim = taskManager.createTask("victim", "Desc", Status.NEW, nine.minusDays(1),
+                    Duration.ofMinutes(30));
+            AtomicBoolean removed = new AtomicBoolean();
+            futures.clear();
+            for (int t = 0; t < THREADS; t++) {
+                int window = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        if (window == 0 && i == 25) {
+                            taskManager.removeById(victim.getId());
+                            removed.set(true);
+                        }
+                        taskManager.updateTask(new Task(victim.getId(), "victim", "Desc", Status.NEW,
+                                nine.minusDays(1).plusMinutes(window), Duration.ofMinutes(1)));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertTrue(removed.get());
+            assertNull(taskManager.getTaskById(victim.getId()), "Удалённая задача не возвращается");
+            assertEquals(List.of(stored), taskManager.getPrioritizedTasks());
+            assertTrue(taskManager.search("victim", 10).isEmpty());
+        }
+        executor.shutdown();
+    }
+}
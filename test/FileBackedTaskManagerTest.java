@@ -1,16 +1,37 @@
+import manager.DurabilityPolicy;
 import manager.FileBackedTaskManager;
+import manager.ManagerSaveException;
+import manager.SnapshotFormat;
+import manager.TaskCsv;
+import manager.TaskEvent;
+import manager.TaskEventDispatcher;
+import manager.TaskQuery;
+import manager.TimeOverlapException;
 import model.Epic;
 import model.Status;
 import model.Subtask;
 import model.Task;
+import model.TaskType;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class FileBackedTaskManagerTest {
@@ -27,6 +48,7 @@ public class FileBackedTaskManagerTest {
     @AfterEach
     public void tearDown() {
         tempFile.delete();  // Удаляем временный файл после теста
+        FileBackedTaskManager.historyFileFor(tempFile).delete();
     }
 
     @Test
@@ -72,4 +94,522 @@ public class FileBackedTaskManagerTest {
         Task newTask = loaded.createTask("Task2", "Desc2", Status.NEW);
         assertTrue(newTask.getId() > task1.getId(), "ID новой задачи должен быть больше предыдущего");
     }
+
+    @Test
+    public void testJournalReplayWithoutSnapshot() {
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile, true);
+        Task task = journaled.createTask("Task1", "Desc1", Status.NEW);
+        Epic epic = journaled.createEpic("Epic1", "Epic desc", Status.NEW);
+        Subtask subtask = journaled.createSubtask("Subtask1", "Subtask desc", Status.NEW, epic.getId());
+        subtask.setStatus(Status.DONE);
+        journaled.updateTask(subtask);
+        journaled.removeById(task.getId());
+        journaled.close();
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, true);
+
+        assertTrue(loaded.getAllTasks().isEmpty(), "Удалённая задача не должна восстановиться");
+        assertEquals(1, loaded.getAllSubtasks().size(), "Должна быть 1 подзадача");
+        assertEquals(Status.DONE, loaded.getAllSubtasks().get(0).getStatus());
+        assertEquals(Status.DONE, loaded.getAllEpics().get(0).getStatus(), "Статус эпика пересчитывается");
+        loaded.close();
+        FileBackedTaskManager.journalFileFor(tempFile).delete();
+    }
+
+    @Test
+    public void testCorruptedJournalRecordsAreRejected() throws IOException {
+        File journalFile = FileBackedTaskManager.journalFileFor(tempFile);
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile, true);
+        journaled.createTask("Task1", "Desc1", Status.NEW);
+        journaled.close();
+        String valid = Files.readString(journalFile.toPath());
+
+        for (String record : List.of("PUT", "MOVE,1", "DEL,abc", "CLEAR,TASKS", "CLEAR,", "PUT,1,TASK")) {
+            Files.writeString(journalFile.toPath(), valid + record + "\n");
+            assertThrows(ManagerSaveException.class, () -> FileBackedTaskManager.loadFromFile(tempFile, true),
+                    "Испорченная запись журнала: " + record);
+        }
+        journalFile.delete();
+    }
+
+    @Test
+    public void testJournalKeepsCommasQuotesAndLineBreaks() {
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile, true);
+        Task task = journaled.createTask("Купить, продать", "Сказать \"да\"\nи уйти", Status.NEW);
+        Epic epic = journaled.createEpic("Эпик,\r\nс переводом", "", null);
+        Subtask subtask = journaled.createSubtask("\"", "a,\"b\",c", Status.DONE, epic.getId());
+        journaled.close();
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, true);
+        Task loadedTask = loaded.getTaskById(task.getId());
+        assertEquals(task.getTitle(), loadedTask.getTitle(), "Запятая в названии не делит запись");
+        assertEquals(task.getDescription(), loadedTask.getDescription(), "Кавычки и перевод строки сохраняются");
+        Epic loadedEpic = loaded.getEpicById(epic.getId());
+        assertEquals(epic.getTitle(), loadedEpic.getTitle());
+        assertEquals("", loadedEpic.getDescription(), "Пустая строка не превращается в null");
+        Subtask loadedSubtask = loaded.getSubtaskById(subtask.getId());
+        assertEquals(subtask.getTitle(), loadedSubtask.getTitle());
+        assertEquals(subtask.getDescription(), loadedSubtask.getDescription());
+        assertEquals(Status.DONE, loadedEpic.getStatus());
+        loaded.close();
+        FileBackedTaskManager.journalFileFor(tempFile).delete();
+    }
+
+    @Test
+    public void testCompactFoldsJournalIntoSnapshot() {
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile, true);
+        journaled.createTask("Task1", "Desc1", Status.NEW);
+        journaled.createTask("Task2", "Desc2", Status.NEW);
+        assertEquals(2, journaled.getJournalSize());
+
+        journaled.compact();
+        journaled.close();
+
+        assertEquals(0, journaled.getJournalSize(), "После сжатия журнал пуст");
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(2, loaded.getAllTasks().size(), "Задачи должны попасть в снимок");
+    }
+
+    @Test
+    public void testGroupCommitCoalescesMutations() {
+        assertEquals(DurabilityPolicy.Mode.FLUSH, manager.getDurabilityPolicy().getMode(),
+                "По умолчанию каждая операция сбрасывается без fsync");
+        assertFalse(manager.getDurabilityPolicy().isForced());
+        manager.setDurabilityPolicy(DurabilityPolicy.groupCommit(100, 60_000));
+        Epic epic = manager.createEpic("Epic1", "Epic desc", Status.NEW);
+        for (int i = 0; i < 99; i++) {
+            manager.createSubtask("Subtask" + i, "Subtask desc", Status.NEW, epic.getId());
+        }
+
+        assertEquals(1, manager.getFlushCount(), "100 операций должны уйти на диск одним сбросом");
+        assertEquals(100, manager.getLastFlushSize());
+
+        manager.createTask("Task1", "Desc1", Status.NEW);
+        assertEquals(1, manager.getPendingMutations());
+        manager.close();
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(1, loaded.getAllTasks().size(), "При закрытии накопленные операции сохраняются");
+        assertEquals(99, loaded.getAllSubtasks().size());
+    }
+
+    @Test
+    public void testBatchIsSavedOnceOnCommit() {
+        Epic epic = manager.createEpic("Epic1", "Epic desc", Status.NEW);
+        long flushesBefore = manager.getFlushCount();
+
+        manager.executeBatch(() -> {
+            for (int i = 0; i < 50; i++) {
+                manager.createSubtask("Subtask" + i, "Subtask desc", Status.NEW, epic.getId());
+            }
+        });
+
+        assertEquals(flushesBefore + 1, manager.getFlushCount(), "Пакет сохраняется одной записью");
+        assertEquals(50, manager.getLastFlushSize());
+        assertEquals(50, FileBackedTaskManager.loadFromFile(tempFile).getAllSubtasks().size());
+    }
+
+    @Test
+    public void testBinarySnapshotRoundTrip() {
+        manager.setSnapshotFormat(SnapshotFormat.BINARY);
+        Task task = manager.createTask("Купить, продать", "Запятые\nи переводы строк", Status.IN_PROGRESS);
+        Epic epic = manager.createEpic("Epic1", null, Status.NEW);
+        manager.createSubtask("Subtask1", "Subtask desc", Status.DONE, epic.getId());
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+
+        assertEquals(SnapshotFormat.BINARY, loaded.getSnapshotFormat(), "Формат определяется по заголовку");
+        assertEquals(task.getTitle(), loaded.getAllTasks().get(0).getTitle());
+        assertEquals(task.getDescription(), loaded.getAllTasks().get(0).getDescription());
+        assertEquals(Status.DONE, loaded.getAllEpics().get(0).getStatus());
+        assertEquals(1, loaded.getAllSubtasks().size());
+    }
+
+    @Test
+    public void testCorruptedBinarySnapshotIsRejected() throws IOException {
+        manager.setSnapshotFormat(SnapshotFormat.BINARY);
+        manager.createTask("Task1", "Desc1", Status.NEW);
+
+        byte[] bytes = Files.readAllBytes(tempFile.toPath());
+        bytes[bytes.length - 60] ^= 1; // портим байт внутри записи (за ней идут индекс и окончание)
+        Files.write(tempFile.toPath(), bytes);
+
+        assertThrows(ManagerSaveException.class, () -> FileBackedTaskManager.loadFromFile(tempFile));
+    }
+
+    @Test
+    public void testCorruptedRecordHeaderAndLengthAreRejected() throws IOException {
+        manager.setSnapshotFormat(SnapshotFormat.BINARY);
+        Task task = manager.createTask("Task1", "Desc1", Status.NEW);
+        byte[] saved = Files.readAllBytes(tempFile.toPath());
+        // первая запись сразу за заголовком: тип, id, статус, время и длительность, длина названия
+        int status = 10 + 1 + Integer.BYTES;
+        int titleLength = status + 1 + 2 * Long.BYTES;
+
+        byte[] badStatus = saved.clone();
+        badStatus[status] = 42;
+        byte[] badLength = saved.clone();
+        badLength[titleLength] = 0x7f;
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for (byte[] bytes : List.of(badStatus, badLength)) {
+                Files.write(tempFile.toPath(), bytes);
+                assertThrows(ManagerSaveException.class,
+                        () -> FileBackedTaskManager.loadFromFile(tempFile, false, null), "Построчная загрузка");
+                assertThrows(ManagerSaveException.class,
+                        () -> FileBackedTaskManager.loadFromFile(tempFile, false, pool), "Параллельная загрузка");
+                FileBackedTaskManager mapped = FileBackedTaskManager.openMapped(tempFile, false);
+                assertThrows(ManagerSaveException.class, () -> mapped.getTaskById(task.getId()),
+                        "Запись отображённого снимка разбирается до проверки контрольной суммы");
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testMappedSnapshotMaterializesOnAccess() {
+        manager.setSnapshotFormat(SnapshotFormat.BINARY);
+        manager.createTask("Task1", "Desc1", Status.NEW);
+        Epic epic = manager.createEpic("Epic1", "Epic desc", Status.NEW);
+        Subtask first = manager.createSubtask("Subtask1", "d", Status.DONE, epic.getId());
+        manager.createSubtask("Subtask2", "d", Status.IN_PROGRESS, epic.getId());
+        Task other = manager.createTask("Task2", "Desc2", Status.DONE);
+
+        FileBackedTaskManager mapped = FileBackedTaskManager.openMapped(tempFile, false);
+
+        assertEquals(0, mapped.getMaterializedCount(), "При открытии задачи не создаются");
+        assertEquals(1, mapped.count(TaskQuery.all().withStatus(Status.DONE).withType(TaskType.TASK)),
+                "Индексы строятся без создания задач");
+        Subtask subtask = mapped.getSubtaskById(first.getId());
+        assertEquals(3, mapped.getMaterializedCount(), "Подзадача поднимается вместе со своим эпиком");
+        assertSame(subtask, mapped.getEpicById(epic.getId()).getSubtasks().get(0),
+                "В эпике тот же объект, что и в хранилище");
+        assertEquals(Status.IN_PROGRESS, mapped.getEpicById(epic.getId()).getStatus());
+
+        mapped.removeById(other.getId());
+        subtask.setStatus(Status.NEW);
+        mapped.updateTask(subtask);
+        Task created = mapped.createTask("Task3", "Desc3", Status.NEW);
+        assertEquals(2, mapped.getAllTasks().size());
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(2, loaded.getAllTasks().size());
+        assertNull(loaded.getTaskById(other.getId()), "Удаление сохранено");
+        assertEquals("Task3", loaded.getTaskById(created.getId()).getTitle());
+        assertEquals(Status.NEW, loaded.getSubtaskById(first.getId()).getStatus());
+        assertEquals(Status.IN_PROGRESS, loaded.getEpicById(epic.getId()).getStatus());
+    }
+
+    @Test
+    public void testMappedCacheStaysWithinBudget() {
+        manager.setSnapshotFormat(SnapshotFormat.BINARY);
+        manager.beginBatch();
+        for (int i = 0; i < 100; i++) {
+            manager.createTask("Task" + i, "Desc", Status.NEW);
+        }
+        Epic epic = manager.createEpic("Epic1", "Epic desc", Status.NEW);
+        Subtask subtask = manager.createSubtask("Subtask1", "d", Status.NEW, epic.getId());
+        manager.commitBatch();
+
+        FileBackedTaskManager cached = FileBackedTaskManager.openMapped(tempFile, true, 2_000);
+        for (int id = 1; id <= 100; id++) {
+            assertEquals("Task" + (id - 1), cached.getTaskById(id).getTitle());
+        }
+        assertTrue(cached.getCachedBytes() <= 2_000, "Неизменённые задачи не выходят за бюджет");
+        assertTrue(cached.getCacheEvictions() > 0, "Лишние задачи вытесняются");
+        assertEquals(100, cached.getCacheMisses(), "Каждая задача прочитана из файла");
+        cached.getTaskById(100);
+        assertEquals(1, cached.getCacheHits(), "Последняя задача ещё в памяти");
+
+        // изменённая подзадача и её эпик не вытесняются, пока изменение не попало в снимок
+        cached.updateTask(new Subtask(subtask.getId(), "Subtask1", "d", Status.DONE, epic.getId()));
+        for (int id = 1; id <= 100; id++) {
+            cached.getTaskById(id);
+        }
+        assertEquals(Status.DONE, cached.getEpicById(epic.getId()).getStatus());
+        assertEquals(Status.DONE, cached.getSubtaskById(subtask.getId()).getStatus());
+
+        cached.compact();
+        for (int id = 1; id <= 100; id++) {
+            cached.getTaskById(id);
+        }
+        assertEquals(Status.DONE, cached.getEpicById(epic.getId()).getStatus(), "После снимка эпик читается из файла");
+        cached.close();
+        FileBackedTaskManager.journalFileFor(tempFile).delete();
+    }
+
+    @Test
+    public void testMappedSnapshotReplaysJournal() {
+        manager.setSnapshotFormat(SnapshotFormat.BINARY);
+        Epic epic = manager.createEpic("Epic1", "Epic desc", Status.NEW);
+        manager.createSubtask("Subtask1", "d", Status.NEW, epic.getId());
+        manager.close();
+
+        FileBackedTaskManager journaled = FileBackedTaskManager.openMapped(tempFile, true);
+        Subtask added = journaled.createSubtask("Subtask2", "d", Status.DONE, epic.getId());
+        journaled.close();
+
+        FileBackedTaskManager mapped = FileBackedTaskManager.openMapped(tempFile, true);
+        assertEquals(2, mapped.getSubtasksOfEpic(epic.getId()).size());
+        assertEquals(Status.DONE, mapped.getSubtaskById(added.getId()).getStatus());
+        assertEquals(Status.IN_PROGRESS, mapped.getEpicById(epic.getId()).getStatus());
+        assertTrue(mapped.createTask("Task", "d", Status.NEW).getId() > added.getId(),
+                "Счётчик id продолжается после снимка и журнала");
+        mapped.close();
+        FileBackedTaskManager.journalFileFor(tempFile).delete();
+    }
+
+    @Test
+    public void testParallelLoadMatchesSequential() {
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            manager.setSnapshotFormat(format);
+            manager.removeAllTasks();
+            manager.removeAllEpics();
+            for (int i = 0; i < 50; i++) {
+                Epic epic = manager.createEpic("Epic" + i, "d", Status.NEW);
+                manager.createSubtask("Subtask" + i, "d", Status.values()[i % 3], epic.getId());
+                manager.createSubtask("Subtask" + i, "d", Status.NEW, epic.getId(),
+                        LocalDateTime.of(2024, 5, 1, 0, 0).plusHours(i), Duration.ofMinutes(30));
+                manager.createTask("Task" + i, "d", Status.values()[i % 3],
+                        LocalDateTime.of(2024, 6, 1, 0, 0).plusHours(50 - i), Duration.ofMinutes(30));
+            }
+
+            FileBackedTaskManager sequential = FileBackedTaskManager.loadFromFile(tempFile, false, null);
+            ForkJoinPool pool = new ForkJoinPool(4);
+            FileBackedTaskManager parallel = FileBackedTaskManager.loadFromFile(tempFile, false, pool);
+            pool.shutdown();
+
+            assertEquals(sequential.getAllTasks(), parallel.getAllTasks(), "Задачи совпадают: " + format);
+            assertEquals(sequential.getAllSubtasks(), parallel.getAllSubtasks(), "Подзадачи совпадают: " + format);
+            for (Epic epic : sequential.getAllEpics()) {
+                Epic loaded = parallel.getEpicById(epic.getId());
+                assertEquals(epic.getStatus(), loaded.getStatus(), "Статус эпика пересчитан");
+                assertEquals(epic.getSubtaskIds(), loaded.getSubtaskIds(), "Подзадачи привязаны в том же порядке");
+            }
+            assertEquals(sequential.getPrioritizedTasks(), parallel.getPrioritizedTasks(),
+                    "Расписание строится целиком после загрузки: " + format);
+            assertThrows(TimeOverlapException.class, () -> parallel.createTask("Overlap", "d", Status.NEW,
+                    LocalDateTime.of(2024, 6, 1, 0, 10).plusHours(7), Duration.ofMinutes(5)));
+            assertEquals(sequential.search("Subtask7", 10), parallel.search("Subtask7", 10),
+                    "Текст индексируется при первом поиске");
+            assertEquals(sequential.createTask("Next", "d", Status.NEW).getId(),
+                    parallel.createTask("Next", "d", Status.NEW).getId(), "Счётчик id тот же");
+        }
+    }
+
+    @Test
+    public void testParallelLoadFallsBackOnIdRepeatedAcrossTypes() throws IOException {
+        try (Writer writer = Files.newBufferedWriter(tempFile.toPath())) {
+            TaskCsv.writeHeader(writer);
+            TaskCsv.write(writer, new Task(1, "Задача", "d", Status.NEW));
+            TaskCsv.write(writer, new Epic(2, "Эпик", "d", Status.NEW));
+            TaskCsv.write(writer, new Subtask(3, "Подзадача", "d", Status.DONE, 2));
+            TaskCsv.write(writer, new Epic(1, "Эпик вместо задачи", "d", Status.NEW));
+        }
+
+        FileBackedTaskManager sequential = FileBackedTaskManager.loadFromFile(tempFile, false, null);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        FileBackedTaskManager parallel = FileBackedTaskManager.loadFromFile(tempFile, false, pool);
+        pool.shutdown();
+
+        assertTrue(parallel.getAllTasks().isEmpty(), "Повтор id под другим типом заменяет задачу");
+        assertEquals(sequential.getAllEpics().stream().map(Task::getTitle).toList(),
+                parallel.getAllEpics().stream().map(Task::getTitle).toList());
+        assertEquals(List.of(3), parallel.getAllSubtasks().stream().map(Task::getId).toList());
+    }
+
+    @Test
+    public void testScheduleSurvivesReloadInEveryFormat() {
+        LocalDateTime nine = LocalDateTime.of(2024, 5, 1, 9, 0, 15, 500);
+        Epic epic = manager.createEpic("Epic", "Desc", Status.NEW);
+        Subtask subtask = manager.createSubtask("Sub, с запятой", "d", Status.NEW, epic.getId(),
+                nine.plusHours(2), Duration.ofMinutes(45));
+        Task task = manager.createTask("Task", "d", Status.NEW, nine, Duration.ofSeconds(90, 7));
+        manager.createTask("Untimed", "d", Status.NEW);
+        List<Task> prioritized = List.of(task, subtask);
+
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            manager.setSnapshotFormat(format);
+            manager.save();
+            FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+            assertEquals(prioritized, loaded.getPrioritizedTasks(), "Время сохраняется в " + format);
+            assertEquals(nine.plusHours(2), loaded.getEpicById(epic.getId()).getStartTime());
+        }
+
+        FileBackedTaskManager mapped = FileBackedTaskManager.openMapped(tempFile, false);
+        assertThrows(TimeOverlapException.class, () -> mapped.createTask("Overlap", "d", Status.NEW,
+                nine.plusHours(2).plusMinutes(10), Duration.ofMinutes(5)));
+        assertEquals(0, mapped.getMaterializedCount(), "Расписание строится по индексу снимка");
+        assertEquals(prioritized, mapped.getPrioritizedTasks());
+
+        manager.close();
+        FileBackedTaskManager journaled = FileBackedTaskManager.loadFromFile(tempFile, true);
+        journaled.createTask("Journaled", "d", Status.NEW, nine.minusDays(1), Duration.ofHours(1));
+        journaled.close();
+        FileBackedTaskManager replayed = FileBackedTaskManager.loadFromFile(tempFile, true);
+        assertEquals(nine.minusDays(1), replayed.getPrioritizedTasks().get(0).getStartTime(),
+                "Время восстанавливается из журнала");
+        replayed.close();
+        FileBackedTaskManager.journalFileFor(tempFile).delete();
+    }
+
+    @Test
+    public void testJournaledMoveFreesOldSlotAfterReload() {
+        LocalDateTime ten = LocalDateTime.of(2024, 5, 1, 10, 0);
+        Task moved = manager.createTask("A", "d", Status.NEW, ten, Duration.ofHours(1));
+        Epic epic = manager.createEpic("Epic", "Desc", Status.NEW);
+        Subtask subtask = manager.createSubtask("Sub", "d", Status.DONE, epic.getId());
+        manager.close();
+
+        FileBackedTaskManager journaled = FileBackedTaskManager.loadFromFile(tempFile, true);
+        journaled.updateTask(new Task(moved.getId(), "A", "d", Status.IN_PROGRESS,
+                ten.plusHours(2), Duration.ofHours(1)));
+        Task reused = journaled.createTask("B", "d", Status.NEW, ten, Duration.ofHours(1));
+        Epic renamed = new Epic(epic.getId(), "Epic 2", "Desc 2", Status.NEW);
+        renamed.addSubtask(journaled.getSubtaskById(subtask.getId()));
+        journaled.updateTask(renamed);
+        journaled.close();
+
+        FileBackedTaskManager replayed = FileBackedTaskManager.loadFromFile(tempFile, true);
+        assertEquals(List.of(reused.getId(), moved.getId()),
+                replayed.getPrioritizedTasks().stream().map(Task::getId).toList(),
+                "Перенос из журнала освобождает прежнее время");
+        assertEquals(Status.IN_PROGRESS, replayed.getTaskById(moved.getId()).getStatus());
+        assertThrows(TimeOverlapException.class, () -> replayed.createTask("C", "d", Status.NEW,
+                ten.plusHours(2).plusMinutes(30), Duration.ofMinutes(10)), "Новое время занято");
+        Epic loadedEpic = replayed.getEpicById(epic.getId());
+        assertEquals("Epic 2", loadedEpic.getTitle());
+        assertEquals(List.of(subtask.getId()), replayed.getSubtasksOfEpic(epic.getId()).stream()
+                .map(Task::getId).toList(), "Подзадачи эпика сохраняются при обновлении из журнала");
+        assertEquals(Status.DONE, loadedEpic.getStatus());
+        replayed.close();
+        FileBackedTaskManager.journalFileFor(tempFile).delete();
+    }
+
+    @Test
+    public void testSearchOverMappedSnapshotIndexesOnFirstUse() {
+        Task report = manager.createTask("Квартальный отчёт", "Цифры", Status.NEW);
+        Epic epic = manager.createEpic("Отчётность", "Все отчёты года", Status.NEW);
+        manager.createTask("Созвон", "Повестка", Status.NEW);
+        manager.setSnapshotFormat(SnapshotFormat.BINARY);
+        manager.save();
+
+        FileBackedTaskManager mapped = FileBackedTaskManager.openMapped(tempFile, false);
+        assertEquals(0, mapped.getMaterializedCount(), "При открытии текст не читается");
+        Task draft = mapped.createTask("Черновик отчёта", "", Status.NEW);
+        mapped.removeById(report.getId());
+        assertEquals(List.of(draft, epic), mapped.search("отчет", 10),
+                "Найдены и задачи из снимка, и созданные после открытия; удалённые — нет");
+        assertEquals(List.of(epic), mapped.search("отчетн*", 10));
+        assertTrue(mapped.getHistory().isEmpty());
+    }
+
+    @Test
+    public void testSearchSeesJournaledUpdatesAfterReload() {
+        Task task = manager.createTask("alpha", "d", Status.NEW);
+        manager.close();
+        FileBackedTaskManager journaled = FileBackedTaskManager.loadFromFile(tempFile, true);
+        journaled.updateTask(new Task(task.getId(), "bravo", "d", Status.NEW));
+        journaled.close();
+
+        FileBackedTaskManager replayed = FileBackedTaskManager.loadFromFile(tempFile, true);
+        assertTrue(replayed.search("alpha", 10).isEmpty(), "Старый текст из индекса убран");
+        assertEquals(List.of(task.getId()), replayed.search("bravo", 10).stream().map(Task::getId).toList());
+        replayed.close();
+        FileBackedTaskManager mapped = FileBackedTaskManager.openMapped(tempFile, true);
+        assertTrue(mapped.search("alpha", 10).isEmpty());
+        assertEquals(List.of(task.getId()), mapped.search("bravo", 10).stream().map(Task::getId).toList());
+        mapped.close();
+        FileBackedTaskManager.journalFileFor(tempFile).delete();
+    }
+
+    @Test
+    public void testCloseStopsOwnEventThreadAfterDelivery() throws InterruptedException, IOException {
+        List<Thread> workers = new ArrayList<>();
+        List<TaskEvent> received = new ArrayList<>();
+        manager.addListener(events -> {
+            synchronized (received) {
+                workers.add(Thread.currentThread());
+                received.addAll(events);
+            }
+        });
+        manager.createTask("Task1", "Desc1", Status.NEW);
+        manager.createTask("Task2", "Desc2", Status.NEW);
+
+        File otherFile = File.createTempFile("other", ".csv");
+        TaskEventDispatcher external = new TaskEventDispatcher();
+        FileBackedTaskManager other = new FileBackedTaskManager(otherFile);
+        other.setEventDispatcher(external);
+        List<Thread> externalWorkers = new ArrayList<>();
+        other.addListener(events -> {
+            synchronized (externalWorkers) {
+                externalWorkers.add(Thread.currentThread());
+            }
+        });
+        other.createTask("Task", "Desc", Status.NEW);
+        assertTrue(external.awaitDispatched(external.getLastSequence(), 5, TimeUnit.SECONDS));
+        other.close();
+
+        manager.close();
+
+        synchronized (received) {
+            assertEquals(2, received.size(), "Опубликованные события досылаются до остановки");
+            assertEquals("task-events", workers.get(0).getName());
+            workers.get(0).join(5000);
+            assertFalse(workers.get(0).isAlive(), "Поток рассылки менеджера остановлен");
+        }
+        synchronized (externalWorkers) {
+            assertTrue(externalWorkers.get(0).isAlive(), "Переданную рассылку закрывает её владелец");
+        }
+        external.close();
+        otherFile.delete();
+        FileBackedTaskManager.historyFileFor(otherFile).delete();
+    }
+
+    @Test
+    public void testCorruptedHistoryLinesAreSkipped() throws IOException {
+        Task first = manager.createTask("First", "Desc", Status.NEW);
+        Task second = manager.createTask("Second", "Desc", Status.NEW);
+        manager.getTaskById(first.getId());
+        manager.close();
+        File history = FileBackedTaskManager.historyFileFor(tempFile);
+        String garbage = "1x\n\n" + second.getId() + "\n-\n99999999999\n" + first.getId(); // последняя оборвана
+        Files.writeString(history.toPath(), Files.readString(history.toPath()) + garbage);
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+        assertEquals(List.of(first.getId(), second.getId()), loaded.getHistory().stream().map(Task::getId).toList(),
+                "Испорченные и оборванные строки журнала истории пропускаются");
+        loaded.close();
+    }
+
+    @Test
+    public void testHistoryIsRestoredAfterReload() {
+        Task task = manager.createTask("Task", "Desc", Status.NEW);
+        Epic epic = manager.createEpic("Epic", "Desc", Status.NEW);
+        Subtask subtask = manager.createSubtask("Subtask", "Desc", Status.NEW, epic.getId());
+        Task removed = manager.createTask("Removed", "Desc", Status.NEW);
+
+        manager.getTaskById(task.getId());
+        manager.getSubtaskById(subtask.getId());
+        manager.getTaskById(removed.getId());
+        manager.getEpicById(epic.getId());
+        manager.getTaskById(task.getId()); // повторный просмотр переносит задачу в конец
+        manager.removeById(removed.getId());
+        manager.close();
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile);
+
+        assertEquals(List.of(subtask.getId(), epic.getId(), task.getId()),
+                loaded.getHistory().stream().map(Task::getId).toList(),
+                "История восстанавливается в порядке последних просмотров без удалённых задач");
+        assertEquals(0, loaded.getHistoryManager().getRepeatedViews(), "Загрузка не считается просмотрами");
+
+        loaded.getTaskById(task.getId());
+        loaded.getSubtaskById(subtask.getId());
+        loaded.close();
+        assertEquals(List.of(epic.getId(), task.getId(), subtask.getId()),
+                FileBackedTaskManager.loadFromFile(tempFile).getHistory().stream().map(Task::getId).toList(),
+                "Новые просмотры дописываются к сохранённым");
+    }
 }
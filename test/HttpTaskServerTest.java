@@ -0,0 +1,174 @@
+import http.HttpTaskServer;
+import manager.Managers;
+import manager.TaskManager;
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpTaskServerTest {
+
+    private TaskManager manager;
+    private HttpTaskServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        manager = Managers.getConcurrent();
+        server = new HttpTaskServer(manager, 0);
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testCreateViewAndDeleteThroughApi() throws Exception {
+        HttpResponse<String> created = post("/epics", "{\"title\":\"Переезд\",\"description\":\"Кавычки \\\" и \\\\\"}");
+        assertEquals(201, created.statusCode());
+        Epic epic = manager.getAllEpics().get(0);
+        assertEquals("Кавычки \" и \\", epic.getDescription());
+
+        String subtaskJson = "{\"title\":\"Коробки\",\"description\":\"\",\"status\":\"DONE\",\"epicId\":"
+                + epic.getId() + "}";
+        assertEquals(201, post("/subtasks", subtaskJson).statusCode());
+        Subtask subtask = manager.getAllSubtasks().get(0);
+
+        HttpResponse<String> epicResponse = get("/epics/" + epic.getId());
+        assertEquals(200, epicResponse.statusCode());
+        assertTrue(epicResponse.body().contains("\"status\":\"DONE\""), "Статус эпика пересчитан по подзадаче");
+        assertTrue(epicResponse.body().contains("\"subtasks\":[" + subtask.getId() + "]"));
+        assertTrue(get("/epics/" + epic.getId() + "/subtasks").body().contains("\"title\":\"Коробки\""));
+        assertTrue(get("/history").body().startsWith("[{\"id\":" + epic.getId()), "Просмотр попал в историю");
+
+        String update = "{\"id\":" + subtask.getId() + ",\"title\":\"Коробки\",\"description\":\"\",\"status\":\"NEW\"}";
+        assertEquals(200, post("/subtasks", update).statusCode());
+        assertEquals(Status.NEW, manager.getAllEpics().get(0).getStatus());
+
+        assertEquals(200, post("/epics", "{\"id\":" + epic.getId() + ",\"title\":\"Переезд в июле\"}").statusCode());
+        Epic renamed = manager.getAllEpics().get(0);
+        assertEquals("Переезд в июле", renamed.getTitle());
+        assertEquals("Кавычки \" и \\", renamed.getDescription(), "Без описания в теле остаётся прежнее");
+        assertEquals(List.of(subtask.getId()), renamed.getSubtaskIds(), "Подзадачи остаются при эпике");
+        assertSame(epic, renamed, "Эпик переименовывается на месте, а не заменяется копией");
+
+        assertEquals(204, send(HttpRequest.newBuilder(uri("/epics/" + epic.getId())).DELETE()).statusCode());
+        assertTrue(manager.getAllSubtasks().isEmpty(), "Подзадачи удаляются вместе с эпиком");
+        assertEquals("[]", get("/subtasks").body());
+    }
+
+    @Test
+    public void testErrorsAreMappedToStatusCodes() throws Exception {
+        Task task = manager.createTask("Task", "Desc", Status.NEW);
+
+        assertEquals(404, get("/tasks/" + (task.getId() + 100)).statusCode());
+        assertEquals(404, get("/epics/" + task.getId()).statusCode(), "Задача не ищется среди эпиков");
+        assertEquals(400, get("/tasks/abc").statusCode());
+        assertEquals(400, post("/tasks", "{\"title\":").statusCode());
+        assertEquals(400, post("/tasks", "{\"title\":\"T\",\"status\":\"LATER\"}").statusCode());
+        assertEquals(400, post("/subtasks", "{\"title\":\"S\",\"epicId\":" + task.getId() + "}").statusCode());
+        assertEquals(405, send(HttpRequest.newBuilder(uri("/history")).DELETE()).statusCode());
+
+        byte[] huge = new byte[2 << 20];
+        assertEquals(413, send(HttpRequest.newBuilder(uri("/tasks"))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(huge))).statusCode(), "Тело больше предела");
+        assertEquals(413, send(HttpRequest.newBuilder(uri("/tasks"))
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new ByteArrayInputStream(huge))))
+                .statusCode(), "Тело без Content-Length читается не дальше предела");
+        assertEquals(1, manager.getAllTasks().size());
+        assertEquals(201, post("/tasks", "{\"title\":\"После отказа\"}").statusCode());
+    }
+
+    @Test
+    public void testConcurrentClientsAndPagedQuery() throws Exception {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            HttpRequest request = HttpRequest.newBuilder(uri("/tasks"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"title\":\"Task " + i + "\",\"description\":\"\"}"))
+                    .build();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(201, response.get().statusCode());
+        }
+        assertEquals(200, manager.getAllTasks().size());
+
+        HttpResponse<String> page = get("/query?type=TASK&limit=150");
+        assertTrue(page.body().endsWith(",\"nextCursor\":150,\"hasMore\":true}"), page.body());
+        HttpResponse<String> last = get("/query?type=TASK&limit=150&after=150");
+        assertTrue(last.body().endsWith(",\"nextCursor\":200,\"hasMore\":false}"), last.body());
+    }
+
+    @Test
+    public void testPrioritizedTasksAndOverlapThroughApi() throws Exception {
+        assertEquals(201, post("/tasks", "{\"title\":\"Поздняя\",\"startTime\":\"2024-05-01T12:00\","
+                + "\"duration\":\"PT1H\"}").statusCode());
+        HttpResponse<String> early = post("/tasks", "{\"title\":\"Ранняя\",\"startTime\":\"2024-05-01T09:00\","
+                + "\"duration\":\"PT30M\"}");
+        assertTrue(early.body().contains("\"endTime\":\"2024-05-01T09:30\""), early.body());
+        assertEquals(406, post("/tasks", "{\"title\":\"Пересечение\",\"startTime\":\"2024-05-01T12:30\"}")
+                .statusCode());
+        assertEquals(400, post("/tasks", "{\"title\":\"T\",\"startTime\":\"завтра\"}").statusCode());
+
+        String prioritized = get("/prioritized").body();
+        assertTrue(prioritized.indexOf("Ранняя") < prioritized.indexOf("Поздняя"), prioritized);
+
+        int id = manager.getPrioritizedTasks().get(0).getId();
+        assertEquals(200, post("/tasks", "{\"id\":" + id + ",\"title\":\"Ранняя\",\"startTime\":null}")
+                .statusCode());
+        assertEquals(1, manager.getPrioritizedTasks().size(), "startTime:null убирает задачу из расписания");
+    }
+
+    @Test
+    public void testSearchThroughApi() throws Exception {
+        manager.createTask("Починить сборку", "Тесты падают", Status.NEW);
+        Task fix = manager.createTask("Fix build", "Tests are failing", Status.NEW);
+
+        HttpResponse<String> found = get("/search?q=" + URLEncoder.encode("test* fix", StandardCharsets.UTF_8));
+        assertEquals(200, found.statusCode());
+        assertTrue(found.body().startsWith("[{\"id\":" + fix.getId() + ","), found.body());
+        assertTrue(get("/search?q=" + URLEncoder.encode("сборка", StandardCharsets.UTF_8)).body()
+                .contains("Починить сборку"));
+        assertEquals("[]", get("/search?q=deploy").body());
+        assertEquals(400, get("/search").statusCode());
+        assertEquals(400, get("/search?q=fix&limit=100000").statusCode());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.getPort() + path);
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return send(HttpRequest.newBuilder(uri(path)).GET());
+    }
+
+    private HttpResponse<String> post(String path, String body) throws Exception {
+        return send(HttpRequest.newBuilder(uri(path)).POST(HttpRequest.BodyPublishers.ofString(body)));
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -86,4 +86,15 @@ class InMemoryHistoryManagerTest {
         historyManager.remove(task3.getId());
         assertEquals(List.of(task1, task2), historyManager.getHistory());
     }
+
+    @Test
+    void testCapacityEvictsOldest() {
+        historyManager = new InMemoryHistoryManager(2);
+        historyManager.add(task1);
+        historyManager.add(task2);
+        historyManager.add(task1); // повторный просмотр не занимает лишнего места
+        historyManager.add(task3);
+
+        assertEquals(List.of(task1, task3), historyManager.getHistory());
+    }
 }
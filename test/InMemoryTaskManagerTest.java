@@ -1,13 +1,26 @@
 import manager.InMemoryTaskManager;
+import manager.StringPool;
+import manager.TaskEvent;
+import manager.TaskEventDispatcher;
+import manager.TaskListener;
+import manager.TaskPage;
+import manager.TaskQuery;
+import manager.TaskSnapshot;
+import manager.TimeOverlapException;
 import model.Epic;
 import model.Status;
 import model.Subtask;
 import model.Task;
+import model.TaskType;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -17,6 +30,7 @@ public class InMemoryTaskManagerTest {
 
     @BeforeEach
     void setup() {
+        Epic.setVerifyStatusCounters(true); // сверяем счётчики статусов эпика с полным обходом
         taskManager = new InMemoryTaskManager();
     }
 
@@ -61,6 +75,19 @@ public class InMemoryTaskManagerTest {
         assertNull(taskManager.getTaskById(id));
     }
 
+    @Test
+    public void testListsStayInIdOrderAfterChurn() {
+        for (int i = 0; i < 300; i++) {
+            Task task = taskManager.createTask("Task " + i, "Desc", Status.NEW);
+            if (i % 3 == 0) {
+                taskManager.removeById(task.getId());
+            }
+        }
+        List<Integer> ids = taskManager.getAllTasks().stream().map(Task::getId).toList();
+        assertEquals(200, ids.size());
+        assertEquals(ids.stream().sorted().toList(), ids, "Список задач идёт по возрастанию id, а не по хэшу");
+    }
+
     @Test
     public void testUpdateTask() {
         Task task = taskManager.createTask("Old Title", "Old Desc", Status.NEW);
@@ -71,4 +98,380 @@ public class InMemoryTaskManagerTest {
         Assertions.assertEquals("New Title", updated.getTitle());
         Assertions.assertEquals("New Desc", updated.getDescription());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testBatchDefersEpicStatusUntilCommit() {
+        Epic epic = taskManager.createEpic("Epic", "Desc", Status.NEW);
+
+        taskManager.beginBatch();
+        for (int i = 0; i < 3; i++) {
+            taskManager.createSubtask("Subtask " + i, "Desc", Status.DONE, epic.getId());
+        }
+        assertEquals(Status.NEW, epic.getStatus(), "Внутри пакета статус эпика не пересчитывается");
+        taskManager.commitBatch();
+
+        assertEquals(Status.DONE, epic.getStatus());
+        assertEquals(3, taskManager.getSubtasksOfEpic(epic.getId()).size());
+    }
+
+    @Test
+    public void testBatchRollsBackOnFailure() {
+        Task kept = taskManager.createTask("Kept", "Desc", Status.NEW);
+        Epic epic = taskManager.createEpic("Epic", "Desc", Status.NEW);
+
+        assertThrows(IllegalStateException.class, () -> taskManager.executeBatch(() -> {
+            taskManager.createSubtask("Subtask", "Desc", Status.DONE, epic.getId());
+            taskManager.removeById(kept.getId());
+            throw new IllegalStateException("сбой импорта");
+        }));
+
+        assertEquals(List.of(kept), taskManager.getAllTasks(), "Удалённая в пакете задача должна вернуться");
+        assertTrue(taskManager.getAllSubtasks().isEmpty(), "Созданная в пакете подзадача должна исчезнуть");
+        assertTrue(taskManager.getSubtasksOfEpic(epic.getId()).isEmpty());
+        assertEquals(Status.NEW, epic.getStatus());
+
+        Task next = taskManager.createTask("Next", "Desc", Status.NEW);
+        assertEquals(epic.getId() + 1, next.getId(), "Идентификаторы пакета освобождаются при откате");
+    }
+
+    @Test
+    public void testEpicKeepsSubtaskOrderAfterRemovals() {
+        Epic epic = taskManager.createEpic("Epic", "Desc", Status.NEW);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Subtask subtask = taskManager.createSubtask("Subtask" + i, "Desc", Status.NEW, epic.getId());
+            if (i % 3 == 0) {
+                taskManager.removeById(subtask.getId());
+            } else {
+                expected.add(subtask.getId());
+            }
+        }
+
+        assertEquals(expected, epic.getSubtaskIds(), "Порядок подзадач сохраняется после удалений");
+        assertEquals(expected.size(), epic.getSubtasks().size());
+        assertEquals((int) expected.get(0), epic.getSubtasks().get(0).getId());
+        assertTrue(epic.hasSubtask(expected.get(5)), "Поиск подзадачи по id");
+        assertFalse(epic.hasSubtask(epic.getId() + 1), "Удалённая подзадача не числится в эпике");
+        assertThrows(UnsupportedOperationException.class, () -> epic.getSubtaskIds().remove(0),
+                "Список id только для чтения");
+    }
+
+    @Test
+    public void testStringPoolSharesRepeatedStrings() {
+        Task first = taskManager.createTask(new String("Отчёт"), new String("Сверить цифры"), Status.NEW);
+        taskManager.setStringPool(new StringPool());
+        Task second = taskManager.createTask(new String("Отчёт"), new String("Сверить цифры"), Status.NEW);
+
+        assertSame(first.getTitle(), second.getTitle(), "Одинаковые названия хранятся одной строкой");
+        assertSame(first.getDescription(), second.getDescription(), "Одинаковые описания хранятся одной строкой");
+
+        int hash = second.hashCode();
+        second.setTitle("Другой отчёт");
+        assertNotEquals(hash, second.hashCode(), "Сеттер сбрасывает запомненный хэш");
+        assertEquals(new Task(second.getId(), "Другой отчёт", "Сверить цифры", Status.NEW), second);
+    }
+
+    @Test
+    public void testEpicStatusFollowsSubtaskTransitions() {
+        Epic epic = taskManager.createEpic("Epic", "Desc", Status.NEW);
+        Subtask first = taskManager.createSubtask("First", "Desc", Status.NEW, epic.getId());
+        Subtask second = taskManager.createSubtask("Second", "Desc", Status.NEW, epic.getId());
+        assertEquals(Status.NEW, epic.getStatus());
+
+        first.setStatus(Status.DONE);
+        taskManager.updateTask(first);
+        assertEquals(Status.IN_PROGRESS, epic.getStatus());
+        assertEquals(1, epic.getSubtaskCount(Status.DONE));
+
+        taskManager.updateTask(new Subtask(second.getId(), "Second", "Desc", Status.DONE, epic.getId()));
+        assertEquals(Status.DONE, epic.getStatus());
+        assertEquals(2, epic.getSubtaskCount(Status.DONE));
+
+        taskManager.removeById(first.getId());
+        assertEquals(Status.DONE, epic.getStatus());
+        assertEquals(1, epic.getSubtaskCount(Status.DONE));
+
+        taskManager.removeAllSubtasks();
+        assertEquals(Status.NEW, epic.getStatus());
+        assertEquals(0, epic.getSubtaskCount(Status.DONE));
+    }
+
+    @Test
+    public void testSessionHistoriesAreIndependent() {
+        Task first = taskManager.createTask("First", "Desc", Status.NEW);
+        Task second = taskManager.createTask("Second", "Desc", Status.NEW);
+
+        taskManager.getTaskById(first.getId(), "alice");
+        taskManager.getTaskById(second.getId(), "bob");
+        taskManager.getTaskById(first.getId(), "bob");
+
+        assertEquals(List.of(first), taskManager.getHistory("alice"));
+        assertEquals(List.of(second, first), taskManager.getHistory("bob"));
+        assertTrue(taskManager.getHistory().isEmpty(), "Общая история не затрагивается");
+
+        taskManager.removeById(first.getId());
+        assertTrue(taskManager.getHistory("alice").isEmpty(), "Удалённая задача пропадает из истории сессии");
+        assertEquals(List.of(second), taskManager.getHistory("bob"));
+    }
+
+    @Test
+    public void testSnapshotIsReusedUntilModified() {
+        taskManager.createTask("Task", "Desc", Status.NEW);
+        TaskSnapshot first = taskManager.getSnapshot();
+        long version = taskManager.getVersion();
+
+        assertSame(first, taskManager.getSnapshot(), "Без изменений срез не пересобирается");
+        assertSame(first.getTasks(), taskManager.getAllTasks());
+
+        taskManager.createTask("Another", "Desc", Status.NEW);
+
+        assertTrue(taskManager.getVersion() > version);
+        assertEquals(1, first.getTasks().size(), "Старый срез не меняется");
+        assertEquals(2, taskManager.getAllTasks().size());
+        assertThrows(UnsupportedOperationException.class, () -> taskManager.getAllTasks().clear());
+    }
+
+    @Test
+    public void testQueryPagesThroughSubtasksInIdOrder() {
+        Epic epic = taskManager.createEpic("Epic", "Desc", Status.NEW);
+        for (int i = 0; i < 25; i++) {
+            taskManager.createSubtask("Subtask " + i, "Desc", i % 2 == 0 ? Status.DONE : Status.NEW, epic.getId());
+        }
+        taskManager.createTask("Task", "Desc", Status.DONE);
+
+        TaskQuery doneSubtasks = TaskQuery.all().withType(TaskType.SUBTASK).withStatus(Status.DONE);
+        List<Integer> seen = new ArrayList<>();
+        TaskPage page = taskManager.queryPage(doneSubtasks, 0, 5);
+        while (true) {
+            page.getItems().forEach(task -> seen.add(task.getId()));
+            if (!page.hasMore()) {
+                break;
+            }
+            page = taskManager.queryPage(doneSubtasks, page.getNextCursor(), 5);
+        }
+
+        assertEquals(13, seen.size());
+        assertEquals(seen.stream().sorted().toList(), seen, "Страницы идут по возрастанию id");
+        assertEquals(27, taskManager.query(TaskQuery.all()).count());
+        assertEquals(2, taskManager.query(TaskQuery.all().withStatus(Status.DONE).withIdRange(1, 4)).count());
+    }
+
+    @Test
+    public void testStatusAndEpicIndexesFollowUpdates() {
+        Epic epic = taskManager.createEpic("Epic", "Desc", Status.NEW);
+        Epic other = taskManager.createEpic("Other", "Desc", Status.NEW);
+        Subtask subtask = taskManager.createSubtask("Subtask", "Desc", Status.NEW, epic.getId());
+        taskManager.createSubtask("Foreign", "Desc", Status.NEW, other.getId());
+        Task task = taskManager.createTask("Task", "Desc", Status.NEW);
+
+        TaskQuery doneSubtasks = TaskQuery.all().withType(TaskType.SUBTASK).withStatus(Status.DONE);
+        assertEquals(0, taskManager.count(doneSubtasks));
+
+        subtask.setStatus(Status.DONE);
+        taskManager.updateTask(subtask);
+
+        assertEquals(1, taskManager.count(doneSubtasks));
+        assertEquals(List.of(subtask), taskManager.query(doneSubtasks).toList());
+        assertEquals(List.of(epic), taskManager.query(TaskQuery.all().withStatus(Status.DONE)
+                .withType(TaskType.EPIC)).toList(), "Индекс статусов эпиков следует за пересчётом");
+        assertEquals(1, taskManager.count(TaskQuery.all().withEpic(epic.getId())));
+        assertEquals(3, taskManager.count(TaskQuery.all().withStatus(Status.NEW)));
+
+        Subtask moved = new Subtask(subtask.getId(), "Subtask", "Desc", Status.NEW, other.getId());
+        assertThrows(IllegalArgumentException.class, () -> taskManager.updateTask(moved),
+                "Подзадачу нельзя перенести в другой эпик");
+        assertEquals(Status.DONE, taskManager.getSubtaskById(subtask.getId()).getStatus());
+        assertEquals(List.of(subtask.getId()), epic.getSubtaskIds(), "Эпик сохраняет подзадачу");
+        assertEquals(1, taskManager.count(TaskQuery.all().withEpic(other.getId())));
+
+        taskManager.removeById(subtask.getId());
+        taskManager.removeById(task.getId());
+
+        assertEquals(0, taskManager.count(doneSubtasks));
+        assertEquals(0, taskManager.count(TaskQuery.all().withEpic(epic.getId())));
+        assertEquals(3, taskManager.count(TaskQuery.all()));
+    }
+
+    @Test
+    public void testPrioritizedTasksFollowStartTime() {
+        LocalDateTime day = LocalDateTime.of(2024, 5, 1, 9, 0);
+        Epic epic = taskManager.createEpic("Epic", "Desc", Status.NEW);
+        Task late = taskManager.createTask("Late", "Desc", Status.NEW, day.plusHours(5), Duration.ofHours(1));
+        Task unscheduled = taskManager.createTask("Someday", "Desc", Status.NEW);
+        Subtask early = taskManager.createSubtask("Early", "Desc", Status.NEW, epic.getId(), day, Duration.ofMinutes(30));
+        Task middle = taskManager.createTask("Middle", "Desc", Status.NEW, day.plusHours(2), null);
+
+        assertEquals(List.of(early, middle, late), taskManager.getPrioritizedTasks(),
+                "Эпики и задачи без времени в порядок не входят");
+
+        late.setStartTime(day.minusHours(1));
+        taskManager.updateTask(late);
+        unscheduled.setStartTime(day.plusHours(8));
+        taskManager.updateTask(unscheduled);
+        taskManager.removeById(middle.getId());
+        assertEquals(List.of(late, early, unscheduled), taskManager.getPrioritizedTasks());
+
+        taskManager.removeAllSubtasks();
+        taskManager.removeAllTasks();
+        assertTrue(taskManager.getPrioritizedTasks().isEmpty());
+    }
+
+    @Test
+    public void testOverlappingTimeIsRejected() {
+        LocalDateTime nine = LocalDateTime.of(2024, 5, 1, 9, 0);
+        Epic epic = taskManager.createEpic("Epic", "Desc", Status.NEW);
+        Task meeting = taskManager.createTask("Meeting", "Desc", Status.NEW, nine, Duration.ofHours(1));
+
+        TimeOverlapException overlap = assertThrows(TimeOverlapException.class, () -> taskManager.createSubtask(
+                "Call", "Desc", Status.NEW, epic.getId(), nine.plusMinutes(30), Duration.ofHours(1)));
+        assertEquals(meeting.getId(), overlap.getConflictingId());
+        assertTrue(taskManager.getAllSubtasks().isEmpty(), "Пересекающаяся подзадача не создаётся");
+        assertTrue(epic.getSubtasks().isEmpty());
+
+        assertThrows(TimeOverlapException.class, () -> taskManager.createTask("Clash", "Desc", Status.NEW,
+                nine, Duration.ofMinutes(5)));
+        Task next = taskManager.createTask("Next", "Desc", Status.NEW, nine.plusHours(1), Duration.ofHours(1));
+        assertNotNull(next, "Начало ровно в момент окончания другой задачи — не пересечение");
+        assertEquals(meeting.getId() + 1, next.getId(), "Отклонённое создание не забирает id");
+
+        meeting.setDuration(Duration.ofMinutes(90));
+        assertThrows(TimeOverlapException.class, () -> taskManager.updateTask(meeting));
+        meeting.setDuration(Duration.ofMinutes(45));
+        taskManager.updateTask(meeting);
+        assertThrows(TimeOverlapException.class, () -> taskManager.createTask("Short", "Desc", Status.NEW,
+                nine.plusMinutes(20), Duration.ofMinutes(10)), "Расписание хранит новое время задачи");
+        Task gap = taskManager.createTask("Gap", "Desc", Status.NEW, nine.plusMinutes(45), Duration.ofMinutes(15));
+
+        taskManager.beginBatch();
+        taskManager.removeById(next.getId());
+        taskManager.createTask("Replacement", "Desc", Status.NEW, nine.plusHours(1), Duration.ofHours(1));
+        taskManager.rollbackBatch();
+        assertEquals(List.of(meeting, gap, next), taskManager.getPrioritizedTasks(), "Откат возвращает и расписание");
+    }
+
+    @Test
+    public void testSearchMatchesWordFormsAndRanksTitleFirst() {
+        Task inDescription = taskManager.createTask("Созвон", "Обсудить отчёты за квартал", Status.NEW);
+        Task inTitle = taskManager.createTask("Отчёт за квартал", "Собрать цифры", Status.NEW);
+        Epic epic = taskManager.createEpic("Release", "Prepare the reports", Status.NEW);
+        Subtask english = taskManager.createSubtask("Reporting bugs", "Триаж", Status.NEW, epic.getId());
+
+        assertEquals(List.of(inTitle, inDescription), taskManager.search("ОТЧЕТ", 10),
+                "Регистр, ё и окончания не важны; совпадение в названии весит больше");
+        assertEquals(List.of(inTitle), taskManager.search("отчёт цифры", 10), "Слова запроса объединяются по «И»");
+        assertEquals(List.of(inTitle), taskManager.search("отчет", 1));
+        assertEquals(List.of(english, epic), taskManager.search("report", 10), "reporting и reports — одно слово");
+        assertEquals(List.of(epic), taskManager.search("rel*", 10), "Эпики тоже ищутся");
+        assertEquals(List.of(inTitle, inDescription), taskManager.search("кварт*", 10));
+        assertTrue(taskManager.search("отпуск", 10).isEmpty());
+        assertTrue(taskManager.search("  ", 10).isEmpty());
+        assertTrue(taskManager.getHistory().isEmpty(), "Поиск не попадает в историю");
+    }
+
+    @Test
+    public void testSearchFollowsUpdatesRemovalsAndRollback() {
+        Task task = taskManager.createTask("Купить молоко", "В магазине", Status.NEW);
+        Epic epic = taskManager.createEpic("Переезд", "Коробки", Status.NEW);
+        Subtask subtask = taskManager.createSubtask("Упаковать книги", "Коробки", Status.NEW, epic.getId());
+
+        task.setTitle("Купить хлеб");
+        taskManager.updateTask(task);
+        assertTrue(taskManager.search("молоко", 10).isEmpty(), "Старый текст снимается из индекса");
+        assertEquals(List.of(task), taskManager.search("хлеб", 10));
+
+        task.setStatus(Status.DONE);
+        taskManager.updateTask(task);
+        assertEquals(List.of(task), taskManager.search("хлеб", 10));
+
+        taskManager.beginBatch();
+        taskManager.removeById(epic.getId());
+        assertTrue(taskManager.search("коробки", 10).isEmpty(), "Подзадачи удаляются вместе с эпиком");
+        taskManager.rollbackBatch();
+        assertEquals(List.of(epic, subtask), taskManager.search("коробки", 10), "Откат возвращает и текст");
+
+        taskManager.removeAllTasks();
+        assertTrue(taskManager.search("хлеб", 10).isEmpty());
+        taskManager.removeAllEpics();
+        assertTrue(taskManager.search("коробки", 10).isEmpty());
+    }
+
+    @Test
+    public void testEpicTimeIsDerivedFromSubtasks() {
+        LocalDateTime nine = LocalDateTime.of(2024, 5, 1, 9, 0);
+        Epic epic = taskManager.createEpic("Epic", "Desc", Status.NEW);
+        assertNull(epic.getStartTime());
+        assertNull(epic.getDuration());
+
+        Subtask first = taskManager.createSubtask("First", "Desc", Status.NEW, epic.getId(), nine, Duration.ofHours(1));
+        Subtask last = taskManager.createSubtask("Last", "Desc", Status.NEW, epic.getId(),
+                nine.plusHours(3), Duration.ofMinutes(30));
+        taskManager.createSubtask("Untimed", "Desc", Status.NEW, epic.getId());
+
+        assertEquals(nine, epic.getStartTime());
+        assertEquals(nine.plusMinutes(210), epic.getEndTime(), "Окончание — самое позднее окончание подзадач");
+        assertEquals(Duration.ofMinutes(90), epic.getDuration(), "Продолжительность — сумма продолжительностей");
+
+        first.setStartTime(nine.plusHours(5));
+        taskManager.updateTask(first);
+        assertEquals(nine.plusHours(3), epic.getStartTime(), "Изменение подзадачи на месте учитывается");
+        assertEquals(nine.plusHours(6), epic.getEndTime());
+
+        taskManager.removeById(last.getId());
+        assertEquals(nine.plusHours(5), epic.getStartTime());
+        assertEquals(Duration.ofHours(1), epic.getDuration());
+        assertThrows(UnsupportedOperationException.class, () -> epic.setStartTime(nine));
+    }
+
+    @Test
+    public void testListenersReceiveChangesInOrderAndCanResume() throws InterruptedException {
+        List<TaskEvent> received = new ArrayList<>();
+        TaskListener listener = events -> {
+            synchronized (received) {
+                received.addAll(events);
+            }
+        };
+        taskManager.addListener(listener);
+
+        Epic epic = taskManager.createEpic("Epic", "Desc", Status.NEW);
+        Subtask subtask = taskManager.createSubtask("Subtask", "Desc", Status.NEW, epic.getId());
+        subtask.setStatus(Status.DONE);
+        taskManager.updateTask(subtask);
+        taskManager.beginBatch();
+        taskManager.createTask("Откатится", "Desc", Status.NEW);
+        taskManager.rollbackBatch();
+        taskManager.removeById(epic.getId());
+
+        TaskEventDispatcher dispatcher = taskManager.getEventDispatcher();
+        long last = dispatcher.getLastSequence();
+        assertTrue(dispatcher.awaitDispatched(last, 5, TimeUnit.SECONDS));
+        synchronized (received) {
+            assertEquals(List.of(TaskEvent.Type.CREATED, TaskEvent.Type.CREATED, TaskEvent.Type.UPDATED,
+                    TaskEvent.Type.EPIC_STATUS_CHANGED, TaskEvent.Type.REMOVED, TaskEvent.Type.REMOVED),
+                    received.stream().map(TaskEvent::getType).toList(), "Откаченный пакет не рассылается");
+            for (int i = 0; i < received.size(); i++) {
+                assertEquals(i + 1L, received.get(i).getSequence());
+            }
+            TaskEvent statusChanged = received.get(3);
+            assertEquals(Status.NEW, statusChanged.getPreviousStatus());
+            assertEquals(Status.DONE, statusChanged.getStatus());
+            assertEquals(epic.getId(), received.get(2).getEpicId());
+        }
+
+        // Переподключение: новый подписчик получает всё после третьего события
+        List<Long> resumed = new ArrayList<>();
+        taskManager.removeListener(listener);
+        taskManager.addListener(events -> {
+            synchronized (resumed) {
+                events.forEach(event -> resumed.add(event.getSequence()));
+            }
+        }, 3);
+        taskManager.createTask("Task", "Desc", Status.NEW);
+        assertTrue(dispatcher.awaitDispatched(last + 1, 5, TimeUnit.SECONDS));
+        synchronized (resumed) {
+            assertEquals(List.of(4L, 5L, 6L, 7L), resumed);
+        }
+        synchronized (received) {
+            assertEquals(6, received.size(), "Отписанный слушатель больше ничего не получает");
+        }
+    }
+}
@@ -0,0 +1,72 @@
+import manager.FileBackedTaskManager;
+import manager.Managers;
+import manager.MeteredTaskManager;
+import manager.TaskManagerMetrics;
+import manager.TaskManagerMetrics.Operation;
+import model.Epic;
+import model.Status;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MeteredTaskManagerTest {
+
+    @Test
+    public void testOperationsAreCountedAndTimed() {
+        MeteredTaskManager manager = Managers.withMetrics(Managers.getDefault());
+        Epic epic = manager.createEpic("Эпик", "Описание", Status.NEW);
+        manager.createSubtask("Подзадача", "Описание", Status.NEW, epic.getId());
+        manager.getEpicById(epic.getId());
+        manager.getTaskById(999);
+
+        TaskManagerMetrics metrics = manager.getMetrics();
+        assertEquals(1, metrics.getLatency(Operation.CREATE_EPIC).getCount(), "Создание эпика должно быть учтено");
+        assertEquals(2, metrics.getLatency(Operation.GET_BY_ID).getCount(), "Оба чтения по id должны быть учтены");
+        assertTrue(metrics.getLatency(Operation.GET_BY_ID).getTotalNanos() > 0, "Длительность должна быть записана");
+        assertEquals(1, metrics.getHistoryHits(), "Найденный эпик — попадание");
+        assertEquals(1, metrics.getHistoryMisses(), "Несуществующая задача — промах");
+        assertEquals(1, metrics.getEpicCount(), "Размер хранилища эпиков");
+        assertEquals(1, metrics.getSubtaskCount(), "Размер хранилища подзадач");
+        assertTrue(metrics.dump().contains("createSubtask"), "В выводе должны быть операции");
+    }
+
+    @Test
+    public void testDisabledMetricsRecordNothing() {
+        MeteredTaskManager manager = Managers.withMetrics(Managers.getDefault());
+        manager.getMetrics().setEnabled(false);
+        manager.createTask("Задача", "Описание", Status.NEW);
+        manager.getTaskById(1);
+
+        TaskManagerMetrics metrics = manager.getMetrics();
+        assertEquals(0, metrics.getLatency(Operation.CREATE_TASK).getCount(), "Выключенные метрики не пишутся");
+        assertEquals(0, metrics.getHistoryHits(), "Выключенные метрики не пишутся");
+        assertEquals(1, metrics.getTaskCount(), "Размер хранилища читается всегда");
+    }
+
+    @Test
+    public void testPersistenceAndMBeans() throws Exception {
+        File file = File.createTempFile("tasks", ".csv");
+        try {
+            MeteredTaskManager manager = Managers.withMetrics(new FileBackedTaskManager(file));
+            manager.createTask("Задача", "Описание", Status.NEW);
+            TaskManagerMetrics metrics = manager.getMetrics();
+            assertTrue(metrics.getSnapshotBytes() + metrics.getJournalBytes() > 0, "Запись на диск должна быть учтена");
+
+            metrics.registerMBeans("test");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("kanban:type=TaskManager,name=\"test\"");
+            assertEquals(1, server.getAttribute(name, "TaskCount"), "MBean должен отдавать размер хранилища");
+            metrics.unregisterMBeans();
+            assertFalse(server.isRegistered(name), "MBean должен сниматься");
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+import manager.InMemoryTaskManager;
+import manager.TaskCsv;
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TaskCsvTest {
+
+    private InMemoryTaskManager manager;
+
+    @BeforeEach
+    void setUp() {
+        manager = new InMemoryTaskManager();
+    }
+
+    @Test
+    void testQuotedFieldsRoundTrip() throws IOException {
+        Task task = manager.createTask("Купить, продать", "Сказал \"да\"\nи ушёл", Status.NEW);
+        Task empty = manager.createTask("", null, null);
+
+        StringWriter writer = new StringWriter();
+        TaskCsv.export(manager, writer, null);
+        List<Task> read = new ArrayList<>();
+        TaskCsv.read(new StringReader(writer.toString()), read::add);
+
+        assertEquals(2, read.size());
+        assertEquals(task, read.get(0), "Запятые, кавычки и переводы строк сохраняются");
+        assertEquals("", read.get(1).getTitle(), "Пустая строка отличается от null");
+        assertNull(read.get(1).getDescription());
+        assertNull(read.get(1).getStatus());
+        assertEquals(empty.getId(), read.get(1).getId());
+    }
+
+    @Test
+    void testImportRemapsEpicIdsAndReportsProgress() throws IOException {
+        Epic epic = manager.createEpic("Epic", "d", Status.NEW);
+        for (int i = 0; i < 1500; i++) {
+            manager.createSubtask("Subtask" + i, "d", Status.DONE, epic.getId());
+        }
+        StringWriter writer = new StringWriter();
+        TaskCsv.export(manager, writer, null);
+
+        InMemoryTaskManager target = new InMemoryTaskManager();
+        target.createTask("Уже была", "d", Status.NEW);
+        List<Long> progress = new ArrayList<>();
+        long imported = TaskCsv.importInto(target, new StringReader(writer.toString()), progress::add);
+
+        assertEquals(1501, imported);
+        assertEquals(List.of(1000L, 1501L), progress, "Прогресс каждые 1000 записей и в конце");
+        Epic copy = target.getAllEpics().get(0);
+        assertEquals(1500, target.getSubtasksOfEpic(copy.getId()).size(), "Подзадачи привязаны к новому эпику");
+        assertEquals(Status.DONE, copy.getStatus());
+    }
+
+    @Test
+    void testMalformedRowRollsBackImport() {
+        String csv = TaskCsv.HEADER + "\n1,TASK,Task,NEW,d,\n2,TASK,\"не закрыта,NEW,d,\n";
+
+        assertThrows(IllegalArgumentException.class,
+                () -> TaskCsv.importInto(manager, new StringReader(csv), null));
+        assertEquals(0, manager.getAllTasks().size(), "Импорт откатывается целиком");
+        Subtask orphan = manager.createSubtask("s", "d", Status.NEW, 100);
+        assertEquals(1, orphan.getId(), "Счётчик id тоже откатывается");
+    }
+}
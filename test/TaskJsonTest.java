@@ -0,0 +1,77 @@
+import http.TaskJson;
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import model.TaskType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TaskJsonTest {
+
+    @Test
+    public void testEncodesModelTypesAndEscapes() {
+        Epic epic = new Epic(7, "Эпик", null, Status.IN_PROGRESS);
+        epic.addSubtask(new Subtask(8, "a", "b", Status.DONE, 7));
+        epic.addSubtask(new Subtask(9, "c", "d", Status.NEW, 7));
+        Task task = new Task(-2147483648, "Кавычка \" слеш \\ перевод\nстроки \u0001 смайл \uD83D\uDE00 и \uD800",
+                "", Status.NEW);
+
+        TaskJson json = new TaskJson(16);
+        json.writeArray(List.of(epic, new Subtask(8, "a", "b", Status.DONE, 7), task));
+
+        assertEquals("[{\"id\":7,\"type\":\"EPIC\",\"title\":\"Эпик\",\"description\":null,\"status\":\"IN_PROGRESS\","
+                        + "\"subtasks\":[8,9]},"
+                        + "{\"id\":8,\"type\":\"SUBTASK\",\"title\":\"a\",\"description\":\"b\",\"status\":\"DONE\",\"epicId\":7},"
+                        + "{\"id\":-2147483648,\"type\":\"TASK\",\"title\":\"Кавычка \\\" слеш \\\\ перевод\\nстроки \\u0001 "
+                        + "смайл \uD83D\uDE00 и \\ud800\",\"description\":\"\",\"status\":\"NEW\"}]",
+                json.toString(), "Одиночный суррогат экранируется, а не портит UTF-8");
+    }
+
+    @Test
+    public void testReadsBackWhatItWrites() {
+        Subtask subtask = new Subtask(42, "Тест \"в кавычках\"\t\uD83D\uDE00", "Описание\\", Status.IN_PROGRESS, 5);
+        TaskJson json = new TaskJson();
+        byte[] bytes = json.write(subtask).toByteArray();
+
+        TaskJson.Fields fields = json.read(bytes, 0, bytes.length, new TaskJson.Fields());
+        assertEquals(subtask, fields.toTask(TaskType.TASK), "Тип берётся из поля type");
+
+        Task timed = new Task(6, "Со временем", null, Status.NEW, LocalDateTime.of(2024, 5, 1, 9, 0, 30),
+                Duration.ofMinutes(90));
+        bytes = json.reset().write(timed).toByteArray();
+        assertTrue(json.toString().contains("\"startTime\":\"2024-05-01T09:00:30\",\"duration\":\"PT1H30M\","
+                + "\"endTime\":\"2024-05-01T10:30:30\""), json.toString());
+        assertEquals(timed, json.read(bytes, 0, bytes.length, fields).toTask(TaskType.TASK));
+
+        byte[] epicJson = ("{ \"unknown\": {\"nested\": [1, {\"x\": null}, \"s\"]}, \"id\": 3, \"title\": \"E\","
+                + " \"description\": null, \"type\": \"EPIC\", \"subtasks\": [4, 5] }").getBytes(StandardCharsets.UTF_8);
+        TaskJson.Fields epic = json.read(epicJson, 0, epicJson.length, fields);
+        assertEquals(3, epic.getId());
+        assertEquals(TaskType.EPIC, epic.getType());
+        assertEquals(List.of(4, 5), List.of(epic.getSubtaskIds()[0], epic.getSubtaskIds()[1]));
+        assertTrue(epic.hasId());
+        assertFalse(epic.hasStatus(), "Поля прошлого разбора стираются");
+        assertEquals(null, epic.getDescription());
+        assertEquals("\u0416", json.read("{\"title\":\"\\u0416\"}".getBytes(StandardCharsets.UTF_8)).getTitle());
+    }
+
+    @Test
+    public void testRejectsMalformedJson() {
+        TaskJson json = new TaskJson();
+        for (String bad : List.of("", "{", "{\"id\":}", "{\"id\":1.5}", "{\"id\":99999999999}", "{\"title\":\"a}",
+                "{\"title\":\"a\"} x", "{\"status\":\"LATER\"}", "{\"title\":\"\\q\"}", "{\"title\":\"a\nb\"}")) {
+            assertThrows(IllegalArgumentException.class, () -> json.read(bad.getBytes(StandardCharsets.UTF_8)),
+                    "Должен быть отвергнут: " + bad);
+        }
+    }
+}